@@ -46,9 +46,10 @@
 import me.ryanhamshire.griefprevention.configuration.type.GlobalConfig;
 import me.ryanhamshire.griefprevention.configuration.type.WorldConfig;
 import me.ryanhamshire.griefprevention.event.GPDeleteClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
-import net.minecraft.util.math.ChunkPos;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.User;
@@ -72,6 +73,7 @@
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -452,35 +454,23 @@ public ClaimResult deleteClaim(Claim claim, boolean deleteChildren) {
 
     // deletes all claims owned by a player
     public void deleteClaimsForPlayer(UUID playerID) {
-        if (DataStore.USE_GLOBAL_PLAYER_STORAGE && playerID != null) {
-            List<Claim> claimsToDelete = new ArrayList<>(DataStore.GLOBAL_PLAYER_DATA.get(playerID).getInternalClaims());
-            for (Claim claim : claimsToDelete) {
-                ((GPClaim) claim).removeSurfaceFluids(null);
-                GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(ImmutableSet.of(claim.getContext()));
-                GPClaimManager claimWorldManager = this.claimWorldManagers.get(claim.getWorld().getProperties().getUniqueId());
-                claimWorldManager.deleteClaimInternal(claim, true);
-
-                // if in a creative mode world, delete the claim
-                if (GriefPreventionPlugin.instance.claimModeIsActive(claim.getLesserBoundaryCorner().getExtent().getProperties(), ClaimsMode.Creative)) {
-                    GriefPreventionPlugin.instance.restoreClaim((GPClaim) claim, 0);
-                }
-            }
-            return;
-        }
-
         for (GPClaimManager claimWorldManager : this.claimWorldManagers.values()) {
-            List<Claim> claims = claimWorldManager.getInternalPlayerClaims(playerID);
-            if (playerID == null) {
-                claims = claimWorldManager.getWorldClaims();
-            }
-            if (claims == null) {
-                continue;
-            }
-
             List<Claim> claimsToDelete = new ArrayList<Claim>();
-            for (Claim claim : claims) {
-                if (!claim.isAdminClaim()) {
-                    claimsToDelete.add(claim);
+            if (playerID == null) {
+                for (Claim claim : claimWorldManager.getWorldClaims()) {
+                    if (!claim.isAdminClaim()) {
+                        claimsToDelete.add(claim);
+                    }
+                }
+            } else {
+                // owner index never holds admin claims
+                claimsToDelete.addAll(claimWorldManager.getOwnerClaims(playerID));
+                // town children owned by the player are only tracked by loaded player data
+                final UUID worldUniqueId = claimWorldManager.getWorldProperties().getUniqueId();
+                for (Claim claim : claimWorldManager.getInternalPlayerClaims(playerID)) {
+                    if (!claim.isAdminClaim() && claim.getWorld().getUniqueId().equals(worldUniqueId) && !claimsToDelete.contains(claim)) {
+                        claimsToDelete.add(claim);
+                    }
                 }
             }
  
@@ -547,13 +537,9 @@ public List<Claim> getNearbyClaims(Location<World> location) {
                 for (int chunkZ = lesserChunk.get().getPosition().getZ(); chunkZ <= greaterChunk.get().getPosition().getZ(); chunkZ++) {
                     Optional<Chunk> chunk = location.getExtent().getChunk(chunkX, 0, chunkZ);
                     if (chunk.isPresent()) {
-                        Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(ChunkPos.asLong(chunkX, chunkZ));
-                        if (claimsInChunk != null) {
-                            for (Claim claim : claimsInChunk) {
-                                final GPClaim gpClaim = (GPClaim) claim;
-                                if (gpClaim.parent == null && !claims.contains(claim)) {
-                                    claims.add(claim);
-                                }
+                        for (GPClaim claim : claimWorldManager.getTopLevelClaimsInChunk(chunkX, chunkZ)) {
+                            if (!claims.contains(claim)) {
+                                claims.add(claim);
                             }
                         }
                     }
@@ -622,6 +608,40 @@ public GPClaimManager getClaimWorldManager(WorldProperties worldProperties) {
         return claimWorldManager;
     }
 
+    public Collection<GPClaimManager> getClaimWorldManagers() {
+        return this.claimWorldManagers.values();
+    }
+
+    // Rebuilds the option snapshot of a loaded player after its options or permissions were changed
+    public void refreshPlayerOptions(UUID playerUniqueId) {
+        GPOptionHandler.getOptionCache().invalidate(playerUniqueId.toString());
+        final Set<GPPlayerData> refreshed = new HashSet<>();
+        for (GPClaimManager claimManager : this.claimWorldManagers.values()) {
+            final GPPlayerData playerData = claimManager.getPlayerDataMap().get(playerUniqueId);
+            // player data is shared between worlds when using global storage
+            if (playerData != null && refreshed.add(playerData)) {
+                playerData.refreshPlayerOptions();
+            }
+        }
+    }
+
+    // Rebuilds the option snapshot of all loaded players, used when a group they may inherit from was changed
+    public void refreshAllPlayerOptions() {
+        GPOptionHandler.getOptionCache().invalidateAll();
+        final Set<GPPlayerData> refreshed = new HashSet<>();
+        for (GPClaimManager claimManager : this.claimWorldManagers.values()) {
+            for (GPPlayerData playerData : claimManager.getPlayerDataMap().values()) {
+                if (playerData.playerID.equals(GriefPreventionPlugin.WORLD_USER_UUID) || playerData.playerID.equals(GriefPreventionPlugin.ADMIN_USER_UUID)
+                        || playerData.playerID.equals(GriefPreventionPlugin.PUBLIC_UUID)) {
+                    continue;
+                }
+                if (refreshed.add(playerData)) {
+                    playerData.refreshPlayerOptions();
+                }
+            }
+        }
+    }
+
     public void removeClaimWorldManager(WorldProperties worldProperties) {
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
             return;
@@ -630,6 +650,7 @@ public void removeClaimWorldManager(WorldProperties worldProperties) {
     }
 
     public void setupDefaultPermissions(World world) {
+        GPPermissionHandler.getPermissionCache().invalidateAll();
         Set<Context> contexts = new HashSet<>();
         contexts.add(ClaimContexts.ADMIN_DEFAULT_CONTEXT);
         contexts.add(world.getContext());
@@ -32,6 +32,8 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.configuration.ClaimDataConfig;
+import me.ryanhamshire.griefprevention.configuration.ClaimSnapshot;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
 import me.ryanhamshire.griefprevention.configuration.ClaimTemplateStorage;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
@@ -40,6 +42,7 @@
 import me.ryanhamshire.griefprevention.configuration.type.DimensionConfig;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.migrator.RedProtectMigrator;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.world.DimensionType;
@@ -59,8 +62,19 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
 
 //manages data stored in the file system
 public class FlatFileDataStore extends DataStore {
@@ -77,6 +91,8 @@ public class FlatFileDataStore extends DataStore {
     private final Path rootConfigPath = GriefPreventionPlugin.instance.getConfigPath().resolve("worlds");
     public static Path rootWorldSavePath;
     private int claimLoadCount = 0;
+    // World UUID -> ClaimData folder, used to update claim snapshots
+    private final Map<UUID, Path> claimDataPaths = Maps.newConcurrentMap();
 
     public FlatFileDataStore() {
     }
@@ -187,31 +203,43 @@ public void loadWorldData(World world) {
 
         // Load wilderness claim first
         final Path wildernessFilePath = newWorldDataPath.resolve("ClaimData").resolve("wilderness").resolve(worldProperties.getUniqueId().toString());
-        if (Files.exists(wildernessFilePath)) {
-            try {
+        try {
+            if (GriefPreventionPlugin.instance.storageWriteQueue.exists(wildernessFilePath)) {
                 this.loadClaim(wildernessFilePath.toFile(), worldProperties, worldProperties.getUniqueId());
-            } catch (Exception e) {
-                e.printStackTrace();
+            } else {
+                claimWorldManager.createWildernessClaim(worldProperties);
             }
-        } else {
-            claimWorldManager.createWildernessClaim(worldProperties);
+        } catch (Exception e) {
+            e.printStackTrace();
         }
 
         // Load Claim Data
         try {
-            File[] files = newWorldDataPath.resolve("ClaimData").toFile().listFiles();
-            if (files != null && files.length > 0) {
-                this.loadClaimData(files, worldProperties);
-                GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] " + this.claimLoadCount + " total claims loaded.");
+            final Path claimDataPath = newWorldDataPath.resolve("ClaimData");
+            this.claimDataPaths.put(worldProperties.getUniqueId(), claimDataPath);
+            ClaimSnapshot snapshot = null;
+            if (this.isClaimSnapshotEnabled()) {
+                snapshot = ClaimSnapshot.open(newWorldDataPath.resolve(ClaimSnapshot.FILE_NAME), claimDataPath);
+            }
+            try {
+                if (this.loadClaimData(claimDataPath, worldProperties, snapshot)) {
+                    GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] " + this.claimLoadCount + " total claims loaded.");
+                }
+            } finally {
+                if (snapshot != null) {
+                    snapshot.close();
+                }
             }
 
+            final Path playerDataPath;
             if (GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.useGlobalPlayerDataStorage) {
-                files = globalPlayerDataPath.toFile().listFiles();
+                playerDataPath = globalPlayerDataPath;
             } else {
-                files = newWorldDataPath.resolve("PlayerData").toFile().listFiles();
+                playerDataPath = newWorldDataPath.resolve("PlayerData");
             }
-            if (files != null && files.length > 0) {
-                this.loadPlayerData(worldProperties, files);
+            final List<Path> playerFiles = GriefPreventionPlugin.instance.storageWriteQueue.list(playerDataPath);
+            if (!playerFiles.isEmpty()) {
+                this.loadPlayerData(worldProperties, playerFiles);
             }
 
             // If a wilderness claim was not loaded, create a new one
@@ -222,6 +250,8 @@ public void loadWorldData(World world) {
             e.printStackTrace();
         }
 
+        // player storage read ahead for claim owners that were never requested
+        claimWorldManager.clearPreloadedPlayerStorage();
         // handle default flag permissions
         this.setupDefaultPermissions(world);
         this.claimLoadCount = 0;
@@ -245,58 +275,151 @@ public void unloadWorldData(WorldProperties worldProperties) {
         DataStore.worldConfigMap.remove(worldProperties.getUniqueId());
     }
 
-    void loadClaimData(File[] files, WorldProperties worldProperties) throws Exception {
-        for (int i = 0; i < files.length; i++) {
-            File file = files[i];
-            if (file.isFile()) {
-                this.loadClaimFile(file, worldProperties);
+    // Returns false if the world has no claim data
+    boolean loadClaimData(Path claimDataPath, WorldProperties worldProperties, @Nullable ClaimSnapshot snapshot) throws Exception {
+        final GPClaimManager claimManager = this.getClaimWorldManager(worldProperties);
+
+        // scan
+        long phaseStart = System.nanoTime();
+        final List<Path> claimFiles = GriefPreventionPlugin.instance.storageWriteQueue.list(claimDataPath);
+        if (claimFiles.isEmpty()) {
+            return false;
+        }
+        // empty unless the storage backend loads a whole world faster than claim by claim
+        final Map<Path, CommentedConfigurationNode> storedRoots = GriefPreventionPlugin.instance.storageWriteQueue.loadAll(claimDataPath);
+        final long scanTime = System.nanoTime() - phaseStart;
+
+        // parse each claim file in parallel, nothing is registered yet
+        phaseStart = System.nanoTime();
+        final List<ParsedClaim> parsedClaims = claimFiles.parallelStream()
+                .map(path -> this.parseClaimFile(path.toFile(), worldProperties, snapshot, storedRoots.get(path)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        final Set<UUID> ownerUniqueIds = new HashSet<>();
+        for (ParsedClaim parsedClaim : parsedClaims) {
+            final ClaimDataConfig claimData = parsedClaim.claimStorage.getConfig();
+            if (claimData != null && claimData.getOwnerUniqueId() != null && claimData.getType() != ClaimType.ADMIN && !claimData.getParent().isPresent()) {
+                ownerUniqueIds.add(claimData.getOwnerUniqueId());
             }
         }
-        for (int i = 0; i < files.length; i++) {
-            File file = files[i];
-            if (file.isDirectory()) {
-                this.loadClaimData(file.listFiles(), worldProperties);
+        claimManager.preloadPlayerStorage(ownerUniqueIds);
+        final long parseTime = System.nanoTime() - phaseStart;
+
+        // link parents before their children
+        phaseStart = System.nanoTime();
+        final List<ParsedClaim> orderedClaims = sortByParent(parsedClaims);
+        final long linkTime = System.nanoTime() - phaseStart;
+
+        // register into the claim manager
+        phaseStart = System.nanoTime();
+        for (ParsedClaim parsedClaim : orderedClaims) {
+            this.loadParsedClaim(parsedClaim, worldProperties);
+        }
+        final long indexTime = System.nanoTime() - phaseStart;
+
+        int snapshotClaims = 0;
+        for (ParsedClaim parsedClaim : parsedClaims) {
+            if (parsedClaim.fromSnapshot) {
+                snapshotClaims++;
             }
         }
+        GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Loaded " + parsedClaims.size() + " claim files ("
+                + snapshotClaims + " from snapshot) in "
+                + TimeUnit.NANOSECONDS.toMillis(scanTime + parseTime + linkTime + indexTime) + " ms (scan " + TimeUnit.NANOSECONDS.toMillis(scanTime)
+                + " ms, parse " + TimeUnit.NANOSECONDS.toMillis(parseTime) + " ms, link " + TimeUnit.NANOSECONDS.toMillis(linkTime)
+                + " ms, index " + TimeUnit.NANOSECONDS.toMillis(indexTime) + " ms).");
+        return true;
     }
 
-    void loadClaimFile(File file, WorldProperties worldProperties) {
-        if (file.isFile()) // avoids folders
-        {
-            // the filename is the claim ID. try to parse it
-            UUID claimId;
+    // Runs on the fork join pool
+    @Nullable
+    private ParsedClaim parseClaimFile(File file, WorldProperties worldProperties, @Nullable ClaimSnapshot snapshot,
+            @Nullable CommentedConfigurationNode storedRoot) {
+        // the filename is the claim ID. try to parse it
+        UUID claimId;
 
-            try {
-                final String fileName = file.getName();
-                // UUID's should always be 36 in length
-                if (fileName.length() != 36) {
-                    return;
-                }
+        try {
+            final String fileName = file.getName();
+            // UUID's should always be 36 in length
+            if (fileName.length() != 36) {
+                return null;
+            }
 
-                claimId = UUID.fromString(fileName);
-            } catch (Exception e) {
-                GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
-                return;
+            claimId = UUID.fromString(fileName);
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
+            return null;
+        }
+
+        // the wilderness claim is loaded first by loadWorldData
+        if (claimId.equals(worldProperties.getUniqueId())) {
+            return null;
+        }
+
+        final CommentedConfigurationNode snapshotRoot = snapshot == null ? null : snapshot.read(file.toPath());
+        final CommentedConfigurationNode root = snapshotRoot != null ? snapshotRoot : storedRoot;
+        return new ParsedClaim(file, claimId, createClaimStorage(file, worldProperties, root), snapshotRoot != null);
+    }
+
+    private static List<ParsedClaim> sortByParent(List<ParsedClaim> parsedClaims) {
+        final Map<UUID, List<ParsedClaim>> childrenByParent = new HashMap<>();
+        final Set<UUID> claimIds = new HashSet<>();
+        for (ParsedClaim parsedClaim : parsedClaims) {
+            claimIds.add(parsedClaim.claimId);
+        }
+
+        final List<ParsedClaim> orderedClaims = new ArrayList<>(parsedClaims.size());
+        for (ParsedClaim parsedClaim : parsedClaims) {
+            final UUID parent = parsedClaim.getParent();
+            if (parent == null || !claimIds.contains(parent)) {
+                orderedClaims.add(parsedClaim);
+            } else {
+                childrenByParent.computeIfAbsent(parent, k -> new ArrayList<>()).add(parsedClaim);
+            }
+        }
+        for (int i = 0; i < orderedClaims.size(); i++) {
+            final List<ParsedClaim> children = childrenByParent.remove(orderedClaims.get(i).claimId);
+            if (children != null) {
+                orderedClaims.addAll(children);
             }
+        }
+        // claims in a parent cycle, load them last as before
+        for (List<ParsedClaim> children : childrenByParent.values()) {
+            orderedClaims.addAll(children);
+        }
 
-            try {
-               this.loadClaim(file, worldProperties, claimId);
+        return orderedClaims;
+    }
+
+    private void loadParsedClaim(ParsedClaim parsedClaim, WorldProperties worldProperties) {
+        final File file = parsedClaim.file;
+        try {
+            this.loadClaim(file, worldProperties, parsedClaim.claimId, parsedClaim.claimStorage);
+        }
+
+        // if there's any problem with the file's content, log an error message and skip it
+        catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("World not found")) {
+                GriefPreventionPlugin.instance.storageWriteQueue.delete(file.toPath());
+            } else {
+                StringWriter errors = new StringWriter();
+                e.printStackTrace(new PrintWriter(errors));
+                GriefPreventionPlugin.addLogEntry(file.getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
             }
+        }
+    }
 
-            // if there's any problem with the file's content, log an error message and skip it
-            catch (Exception e) {
-                if (e.getMessage() != null && e.getMessage().contains("World not found")) {
-                    file.delete();
-                } else {
-                    StringWriter errors = new StringWriter();
-                    e.printStackTrace(new PrintWriter(errors));
-                    GriefPreventionPlugin.addLogEntry(file.getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
-                }
+    void loadClaimFile(File file, WorldProperties worldProperties) {
+        if (file.isFile()) // avoids folders
+        {
+            final ParsedClaim parsedClaim = this.parseClaimFile(file, worldProperties, null, null);
+            if (parsedClaim != null) {
+                this.loadParsedClaim(parsedClaim, worldProperties);
             }
         }
     }
 
-    void loadPlayerData(WorldProperties worldProperties, File[] files) throws Exception {
+    void loadPlayerData(WorldProperties worldProperties, List<Path> files) throws Exception {
         final boolean resetMigration = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.resetMigrations;
         final boolean resetClaimData = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.resetAccruedClaimBlocks;
         final int migration2dRate = GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.migrateAreaRate;
@@ -307,58 +430,107 @@ void loadPlayerData(WorldProperties worldProperties, File[] files) throws Except
             // load all player data if migrating
             migrate = true;
         }
-        for (int i = 0; i < files.length; i++) {
-            if (files[i].isFile()) // avoids folders
-            {
-                // the filename is the claim ID. try to parse it
-                UUID playerUUID;
-
-                try {
-                    playerUUID = UUID.fromString(files[i].getName());
-                } catch (Exception e) {
-                    GriefPreventionPlugin.instance.getLogger().error("Could not read player file " + files[i].getAbsolutePath());
-                    continue;
-                }
 
-                if (!migrate && !Sponge.getServer().getPlayer(playerUUID).isPresent()) {
-                    continue;
-                }
+        final long startTime = System.nanoTime();
+        final Map<UUID, Path> playerFiles = new LinkedHashMap<>();
+        for (Path file : files) {
+            // the filename is the claim ID. try to parse it
+            UUID playerUUID;
 
-                try {
-                    this.getOrCreatePlayerData(worldProperties, playerUUID);
-                }
+            try {
+                playerUUID = UUID.fromString(file.getFileName().toString());
+            } catch (Exception e) {
+                GriefPreventionPlugin.instance.getLogger().error("Could not read player file " + file.toAbsolutePath());
+                continue;
+            }
 
-                // if there's any problem with the file's content, log an error message and skip it
-                catch (Exception e) {
-                    if (e.getMessage() != null && e.getMessage().contains("World not found")) {
-                        files[i].delete();
-                    } else {
-                        StringWriter errors = new StringWriter();
-                        e.printStackTrace(new PrintWriter(errors));
-                        GriefPreventionPlugin.addLogEntry(files[i].getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
-                    }
+            if (!migrate && !Sponge.getServer().getPlayer(playerUUID).isPresent()) {
+                continue;
+            }
+
+            playerFiles.put(playerUUID, file);
+        }
+
+        this.getClaimWorldManager(worldProperties).preloadPlayerStorage(playerFiles.keySet());
+        for (Map.Entry<UUID, Path> mapEntry : playerFiles.entrySet()) {
+            try {
+                this.getOrCreatePlayerData(worldProperties, mapEntry.getKey());
+            }
+
+            // if there's any problem with the file's content, log an error message and skip it
+            catch (Exception e) {
+                if (e.getMessage() != null && e.getMessage().contains("World not found")) {
+                    GriefPreventionPlugin.instance.storageWriteQueue.delete(mapEntry.getValue());
+                } else {
+                    StringWriter errors = new StringWriter();
+                    e.printStackTrace(new PrintWriter(errors));
+                    GriefPreventionPlugin.addLogEntry(mapEntry.getValue().getFileName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
                 }
             }
         }
+
+        if (!playerFiles.isEmpty()) {
+            GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Loaded " + playerFiles.size() + " player files in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms.");
+        }
     }
 
     public GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
             throws Exception {
-        GPClaim claim;
-
         final GPClaimManager claimManager = this.getClaimWorldManager(worldProperties);
         if (claimManager.getWildernessClaim() != null && claimManager.getWildernessClaim().getUniqueId().equals(claimId)) {
             return null;
         }
-        boolean isTown = claimFile.toPath().getParent().endsWith("town");
-        boolean writeToStorage = false;
-        ClaimStorageData claimStorage = null;
+
+        return this.loadClaim(claimFile, worldProperties, claimId, createClaimStorage(claimFile, worldProperties, null));
+    }
+
+    private static ClaimStorageData createClaimStorage(File claimFile, WorldProperties worldProperties, @Nullable CommentedConfigurationNode root) {
+        final boolean isTown = claimFile.toPath().getParent().endsWith("town");
+        if (root != null) {
+            return isTown ? new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId(), root)
+                    : new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId(), root);
+        }
         if (isTown) {
-            claimStorage = new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId());
-        } else {
-            claimStorage = new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId());
+            return new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId());
         }
 
+        return new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId());
+    }
+
+    public boolean isClaimSnapshotEnabled() {
+        return GriefPreventionPlugin.getGlobalConfig().getConfig().storage.claimSnapshot;
+    }
+
+    /**
+     * Updates the claim snapshot of every world loaded since startup.
+     *
+     * <p>Only claim files are read so this may run off the main thread.</p>
+     */
+    public synchronized void writeClaimSnapshots() {
+        if (!this.isClaimSnapshotEnabled()) {
+            return;
+        }
+
+        for (Path claimDataPath : this.claimDataPaths.values()) {
+            final Path snapshotPath = claimDataPath.resolveSibling(ClaimSnapshot.FILE_NAME);
+            try {
+                final long startTime = System.nanoTime();
+                final int count = ClaimSnapshot.write(snapshotPath, claimDataPath);
+                GriefPreventionPlugin.instance.getLogger().debug("Wrote " + count + " claims to " + snapshotPath + " in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms.");
+            } catch (IOException e) {
+                GriefPreventionPlugin.instance.getLogger().error("Could not write claim snapshot " + snapshotPath, e);
+            }
+        }
+    }
+
+    private GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId, ClaimStorageData claimStorage)
+            throws Exception {
+        GPClaim claim;
+
+        final GPClaimManager claimManager = this.getClaimWorldManager(worldProperties);
+        boolean writeToStorage = false;
         final ClaimType type = claimStorage.getConfig().getType();
         final UUID parent = claimStorage.getConfig().getParent().orElse(null);
         final String fileName = claimFile.getName();
@@ -369,8 +541,7 @@ public GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID c
 
         if (claimFile.getParentFile().getName().equalsIgnoreCase("claimdata")) {
             final Path newPath = claimStorage.filePath.getParent().resolve(type.name().toLowerCase());
-            Files.createDirectories(newPath);
-            Files.move(claimStorage.filePath, newPath.resolve(fileName));
+            GriefPreventionPlugin.instance.storageWriteQueue.move(claimStorage.filePath, newPath.resolve(fileName));
             claimStorage.filePath = newPath.resolve(fileName);
             claimStorage = new ClaimStorageData(claimStorage.filePath, worldProperties.getUniqueId());
         }
@@ -452,12 +623,8 @@ public void writeClaimToStorage(GPClaim claim) {
     // deletes a claim from the file system
     @Override
     public void deleteClaimFromSecondaryStorage(GPClaim claim) {
-        try {
-            Files.delete(claim.getClaimStorage().filePath);
-        } catch (IOException e) {
-            e.printStackTrace();
-            GriefPreventionPlugin.addLogEntry("Error: Unable to delete claim file \"" + claim.getClaimStorage().filePath + "\".");
-        }
+        // queued so it runs after any pending write of the claim
+        GriefPreventionPlugin.instance.storageWriteQueue.delete(claim.getClaimStorage().filePath);
     }
 
     @Override
@@ -528,4 +695,25 @@ GPPlayerData getPlayerDataFromStorage(UUID playerID) {
     void overrideSavePlayerData(UUID playerID, GPPlayerData playerData) {
     }
 
+
+    private static final class ParsedClaim {
+
+        private final File file;
+        private final UUID claimId;
+        private final ClaimStorageData claimStorage;
+        private final boolean fromSnapshot;
+
+        private ParsedClaim(File file, UUID claimId, ClaimStorageData claimStorage, boolean fromSnapshot) {
+            this.file = file;
+            this.claimId = claimId;
+            this.claimStorage = claimStorage;
+            this.fromSnapshot = fromSnapshot;
+        }
+
+        @Nullable
+        private UUID getParent() {
+            final ClaimDataConfig claimData = this.claimStorage.getConfig();
+            return claimData == null ? null : claimData.getParent().orElse(null);
+        }
+    }
 }
@@ -27,6 +27,10 @@
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
+import me.ryanhamshire.griefprevention.permission.GPOptionCache;
+import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.util.HttpClient;
 
 import org.spongepowered.api.command.CommandSource;
@@ -131,6 +135,12 @@ public void pasteRecords() {
         debugOutput.add("| Record end | " + DATE_FORMAT.format(new Date(endTime)) + "|");
         long elapsed = (endTime - startTime) / 1000L; 
         debugOutput.add("| Time elapsed | " + elapsed + " seconds" + "|");
+        final GPPermissionCache permissionCache = GPPermissionHandler.getPermissionCache();
+        debugOutput.add("| Permission cache | " + permissionCache.getHits() + " hits, " + permissionCache.getMisses() + " misses, "
+                + permissionCache.getEvictions() + " evictions|");
+        final GPOptionCache optionCache = GPOptionHandler.getOptionCache();
+        debugOutput.add("| Option cache | " + optionCache.getHits() + " hits, " + optionCache.getMisses() + " misses, "
+                + optionCache.getEvictions() + " evictions|");
         debugOutput.add("");
         debugOutput.add("### Output") ;
         debugOutput.add("| Flag/Trust  | Source | Target | Location | User | Result |");
@@ -0,0 +1,298 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.api.claim.ClaimType;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Lightweight latency histograms for the hot paths of claim lookups and
+ * permission checks, broken down by flag, claim type and world.
+ *
+ * <p>Recording costs two {@link System#nanoTime()} calls and a few map
+ * lookups so it is left on in production. Only main thread calls are
+ * recorded, which keeps every structure here free of synchronization.</p>
+ *
+ * <p>Unlike {@link GPTimings}, which reports through Aikar's timings, these
+ * metrics are read with {@code /gpmetrics} and can be dumped to a file.</p>
+ */
+public class GPMetrics {
+
+    private static final long NOT_RECORDING = Long.MIN_VALUE;
+
+    public static boolean enabled = true;
+
+    public static final Metric CLAIM_GETCLAIM = new Metric("getClaimAt");
+    public static final Metric CLAIM_PERMISSION = new Metric("getClaimPermission");
+    public static final Metric BLACKLIST = new Metric("blacklist");
+    public static final Metric USER_TRUSTED = new Metric("isUserTrusted");
+    private static final Metric[] METRICS = {CLAIM_GETCLAIM, CLAIM_PERMISSION, BLACKLIST, USER_TRUSTED};
+
+    // Event class -> permission checks made while handling it
+    private static final Map<Class<?>, long[]> eventCounts = new HashMap<>();
+    private static long claimGuessHits;
+    private static long claimGuessMisses;
+    private static long startTime = System.currentTimeMillis();
+
+    /**
+     * Starts a measurement.
+     *
+     * @return The start time to pass to {@link Metric#record}
+     */
+    public static long start() {
+        if (!enabled || !Sponge.isServerAvailable() || !Sponge.getServer().isMainThread()) {
+            return NOT_RECORDING;
+        }
+        return System.nanoTime();
+    }
+
+    public static void recordEvent(long start, @Nullable Event event) {
+        if (start == NOT_RECORDING || event == null) {
+            return;
+        }
+
+        final long[] count = eventCounts.get(event.getClass());
+        if (count == null) {
+            eventCounts.put(event.getClass(), new long[] {1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    public static void recordClaimGuess(long start, boolean hit) {
+        if (start == NOT_RECORDING) {
+            return;
+        }
+        if (hit) {
+            claimGuessHits++;
+        } else {
+            claimGuessMisses++;
+        }
+    }
+
+    public static double getClaimGuessHitRate() {
+        final long total = claimGuessHits + claimGuessMisses;
+        return total == 0 ? 0 : (double) claimGuessHits / total;
+    }
+
+    public static Metric[] getMetrics() {
+        return METRICS;
+    }
+
+    public static long getStartTime() {
+        return startTime;
+    }
+
+    public static void reset() {
+        for (Metric metric : METRICS) {
+            metric.reset();
+        }
+        eventCounts.clear();
+        claimGuessHits = 0;
+        claimGuessMisses = 0;
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Renders every histogram, cache hit rate and event count as plain text
+     * lines for the metrics dump file.
+     *
+     * @return The report lines
+     */
+    public static List<String> createReport() {
+        final List<String> lines = new ArrayList<>();
+        lines.add("GriefPrevention metrics, recorded over " + ((System.currentTimeMillis() - startTime) / 1000L) + " seconds");
+        lines.add("Latencies are in microseconds, percentiles are bucket upper bounds.");
+        for (Metric metric : METRICS) {
+            lines.add("");
+            lines.add("== " + metric.name + " ==");
+            lines.add(formatRow("total", metric.total));
+            addSection(lines, "flag", metric.byFlag);
+            addSection(lines, "claim type", metric.byClaimType);
+            addSection(lines, "world", metric.byWorld);
+        }
+
+        lines.add("");
+        lines.add("== caches ==");
+        final GPPermissionCache permissionCache = GPPermissionHandler.getPermissionCache();
+        lines.add(String.format("permission cache: %d entries, %d hits, %d misses, %d evictions, %.1f%% hit rate", permissionCache.size(),
+                permissionCache.getHits(), permissionCache.getMisses(), permissionCache.getEvictions(), permissionCache.getHitRate() * 100));
+        lines.add(String.format("cached claim guess: %d hits, %d misses, %.1f%% hit rate", claimGuessHits, claimGuessMisses,
+                getClaimGuessHitRate() * 100));
+
+        lines.add("");
+        lines.add("== permission checks by event ==");
+        final List<Map.Entry<Class<?>, long[]>> events = new ArrayList<>(eventCounts.entrySet());
+        events.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (Map.Entry<Class<?>, long[]> entry : events) {
+            lines.add(entry.getKey().getName() + ": " + entry.getValue()[0]);
+        }
+        return lines;
+    }
+
+    private static void addSection(List<String> lines, String label, Map<String, Histogram> histograms) {
+        if (histograms.isEmpty()) {
+            return;
+        }
+
+        lines.add("-- by " + label + " --");
+        final List<Map.Entry<String, Histogram>> entries = new ArrayList<>(histograms.entrySet());
+        // most expensive first
+        entries.sort((a, b) -> Long.compare(b.getValue().totalNanos, a.getValue().totalNanos));
+        for (Map.Entry<String, Histogram> entry : entries) {
+            lines.add(formatRow(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    private static String formatRow(String key, Histogram histogram) {
+        return String.format("%s: count=%d mean=%.2f p50=%.2f p99=%.2f max=%.2f", key, histogram.count, histogram.getMean() / 1000d,
+                histogram.getPercentile(0.5) / 1000d, histogram.getPercentile(0.99) / 1000d, histogram.maxNanos / 1000d);
+    }
+
+    public static final class Metric {
+
+        private final String name;
+        private final Histogram total = new Histogram();
+        private final Map<String, Histogram> byFlag = new HashMap<>();
+        private final Map<String, Histogram> byClaimType = new HashMap<>();
+        private final Map<String, Histogram> byWorld = new HashMap<>();
+
+        private Metric(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public Histogram getTotal() {
+            return this.total;
+        }
+
+        public void record(long start, @Nullable String flag, @Nullable ClaimType claimType, @Nullable String world) {
+            if (start == NOT_RECORDING) {
+                return;
+            }
+
+            final long nanos = System.nanoTime() - start;
+            this.total.record(nanos);
+            if (flag != null) {
+                getHistogram(this.byFlag, flag).record(nanos);
+            }
+            if (claimType != null) {
+                getHistogram(this.byClaimType, claimType.toString()).record(nanos);
+            }
+            if (world != null) {
+                getHistogram(this.byWorld, world).record(nanos);
+            }
+        }
+
+        private void reset() {
+            this.total.reset();
+            this.byFlag.clear();
+            this.byClaimType.clear();
+            this.byWorld.clear();
+        }
+
+        private static Histogram getHistogram(Map<String, Histogram> histograms, String key) {
+            Histogram histogram = histograms.get(key);
+            if (histogram == null) {
+                histogram = new Histogram();
+                histograms.put(key, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Histogram with one bucket per power of two nanoseconds. Bucket i holds
+     * samples in [2^i, 2^(i+1)) so percentiles are accurate to a factor of 2.
+     */
+    public static final class Histogram {
+
+        private final long[] buckets = new long[64];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            if (nanos < 1) {
+                nanos = 1;
+            }
+            this.buckets[63 - Long.numberOfLeadingZeros(nanos)]++;
+            this.count++;
+            this.totalNanos += nanos;
+            if (nanos > this.maxNanos) {
+                this.maxNanos = nanos;
+            }
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.totalNanos / this.count;
+        }
+
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        public long getPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+
+            final long rank = (long) Math.ceil(percentile * this.count);
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length; i++) {
+                seen += this.buckets[i];
+                if (seen >= rank) {
+                    return Math.min(this.maxNanos, i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+                }
+            }
+            return this.maxNanos;
+        }
+
+        private void reset() {
+            Arrays.fill(this.buckets, 0);
+            this.count = 0;
+            this.totalNanos = 0;
+            this.maxNanos = 0;
+        }
+    }
+}
@@ -26,6 +26,7 @@
 package me.ryanhamshire.griefprevention;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.api.data.PlayerData;
@@ -35,9 +36,10 @@
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
+import me.ryanhamshire.griefprevention.permission.PlayerOptions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
-import me.ryanhamshire.griefprevention.util.PlayerUtils;
 import net.minecraft.world.chunk.Chunk;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
@@ -58,9 +60,12 @@
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nullable;
+
 //holds all of GriefPrevention's player-tied data
 public class GPPlayerData implements PlayerData {
 
@@ -71,6 +76,9 @@ public class GPPlayerData implements PlayerData {
 
     // the player's claims
     private List<Claim> claimList;
+    // Claim -> claim blocks it currently costs, summed up in totalClaimsCost
+    private final Map<Claim, Integer> claimCosts = Maps.newHashMap();
+    private int totalClaimsCost = 0;
 
     private PlayerStorageData playerStorage;
 
@@ -156,7 +164,6 @@ public class GPPlayerData implements PlayerData {
     public boolean inTown = false;
     public boolean townChat = false;
 
-    public boolean ignoreActiveContexts = false;
     public InetAddress ipAddress;
 
     // whether or not this player has received a message about unlocking death
@@ -196,133 +203,58 @@ public class GPPlayerData implements PlayerData {
 
     private String playerName;
 
-    // cached option values
-    public double optionAbandonReturnRatioBasic = GPOptions.DEFAULT_ABANDON_RETURN_RATIO_BASIC;
-    public double optionAbandonReturnRatioTown = GPOptions.DEFAULT_ABANDON_RETURN_RATIO_TOWN;
-    public int optionBlocksAccruedPerHour = GPOptions.DEFAULT_BLOCKS_ACCRUED_PER_HOUR;
-    public int optionCreateClaimLimitBasic = GPOptions.DEFAULT_CREATE_CLAIM_LIMIT_BASIC;
-    public int optionCreateClaimLimitSubdivision = GPOptions.DEFAULT_CREATE_CLAIM_LIMIT_SUBDIVISION;
-    public int optionCreateClaimLimitTown = GPOptions.DEFAULT_CREATE_CLAIM_LIMIT_TOWN;
-    public int optionInitialClaimBlocks = GPOptions.DEFAULT_INITIAL_CLAIM_BLOCKS;
-    public int optionMaxAccruedBlocks = GPOptions.DEFAULT_MAX_ACCRUED_BLOCKS;
-    public int optionMaxClaimLevel = GPOptions.DEFAULT_MAX_CLAIM_LEVEL;
-    public int optionMaxClaimSizeBasicX = GPOptions.DEFAULT_MAX_CLAIM_SIZE_BASIC_X;
-    public int optionMaxClaimSizeBasicY = GPOptions.DEFAULT_MAX_CLAIM_SIZE_BASIC_Y;
-    public int optionMaxClaimSizeBasicZ = GPOptions.DEFAULT_MAX_CLAIM_SIZE_BASIC_Z;
-    public int optionMaxClaimSizeTownX = GPOptions.DEFAULT_MAX_CLAIM_SIZE_TOWN_X;
-    public int optionMaxClaimSizeTownY = GPOptions.DEFAULT_MAX_CLAIM_SIZE_TOWN_Y;
-    public int optionMaxClaimSizeTownZ = GPOptions.DEFAULT_MAX_CLAIM_SIZE_TOWN_Z;
-    public int optionMaxClaimSizeSubX = GPOptions.DEFAULT_MAX_CLAIM_SIZE_SUBDIVISION_X;
-    public int optionMaxClaimSizeSubY = GPOptions.DEFAULT_MAX_CLAIM_SIZE_SUBDIVISION_Y;
-    public int optionMaxClaimSizeSubZ = GPOptions.DEFAULT_MAX_CLAIM_SIZE_SUBDIVISION_Z;
-    public int optionMinClaimLevel = GPOptions.DEFAULT_MIN_CLAIM_LEVEL;
-    public int optionMinClaimSizeBasicX = GPOptions.DEFAULT_MIN_CLAIM_SIZE_BASIC_X;
-    public int optionMinClaimSizeBasicY = GPOptions.DEFAULT_MIN_CLAIM_SIZE_BASIC_Y;
-    public int optionMinClaimSizeBasicZ = GPOptions.DEFAULT_MIN_CLAIM_SIZE_BASIC_Z;
-    public int optionMinClaimSizeTownX = GPOptions.DEFAULT_MIN_CLAIM_SIZE_TOWN_X;
-    public int optionMinClaimSizeTownY = GPOptions.DEFAULT_MIN_CLAIM_SIZE_TOWN_Y;
-    public int optionMinClaimSizeTownZ = GPOptions.DEFAULT_MIN_CLAIM_SIZE_TOWN_Z;
+    // options and cached permissions, replaced as a whole on refresh
+    private volatile PlayerOptions options = PlayerOptions.DEFAULT;
+    // claim create mode can be toggled for the session, starts at the option value
     public int optionClaimCreateMode = GPOptions.DEFAULT_CLAIM_CREATE_MODE;
-    public int optionClaimExpirationChest = GPOptions.DEFAULT_CLAIM_EXPIRATION_CHEST;
-    public int optionClaimExpirationBasic = GPOptions.DEFAULT_CLAIM_EXPIRATION_BASIC;
-    public int optionClaimExpirationSubdivision = GPOptions.DEFAULT_CLAIM_EXPIRATION_SUBDIVISION;
-    public int optionClaimExpirationTown = GPOptions.DEFAULT_CLAIM_EXPIRATION_TOWN;
-    public int optionTaxExpirationBasic = GPOptions.DEFAULT_TAX_EXPIRATION_BASIC;
-    public int optionTaxExpirationSubdivision = GPOptions.DEFAULT_TAX_EXPIRATION_SUBDIVISION;
-    public int optionTaxExpirationTown = GPOptions.DEFAULT_TAX_EXPIRATION_TOWN;
-    public double optionTaxRateBasic = GPOptions.DEFAULT_TAX_RATE_BASIC;
-    public double optionTaxRateSubdivision = GPOptions.DEFAULT_TAX_RATE_SUBDIVISION;
-    public double optionTaxRateTown = GPOptions.DEFAULT_TAX_RATE_TOWN;
-    public double optionTaxRateTownBasic = GPOptions.DEFAULT_TAX_RATE_TOWN_BASIC;
-    public double optionTaxRateTownSubdivision = GPOptions.DEFAULT_TAX_RATE_TOWN_SUBDIVISION;
-
-    // cached permission values
-    public boolean canManageAdminClaims = false;
-    public boolean canManageWilderness = false;
-    public boolean ignoreAdminClaims = false;
-    public boolean ignoreBasicClaims = false;
-    public boolean ignoreTowns = false;
-    public boolean ignoreWilderness = false;
-
-    public boolean dataInitialized = false;
+
+    public volatile boolean dataInitialized = false;
     public boolean showVisualFillers = true;
-    private boolean checkedDimensionHeight = false;
+    private int maxBuildHeight = -1;
 
     public GPPlayerData(WorldProperties worldProperties, UUID playerUniqueId, PlayerStorageData playerStorage, GriefPreventionConfig<?> activeConfig, List<Claim> claims) {
         this.worldProperties = worldProperties;
         this.playerID = playerUniqueId;
         this.playerStorage = playerStorage;
         this.claimList = claims;
+        for (Claim claim : claims) {
+            this.putClaimCost(claim);
+        }
         this.refreshPlayerOptions();
     }
 
-    // Run async
+    // Builds a new option snapshot off the main thread and publishes it
     public void refreshPlayerOptions() {
         GriefPreventionPlugin.instance.executor.execute(() -> {
-            if (this.playerSubject == null || this.playerSubject.get() == null) {
-                Subject subject = PermissionUtils.getUserSubject(this.playerID.toString());
+            Subject subject = this.playerSubject == null ? null : this.playerSubject.get();
+            if (subject == null) {
+                subject = PermissionUtils.getUserSubject(this.playerID.toString());
                 this.playerSubject = new WeakReference<>(subject);
             }
-            final Subject subject = this.playerSubject.get();
-            // options
-            this.optionAbandonReturnRatioTown = PlayerUtils.getOptionDoubleValue(subject, GPOptions.ABANDON_RETURN_RATIO_TOWN, this.optionAbandonReturnRatioTown);
-            this.optionAbandonReturnRatioBasic = PlayerUtils.getOptionDoubleValue(subject, GPOptions.ABANDON_RETURN_RATIO_BASIC, this.optionAbandonReturnRatioBasic);
-            this.optionBlocksAccruedPerHour = PlayerUtils.getOptionIntValue(subject, GPOptions.BLOCKS_ACCRUED_PER_HOUR, this.optionBlocksAccruedPerHour);
-            this.optionClaimExpirationChest = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_CHEST, this.optionClaimExpirationChest);
-            this.optionCreateClaimLimitBasic = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT_BASIC, this.optionCreateClaimLimitBasic);
-            this.optionCreateClaimLimitSubdivision = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT_SUBDIVISION, this.optionCreateClaimLimitSubdivision);
-            this.optionCreateClaimLimitTown = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT_TOWN, this.optionCreateClaimLimitTown);
-            this.optionInitialClaimBlocks = PlayerUtils.getOptionIntValue(subject, GPOptions.INITIAL_CLAIM_BLOCKS, this.optionInitialClaimBlocks);
-            this.optionMaxAccruedBlocks = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_ACCRUED_BLOCKS, this.optionMaxAccruedBlocks);
-            this.optionMaxClaimLevel = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_LEVEL, this.optionMaxClaimLevel);
-            this.optionMaxClaimSizeBasicX = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_BASIC_X, this.optionMaxClaimSizeBasicX);
-            this.optionMaxClaimSizeBasicY = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_BASIC_Y, this.optionMaxClaimSizeBasicY);
-            this.optionMaxClaimSizeBasicZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_BASIC_Z, this.optionMaxClaimSizeBasicZ);
-            this.optionMaxClaimSizeTownX = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_TOWN_X, this.optionMaxClaimSizeTownX);
-            this.optionMaxClaimSizeTownY = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_TOWN_Y, this.optionMaxClaimSizeTownY);
-            this.optionMaxClaimSizeTownZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_TOWN_Z, this.optionMaxClaimSizeTownZ);
-            this.optionMaxClaimSizeSubX = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_SUBDIVISION_X, this.optionMaxClaimSizeSubX);
-            this.optionMaxClaimSizeSubY = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_SUBDIVISION_Y, this.optionMaxClaimSizeSubY);
-            this.optionMaxClaimSizeSubZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_SUBDIVISION_Z, this.optionMaxClaimSizeSubZ);
-            this.optionMinClaimLevel = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_LEVEL, this.optionMinClaimLevel);
-            this.optionMinClaimSizeBasicX = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_BASIC_X, this.optionMinClaimSizeBasicX);
-            this.optionMinClaimSizeBasicY = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_BASIC_Y, this.optionMinClaimSizeBasicY);
-            this.optionMinClaimSizeBasicZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_BASIC_Z, this.optionMinClaimSizeBasicZ);
-            this.optionMinClaimSizeTownX = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_TOWN_X, this.optionMinClaimSizeTownX);
-            this.optionMinClaimSizeTownY = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_TOWN_Y, this.optionMinClaimSizeTownY);
-            this.optionMinClaimSizeTownZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_TOWN_Z, this.optionMinClaimSizeTownZ);
-            this.optionClaimCreateMode = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_CREATE_MODE, this.optionClaimCreateMode);
-            this.optionClaimExpirationChest = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_CHEST, this.optionClaimExpirationChest);
-            this.optionClaimExpirationBasic = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_BASIC, this.optionClaimExpirationBasic);
-            this.optionClaimExpirationTown = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_TOWN, this.optionClaimExpirationTown);
-            this.optionClaimExpirationSubdivision = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_SUBDIVISION, this.optionClaimExpirationSubdivision);
-            this.optionTaxExpirationBasic = PlayerUtils.getOptionIntValue(subject, GPOptions.TAX_EXPIRATION_BASIC, this.optionTaxExpirationBasic);
-            this.optionTaxExpirationSubdivision = PlayerUtils.getOptionIntValue(subject, GPOptions.TAX_EXPIRATION_BASIC, this.optionTaxExpirationSubdivision);
-            this.optionTaxExpirationTown = PlayerUtils.getOptionIntValue(subject, GPOptions.TAX_EXPIRATION_BASIC, this.optionTaxExpirationTown);
-            this.optionTaxRateBasic = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_BASIC, this.optionTaxRateBasic);
-            this.optionTaxRateSubdivision = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_BASIC, this.optionTaxRateSubdivision);
-            this.optionTaxRateTown = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_TOWN, this.optionTaxRateTown);
-            this.optionTaxRateTownBasic = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_TOWN_BASIC, this.optionTaxRateTownBasic);
-            this.optionTaxRateTownSubdivision = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_TOWN_BASIC, this.optionTaxRateTownSubdivision);
-            // permissions
-            this.ignoreAdminClaims = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_ADMIN);
-            this.ignoreTowns = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_TOWN);
-            this.ignoreWilderness = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_WILDERNESS);
-            this.ignoreBasicClaims = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_BASIC);
-            this.canManageAdminClaims = subject.hasPermission(GPPermissions.COMMAND_ADMIN_CLAIMS);
-            this.canManageWilderness = subject.hasPermission(GPPermissions.MANAGE_WILDERNESS);
+            final PlayerOptions previousOptions = this.options;
+            this.options = new PlayerOptions(subject);
             this.playerName = CommandHelper.lookupPlayerName(this.playerID);
-            if (this.optionMaxClaimLevel > 255 || this.optionMaxClaimLevel <= 0 || this.optionMaxClaimLevel < this.optionMinClaimLevel) {
-                this.optionMaxClaimLevel = 255;
-            }
-            if (this.optionMinClaimLevel < 0 || this.optionMinClaimLevel >= 255 || this.optionMinClaimLevel > this.optionMaxClaimLevel) {
-                this.optionMinClaimLevel = 0;
-            }
             this.dataInitialized = true;
-            this.checkedDimensionHeight = false;
+            Sponge.getScheduler().createTaskBuilder().execute(() -> this.onOptionsRefreshed(previousOptions)).submit(GriefPreventionPlugin.instance);
         });
     }
 
+    public PlayerOptions getOptions() {
+        return this.options;
+    }
+
+    private void onOptionsRefreshed(PlayerOptions previousOptions) {
+        // keep the mode toggled for the session unless the option itself was changed
+        if (this.options.claimCreateMode != previousOptions.claimCreateMode) {
+            this.optionClaimCreateMode = this.options.claimCreateMode;
+        }
+        // claim expiry depends on the expiration options
+        for (Claim claim : this.claimList) {
+            final GPClaim gpClaim = (GPClaim) claim;
+            GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(gpClaim.getWorld().getProperties()).getExpirationQueue().update(gpClaim);
+        }
+    }
+
     public String getPlayerName() {
         if (this.playerName == null) {
             return "[unknown]";
@@ -332,6 +264,18 @@ public String getPlayerName() {
     }
 
     public void revertActiveVisual(Player player) {
+        final List<Transaction<BlockSnapshot>> visualBlocks = this.resetActiveVisual();
+        this.visualBlocks = null;
+        if (visualBlocks == null || visualBlocks.isEmpty() || !player.getWorld().equals(visualBlocks.get(0).getFinal().getLocation().get().getExtent())) {
+            return;
+        }
+
+        GriefPreventionPlugin.instance.visualizationSender.revert(player, visualBlocks);
+    }
+
+    // Stops tracking the active visual without sending any blocks, returns the blocks it shows
+    @Nullable
+    public List<Transaction<BlockSnapshot>> resetActiveVisual() {
         if (this.visualRevertTask != null) {
             this.visualRevertTask.cancel();
         }
@@ -343,14 +287,7 @@ public void revertActiveVisual(Player player) {
             }
         }
         this.visualClaimId = null;
-        if (this.visualBlocks == null || !player.getWorld().equals(this.visualBlocks.get(0).getFinal().getLocation().get().getExtent())) {
-            return;
-        }
-
-        for (int i = 0; i < this.visualBlocks.size(); i++) {
-            BlockSnapshot snapshot = this.visualBlocks.get(i).getOriginal();
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
-        }
+        return this.visualBlocks;
     }
 
     // whether or not this player is "in" pvp combat
@@ -374,56 +311,91 @@ public boolean inPvpCombat(World world) {
 
     @Override
     public int getBlocksAccruedPerHour() {
-        return this.optionBlocksAccruedPerHour;
+        return this.options.blocksAccruedPerHour;
     }
 
     @Override
     public int getChestClaimExpiration() {
-        return this.optionClaimExpirationChest;
+        return this.options.claimExpirationChest;
     }
 
     @Override
     public int getCreateClaimLimit() {
-        return this.optionCreateClaimLimitBasic;
+        return this.options.createClaimLimitBasic;
     }
 
     @Override
     public int getInitialClaimBlocks() {
-        return this.optionInitialClaimBlocks;
+        return this.options.initialClaimBlocks;
     }
 
     // the number of claim blocks a player has available for claiming land
     @Override
     public int getRemainingClaimBlocks() {
-        int remainingBlocks = this.optionInitialClaimBlocks + this.getAccruedClaimBlocks() + this.getBonusClaimBlocks();
-        for (Claim claim : this.claimList) {
-            if (claim.isSubdivision()) {
-                continue;
-            }
+        return this.options.initialClaimBlocks + this.getAccruedClaimBlocks() + this.getBonusClaimBlocks() - this.totalClaimsCost;
+    }
 
-            GPClaim gpClaim = (GPClaim) claim;
-            if ((gpClaim.parent == null || gpClaim.parent.isAdminClaim()) && claim.getData().requiresClaimBlocks()) {
-                remainingBlocks -= claim.getClaimBlocks();
-            }
+    public int getTotalClaimsCost() {
+        return this.totalClaimsCost;
+    }
+
+    // Sums the cost of every claim from scratch, used to verify the running total
+    public int recalculateTotalClaimsCost() {
+        int totalCost = 0;
+        for (Claim claim : this.claimList) {
+            totalCost += getClaimCost(claim);
         }
 
-        return remainingBlocks;
+        return totalCost;
     }
 
-    public int getTotalClaimsCost() {
-        int totalCost = 0;
+    // Rebuilds the running total from the current claim list
+    public void resetClaimCosts() {
+        this.claimCosts.clear();
+        this.totalClaimsCost = 0;
         for (Claim claim : this.claimList) {
-            if (claim.isSubdivision()) {
-                continue;
-            }
+            this.putClaimCost(claim);
+        }
+    }
 
-            final GPClaim gpClaim = (GPClaim) claim;
-            if ((gpClaim.parent == null || gpClaim.parent.isAdminClaim()) && claim.getData().requiresClaimBlocks()) {
-                totalCost += claim.getClaimBlocks();
-            }
+    public void addInternalClaim(Claim claim) {
+        if (!this.claimCosts.containsKey(claim)) {
+            this.claimList.add(claim);
         }
+        this.putClaimCost(claim);
+    }
 
-        return totalCost;
+    public void removeInternalClaim(Claim claim) {
+        this.claimList.remove(claim);
+        final Integer cost = this.claimCosts.remove(claim);
+        if (cost != null) {
+            this.totalClaimsCost -= cost;
+        }
+    }
+
+    // Must be called after anything that changes the cost of one of the player's claims
+    public void updateClaimCost(Claim claim) {
+        if (this.claimCosts.containsKey(claim)) {
+            this.putClaimCost(claim);
+        }
+    }
+
+    private void putClaimCost(Claim claim) {
+        final int cost = getClaimCost(claim);
+        final Integer previousCost = this.claimCosts.put(claim, cost);
+        this.totalClaimsCost += cost - (previousCost == null ? 0 : previousCost);
+    }
+
+    private static int getClaimCost(Claim claim) {
+        if (claim.isSubdivision()) {
+            return 0;
+        }
+
+        final GPClaim gpClaim = (GPClaim) claim;
+        if ((gpClaim.parent == null || gpClaim.parent.isAdminClaim()) && claim.getData().requiresClaimBlocks()) {
+            return claim.getClaimBlocks();
+        }
+        return 0;
     }
 
     public double getRemainingChunks() {
@@ -437,7 +409,7 @@ public int getAccruedClaimBlocks() {
 
     public boolean addAccruedClaimBlocks(int newAccruedClaimBlocks) {
         int currentTotal = this.getAccruedClaimBlocks();
-        if ((currentTotal + newAccruedClaimBlocks) >= this.optionMaxAccruedBlocks) {
+        if ((currentTotal + newAccruedClaimBlocks) >= this.options.maxAccruedBlocks) {
             // player has exceeded limit, set nothing
             return false;
         }
@@ -447,7 +419,7 @@ public boolean addAccruedClaimBlocks(int newAccruedClaimBlocks) {
     }
 
     public boolean setAccruedClaimBlocks(int newAccruedClaimBlocks) {
-        if (newAccruedClaimBlocks >= this.optionMaxAccruedBlocks) {
+        if (newAccruedClaimBlocks >= this.options.maxAccruedBlocks) {
             // player has exceeded limit, set nothing
             return false;
         }
@@ -466,7 +438,7 @@ public void setBonusClaimBlocks(int bonusClaimBlocks) {
 
     @Override
     public double getAbandonedReturnRatio() {
-        return this.optionAbandonReturnRatioBasic;
+        return this.options.abandonReturnRatioBasic;
     }
 
     public int getClaimCreateMode() {
@@ -569,6 +541,7 @@ public boolean checkLastInteraction(GPClaim claim, User user) {
 
     public void setIgnoreClaims(boolean flag) {
         this.ignoreClaims = flag;
+        GPPermissionHandler.getPermissionCache().invalidate(this.playerID);
     }
 
     @Override
@@ -578,11 +551,11 @@ public boolean canIgnoreClaim(Claim claim) {
         }
 
         if (claim.isAdminClaim()) {
-            return this.ignoreAdminClaims;
+            return this.options.ignoreAdminClaims;
         } else if (claim.isWilderness()) {
-            return this.ignoreWilderness;
+            return this.options.ignoreWilderness;
         }
-        return this.ignoreBasicClaims;
+        return this.options.ignoreBasicClaims;
     }
 
     public boolean canManageOption(Player player, GPClaim claim, boolean isGroup) {
@@ -623,18 +596,18 @@ public boolean canManageOption(Player player, GPClaim claim, boolean isGroup) {
 
     @Override
     public int getMaxAccruedClaimBlocks() {
-        return this.optionMaxAccruedBlocks;
+        return this.options.maxAccruedBlocks;
     }
 
     @Override
     public int getMaxClaimX(ClaimType type) {
         switch(type) {
             case BASIC:
-                return this.optionMaxClaimSizeBasicX;
+                return this.options.maxClaimSizeBasicX;
             case SUBDIVISION:
-                return this.optionMaxClaimSizeSubX;
+                return this.options.maxClaimSizeSubX;
             case TOWN:
-                return this.optionMaxClaimSizeTownX;
+                return this.options.maxClaimSizeTownX;
             default:
                 break;
         }
@@ -646,11 +619,11 @@ public int getMaxClaimX(ClaimType type) {
     public int getMaxClaimY(ClaimType type) {
         switch(type) {
             case BASIC:
-                return this.optionMaxClaimSizeBasicY;
+                return this.options.maxClaimSizeBasicY;
             case SUBDIVISION:
-                return this.optionMaxClaimSizeSubY;
+                return this.options.maxClaimSizeSubY;
             case TOWN:
-                return this.optionMaxClaimSizeTownY;
+                return this.options.maxClaimSizeTownY;
             default:
                 break;
         }
@@ -662,11 +635,11 @@ public int getMaxClaimY(ClaimType type) {
     public int getMaxClaimZ(ClaimType type) {
         switch(type) {
             case BASIC:
-                return this.optionMaxClaimSizeBasicZ;
+                return this.options.maxClaimSizeBasicZ;
             case SUBDIVISION:
-                return this.optionMaxClaimSizeSubZ;
+                return this.options.maxClaimSizeSubZ;
             case TOWN:
-                return this.optionMaxClaimSizeTownZ;
+                return this.options.maxClaimSizeTownZ;
             default:
                 break;
         }
@@ -678,9 +651,9 @@ public int getMaxClaimZ(ClaimType type) {
     public int getMinClaimX(ClaimType type) {
         switch(type) {
             case BASIC:
-                return this.optionMinClaimSizeBasicX;
+                return this.options.minClaimSizeBasicX;
             case TOWN:
-                return this.optionMinClaimSizeTownX;
+                return this.options.minClaimSizeTownX;
             default:
                 break;
         }
@@ -692,9 +665,9 @@ public int getMinClaimX(ClaimType type) {
     public int getMinClaimY(ClaimType type) {
         switch(type) {
             case BASIC:
-                return this.optionMinClaimSizeBasicY;
+                return this.options.minClaimSizeBasicY;
             case TOWN:
-                return this.optionMinClaimSizeTownY;
+                return this.options.minClaimSizeTownY;
             default:
                 break;
         }
@@ -706,9 +679,9 @@ public int getMinClaimY(ClaimType type) {
     public int getMinClaimZ(ClaimType type) {
         switch(type) {
             case BASIC:
-                return this.optionMinClaimSizeBasicZ;
+                return this.options.minClaimSizeBasicZ;
             case TOWN:
-                return this.optionMinClaimSizeTownZ;
+                return this.options.minClaimSizeTownZ;
             default:
                 break;
         }
@@ -718,22 +691,19 @@ public int getMinClaimZ(ClaimType type) {
 
     @Override
     public int getMaxClaimLevel() {
-        if (!this.checkedDimensionHeight) {
+        final int maxClaimLevel = this.options.maxClaimLevel;
+        if (this.maxBuildHeight < 0) {
             final World world = Sponge.getServer().getWorld(this.worldProperties.getUniqueId()).orElse(null);
             if (world != null) {
-                final int buildHeight = world.getDimension().getBuildHeight() - 1;
-                if (buildHeight < this.optionMaxClaimLevel) {
-                    this.optionMaxClaimLevel = buildHeight;
-                }
+                this.maxBuildHeight = world.getDimension().getBuildHeight() - 1;
             }
-            this.checkedDimensionHeight = true;
         }
-        return this.optionMaxClaimLevel;
+        return this.maxBuildHeight >= 0 && this.maxBuildHeight < maxClaimLevel ? this.maxBuildHeight : maxClaimLevel;
     }
 
     @Override
     public int getMinClaimLevel() {
-        return this.optionMinClaimLevel;
+        return this.options.minClaimLevel;
     }
 
     public Subject getPlayerSubject() {
@@ -761,6 +731,7 @@ public double getTotalTax() {
     }
 
     public void onDisconnect() {
+        GriefPreventionPlugin.instance.visualizationSender.clear(this.playerID);
         this.visualBlocks = null;
         this.lastInteractClaim = null;
         this.claimResizing = null;
@@ -35,6 +35,7 @@
 import static org.spongepowered.api.command.args.GenericArguments.string;
 import static org.spongepowered.api.command.args.GenericArguments.user;
 
+import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -43,6 +44,7 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
+import me.ryanhamshire.griefprevention.claim.ClaimContextSets;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
@@ -93,6 +95,7 @@
 import me.ryanhamshire.griefprevention.command.CommandGpVersion;
 import me.ryanhamshire.griefprevention.command.CommandIgnorePlayer;
 import me.ryanhamshire.griefprevention.command.CommandIgnoredPlayerList;
+import me.ryanhamshire.griefprevention.command.CommandMetrics;
 import me.ryanhamshire.griefprevention.command.CommandPermissionTrust;
 import me.ryanhamshire.griefprevention.command.CommandPlayerInfo;
 import me.ryanhamshire.griefprevention.command.CommandRestoreNature;
@@ -111,15 +114,18 @@
 import me.ryanhamshire.griefprevention.command.CommandUnseparate;
 import me.ryanhamshire.griefprevention.command.CommandUntrust;
 import me.ryanhamshire.griefprevention.command.CommandUntrustAll;
+import me.ryanhamshire.griefprevention.command.CommandVerifyClaimBlocks;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.Type;
 import me.ryanhamshire.griefprevention.configuration.MessageDataConfig;
 import me.ryanhamshire.griefprevention.configuration.MessageStorage;
-import me.ryanhamshire.griefprevention.configuration.category.BlacklistCategory;
+import me.ryanhamshire.griefprevention.configuration.StorageWriteQueue;
+import me.ryanhamshire.griefprevention.configuration.category.DatabaseCategory;
 import me.ryanhamshire.griefprevention.configuration.type.DimensionConfig;
 import me.ryanhamshire.griefprevention.configuration.type.GlobalConfig;
 import me.ryanhamshire.griefprevention.configuration.type.WorldConfig;
 import me.ryanhamshire.griefprevention.listener.BlockEventHandler;
+import me.ryanhamshire.griefprevention.listener.ClaimEventHandler;
 import me.ryanhamshire.griefprevention.listener.EntityEventHandler;
 import me.ryanhamshire.griefprevention.listener.MCClansEventHandler;
 import me.ryanhamshire.griefprevention.listener.NucleusEventHandler;
@@ -127,6 +133,7 @@
 import me.ryanhamshire.griefprevention.listener.WorldEventHandler;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.logging.CustomLogger;
+import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
 import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
@@ -138,9 +145,11 @@
 import me.ryanhamshire.griefprevention.task.DeliverClaimBlocksTask;
 import me.ryanhamshire.griefprevention.task.IgnoreLoaderThread;
 import me.ryanhamshire.griefprevention.task.PvPImmunityValidationTask;
+import me.ryanhamshire.griefprevention.task.RestoreNatureQueue;
 import me.ryanhamshire.griefprevention.task.SendPlayerMessageTask;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.BlacklistMatcher;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
+import me.ryanhamshire.griefprevention.visual.VisualizationSender;
 import net.minecraft.entity.EnumCreatureType;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.entity.player.InventoryPlayer;
@@ -152,7 +161,6 @@
 import org.spongepowered.api.Platform.Component;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.asset.Asset;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandMapping;
@@ -175,6 +183,7 @@
 import org.spongepowered.api.event.game.state.GameAboutToStartServerEvent;
 import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppedServerEvent;
 import org.spongepowered.api.event.service.ChangeServiceProviderEvent;
 import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.ItemTypes;
@@ -217,6 +226,8 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 @Plugin(id = "griefprevention", name = "GriefPrevention", version = "4.3.0", description = "This plugin is designed to prevent all forms of grief.")
 public class GriefPreventionPlugin {
 
@@ -271,6 +282,9 @@ public class GriefPreventionPlugin {
 
     public Optional<EconomyService> economyService;
     public Executor executor;
+    public final StorageWriteQueue storageWriteQueue = new StorageWriteQueue();
+    public final VisualizationSender visualizationSender = new VisualizationSender();
+    public final RestoreNatureQueue restoreNatureQueue = new RestoreNatureQueue();
 
     public boolean permPluginInstalled = false;
 
@@ -756,6 +770,18 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
             this.worldEditProvider = new WorldEditApiProvider();
         }
 
+        final DatabaseCategory databaseConfig = GriefPreventionPlugin.getGlobalConfig().getConfig().database;
+        if (this.dataStore == null && !databaseConfig.dbURL.isEmpty()) {
+            try {
+                this.dataStore = new DatabaseDataStore(databaseConfig.dbURL, databaseConfig.dbUsername, databaseConfig.dbPassword);
+                this.dataStore.initialize();
+            } catch (Exception e) {
+                this.getLogger().info("Unable to initialize the database data store.  Details:");
+                this.getLogger().info(e.getMessage());
+                e.printStackTrace();
+                return;
+            }
+        }
         if (this.dataStore == null) {
             try {
                 this.dataStore = new FlatFileDataStore();
@@ -768,11 +794,12 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
             }
         }
 
-        String dataMode = (this.dataStore instanceof FlatFileDataStore) ? "(File Mode)" : "(Database Mode)";
+        String dataMode = (this.dataStore instanceof DatabaseDataStore) ? "(Database Mode)" : "(File Mode)";
         Sponge.getEventManager().registerListeners(this, new BlockEventHandler(dataStore));
         Sponge.getEventManager().registerListeners(this, new PlayerEventHandler(dataStore, this));
         Sponge.getEventManager().registerListeners(this, new EntityEventHandler(dataStore));
         Sponge.getEventManager().registerListeners(this, new WorldEventHandler());
+        Sponge.getEventManager().registerListeners(this, new ClaimEventHandler());
         if (this.nucleusApiProvider != null) {
             Sponge.getEventManager().registerListeners(this, new NucleusEventHandler());
         }
@@ -786,11 +813,11 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
         WORLD_USER = Sponge.getServiceManager().provide(UserStorageService.class).get()
                 .getOrCreate(GameProfile.of(GriefPreventionPlugin.WORLD_USER_UUID, GriefPreventionPlugin.WORLD_USER_NAME));
 
-        // run cleanup task
+        // run cleanup task, expired claims are polled every tick within a time budget
         int cleanupTaskInterval = GriefPreventionPlugin.getGlobalConfig().getConfig().claim.expirationCleanupInterval;
         if (cleanupTaskInterval > 0) {
             CleanupUnusedClaimsTask cleanupTask = new CleanupUnusedClaimsTask();
-            Sponge.getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).execute(cleanupTask)
+            Sponge.getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).intervalTicks(1).execute(cleanupTask)
                     .submit(GriefPreventionPlugin.instance);
         }
 
@@ -816,6 +843,15 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
         this.dataStore.loadClaimTemplates();
     }
 
+    @Listener
+    public void onServerStopped(GameStoppedServerEvent event) {
+        // worlds are saved by now, make sure every queued claim and player file reaches the disk
+        this.storageWriteQueue.shutdown();
+        if (this.dataStore instanceof FlatFileDataStore) {
+            ((FlatFileDataStore) this.dataStore).writeClaimSnapshots();
+        }
+    }
+
     @Listener
     public void onServerStarted(GameStartedServerEvent event) {
         if (!validateSpongeVersion()) {
@@ -878,6 +914,19 @@ public void onServerStarted(GameStartedServerEvent event) {
         DeliverClaimBlocksTask task = new DeliverClaimBlocksTask(null);
         Sponge.getScheduler().createTaskBuilder().interval(5, TimeUnit.MINUTES).execute(task)
                 .submit(GriefPreventionPlugin.instance);
+        // claim visuals are sent in batches every tick
+        Sponge.getScheduler().createTaskBuilder().intervalTicks(1).execute(this.visualizationSender)
+                .submit(GriefPreventionPlugin.instance);
+        // restore nature is spread over many ticks within a time budget
+        Sponge.getScheduler().createTaskBuilder().intervalTicks(1).execute(this.restoreNatureQueue)
+                .submit(GriefPreventionPlugin.instance);
+        // claim snapshots only read claim files so are updated off the main thread
+        final int snapshotInterval = GriefPreventionPlugin.getGlobalConfig().getConfig().storage.claimSnapshotInterval;
+        if (this.dataStore instanceof FlatFileDataStore && ((FlatFileDataStore) this.dataStore).isClaimSnapshotEnabled() && snapshotInterval > 0) {
+            final FlatFileDataStore flatFileDataStore = (FlatFileDataStore) this.dataStore;
+            Sponge.getScheduler().createTaskBuilder().async().delay(snapshotInterval, TimeUnit.MINUTES).interval(snapshotInterval, TimeUnit.MINUTES)
+                    .execute(flatFileDataStore::writeClaimSnapshots).submit(GriefPreventionPlugin.instance);
+        }
         addLogEntry("Boot finished.");
         this.logger.info("Loaded successfully.");
     }
@@ -1148,6 +1197,23 @@ public void registerBaseCommands() {
                 .executor(new CommandDebug())
                 .build(), "gpdebug");
 
+        ImmutableMap.Builder<String, String> metricsChoicesBuilder = ImmutableMap.builder();
+        metricsChoicesBuilder.put("dump", "dump");
+        metricsChoicesBuilder.put("reset", "reset");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Displays claim lookup and permission check latencies"))
+                .permission(GPPermissions.COMMAND_METRICS)
+                .arguments(optional(choices(Text.of("action"), metricsChoicesBuilder.build())))
+                .executor(new CommandMetrics())
+                .build(), "gpmetrics");
+
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Verifies the cached claim block totals of loaded players"))
+                .permission(GPPermissions.COMMAND_VERIFY_CLAIM_BLOCKS)
+                .arguments(optional(choices(Text.of("action"), ImmutableMap.of("fix", "fix"))))
+                .executor(new CommandVerifyClaimBlocks())
+                .build(), "gpverifyclaimblocks");
+
         // TODO - rewrite help command to list all commands with nice overlays showing help
         /*Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Lists detailed information on each command."))
@@ -1759,9 +1825,12 @@ public void loadConfig() {
             DataStore.USE_GLOBAL_PLAYER_STORAGE = DataStore.globalConfig.getConfig().playerdata.useGlobalPlayerDataStorage;
             GPFlags.populateFlagStatus();
             CLAIM_BLOCK_SYSTEM = DataStore.globalConfig.getConfig().playerdata.claimBlockSystem;
+            GPMetrics.enabled = DataStore.globalConfig.getConfig().metrics.enabled;
             this.modificationTool = Sponge.getRegistry().getType(ItemType.class, DataStore.globalConfig.getConfig().claim.modificationTool).orElse(ItemTypes.GOLDEN_SHOVEL);
             this.investigationTool = Sponge.getRegistry().getType(ItemType.class, DataStore.globalConfig.getConfig().claim.investigationTool).orElse(ItemTypes.STICK);
             this.maxInspectionDistance = DataStore.globalConfig.getConfig().general.maxClaimInspectionDistance;
+            GPOptionHandler.getOptionCache().invalidateAll();
+            ClaimContextSets.invalidateGlobalContexts();
             for (World world : Sponge.getGame().getServer().getWorlds()) {
                 DimensionType dimType = world.getProperties().getDimensionType();
                 Path dimPath = rootConfigPath.resolve(((IMixinDimensionType) dimType).getModId()).resolve(((IMixinDimensionType) dimType).getEnumName());
@@ -2010,6 +2079,10 @@ public boolean claimModeIsActive(WorldProperties worldProperties, ClaimsMode mod
     // if the claim is still active (in the data store), then the claimed blocks
     // will not be changed (only the area bordering the claim)
     public void restoreClaim(GPClaim claim, long delayInTicks) {
+        this.restoreClaim(claim, delayInTicks, null);
+    }
+
+    public void restoreClaim(GPClaim claim, long delayInTicks, @Nullable CommandSource requester) {
         // admin claims aren't automatically cleaned up when deleted or abandoned
         if (claim.isAdminClaim()) {
             return;
@@ -2020,37 +2093,20 @@ public void restoreClaim(GPClaim claim, long delayInTicks) {
             return;
         }
 
-        ArrayList<Chunk> chunks = claim.getChunks();
-        for (Chunk chunk : chunks) {
-            this.restoreChunk(chunk, this.getSeaLevel(chunk.getWorld()) - 15, false, delayInTicks, null);
+        // only chunk coordinates are queued, chunks are loaded when their turn comes
+        final Vector3i lesser = claim.getLesserBoundaryCorner().getBlockPosition();
+        final Vector3i greater = claim.getGreaterBoundaryCorner().getBlockPosition();
+        final int queued = this.restoreNatureQueue.enqueue(claim.getWorld(), lesser.getX() >> 4, lesser.getZ() >> 4,
+                greater.getX() >> 4, greater.getZ() >> 4, delayInTicks, requester);
+        if (requester != null && queued > 0) {
+            requester.sendMessage(Text.of(GP_TEXT, TextColors.GRAY, "Queued ", TextColors.WHITE, queued, TextColors.GRAY,
+                    " chunks to restore nature in."));
         }
     }
 
     public void restoreChunk(Chunk chunk, int miny, boolean aggressiveMode, long delayInTicks, Player player) {
-        // build a snapshot of this chunk, including 1 block boundary outside of
-        // the chunk all the way around
-        int maxHeight = chunk.getWorld().getDimension().getBuildHeight() - 1;
-        BlockSnapshot[][][] snapshots = new BlockSnapshot[18][maxHeight][18];
-        BlockSnapshot startBlock = chunk.createSnapshot(0, 0, 0);
-        Location<World> startLocation =
-                new Location<World>(chunk.getWorld(), startBlock.getPosition().getX() - 1, 0, startBlock.getPosition().getZ() - 1);
-        for (int x = 0; x < snapshots.length; x++) {
-            for (int z = 0; z < snapshots[0][0].length; z++) {
-                for (int y = 0; y < snapshots[0].length; y++) {
-                    snapshots[x][y][z] = chunk.getWorld()
-                            .createSnapshot(startLocation.getBlockX() + x, startLocation.getBlockY() + y, startLocation.getBlockZ() + z);
-                }
-            }
-        }
-
-        // create task to process those data in another thread
         Location<World> lesserBoundaryCorner = chunk.createSnapshot(0, 0, 0).getLocation().get();
         Location<World> greaterBoundaryCorner = chunk.createSnapshot(15, 0, 15).getLocation().get();
-        // create task when done processing, this task will create a main thread task to actually update the world with processing results
-        /*RestoreNatureProcessingTask task = new RestoreNatureProcessingTask(snapshots, miny, chunk.getWorld().getDimension().getType(),
-                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, this.getSeaLevel(chunk.getWorld()),
-                aggressiveMode, claimModeIsActive(lesserBoundaryCorner.getExtent().getProperties(), ClaimsMode.Creative),
-                playerReceivingVisualization);*/
         // show visualization to player who started the restoration
         if (player != null) {
             GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
@@ -2061,7 +2117,8 @@ aggressiveMode, claimModeIsActive(lesserBoundaryCorner.getExtent().getProperties
             claim.getVisualizer().apply(player);
         }
 
-        BlockUtils.regenerateChunk((net.minecraft.world.chunk.Chunk) chunk);
+        final Vector3i position = chunk.getPosition();
+        this.restoreNatureQueue.enqueue(chunk.getWorld(), position.getX(), position.getZ(), position.getX(), position.getZ(), delayInTicks, player);
     }
 
     public int getSeaLevel(World world) {
@@ -2122,74 +2179,32 @@ public static User getOrCreateUser(UUID uuid) {
 
     public static boolean isSourceIdBlacklisted(String flag, Object source, WorldProperties worldProperties) {
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
-        final String id = GPPermissionHandler.getPermissionIdentifier(source);
-        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
-
-        // Check global
-        final BlacklistCategory blacklistCategory = activeConfig.getConfig().blacklist;
-        final List<String> globalSourceBlacklist = blacklistCategory.getGlobalSourceBlacklist();
-        if (globalSourceBlacklist == null) {
-            return false;
-        }
-        for (String str : globalSourceBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
-        }
-        // Check flag
-        final List<String> flagBlacklist = blacklistCategory.getFlagBlacklist(flag);
-        if (flagBlacklist == null) {
+        final BlacklistMatcher matcher = activeConfig.getConfig().blacklist.getSourceMatcher(flag);
+        if (matcher.isEmpty()) {
             return false;
         }
-        for (String str : flagBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
-        }
 
-        return false;
+        final long metricsStart = GPMetrics.start();
+        try {
+            return matcher.matches(GPPermissionHandler.getPermissionIdentifier(source));
+        } finally {
+            GPMetrics.BLACKLIST.record(metricsStart, flag, null, worldProperties.getWorldName());
+        }
     }
 
     public static boolean isTargetIdBlacklisted(String flag, Object target, WorldProperties worldProperties) {
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
-        final String id = GPPermissionHandler.getPermissionIdentifier(target);
-        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
-
-        // Check global
-        final BlacklistCategory blacklistCategory = activeConfig.getConfig().blacklist;
-        final List<String> globalTargetBlacklist = blacklistCategory.getGlobalTargetBlacklist();
-        if (globalTargetBlacklist == null) {
+        final BlacklistMatcher matcher = activeConfig.getConfig().blacklist.getTargetMatcher(flag);
+        if (matcher.isEmpty()) {
             return false;
         }
-        for (String str : globalTargetBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
-        }
-        // Check flag
-        final List<String> flagBlacklist = blacklistCategory.getFlagBlacklist(flag);
-        if (flagBlacklist == null) {
-            return false;
-        }
-        for (String str : flagBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
-        }
 
-        return false;
+        final long metricsStart = GPMetrics.start();
+        try {
+            return matcher.matches(GPPermissionHandler.getPermissionIdentifier(target));
+        } finally {
+            GPMetrics.BLACKLIST.record(metricsStart, flag, null, worldProperties.getWorldName());
+        }
     }
 
     public static boolean containsProfanity(String message) {
@@ -0,0 +1,130 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.ClaimContexts;
+import org.spongepowered.api.service.context.Context;
+
+import javax.annotation.Nullable;
+
+/**
+ * Immutable context sets used by permission lookups against a claim.
+ *
+ * <p>Sets are built once and shared by every check. A claim discards the
+ * sets of itself and its children when its type, parent or inherit setting
+ * changes. The active contexts of the global subject are resolved once and
+ * only looked up again after {@link #invalidateGlobalContexts()}, which
+ * also marks the sets of every claim as stale.</p>
+ */
+public class ClaimContextSets {
+
+    @Nullable private static ImmutableSet<Context> globalActiveContexts;
+    private static int globalGeneration;
+
+    private final int generation;
+
+    // Contexts of inherited parents, index 0 is highest parent while last index represents direct
+    private final ImmutableList<Context> inheritedContexts;
+    private final ImmutableSet<Context> defaultContexts;
+    private final ImmutableSet<Context> overrideContexts;
+    private final ImmutableSet<Context> globalFlagContexts;
+    private final ImmutableSet<Context> globalDefaultContexts;
+    private final ImmutableSet<Context> globalOverrideContexts;
+
+    ClaimContextSets(GPClaim claim, boolean inheritParent, @Nullable ClaimContextSets parentSets) {
+        this.generation = globalGeneration;
+        final ImmutableSet<Context> globalActiveContexts = getGlobalActiveContexts();
+
+        if (inheritParent && parentSets != null) {
+            this.inheritedContexts = ImmutableList.<Context>builder()
+                    .addAll(parentSets.inheritedContexts)
+                    .add(claim.parent.getContext())
+                    .build();
+        } else {
+            this.inheritedContexts = ImmutableList.of();
+        }
+
+        if (claim.isAdminClaim()) {
+            this.defaultContexts = ImmutableSet.of(ClaimContexts.ADMIN_DEFAULT_CONTEXT, claim.world.getContext());
+            this.overrideContexts = ImmutableSet.of(ClaimContexts.ADMIN_OVERRIDE_CONTEXT, claim.world.getContext());
+        } else if (claim.isTown()) {
+            this.defaultContexts = ImmutableSet.of(ClaimContexts.TOWN_DEFAULT_CONTEXT, claim.world.getContext());
+            this.overrideContexts = ImmutableSet.of(ClaimContexts.TOWN_OVERRIDE_CONTEXT, claim.world.getContext());
+        } else if (claim.isWilderness()) {
+            this.defaultContexts = ImmutableSet.of(ClaimContexts.WILDERNESS_DEFAULT_CONTEXT, claim.world.getContext());
+            this.overrideContexts = ImmutableSet.of(ClaimContexts.WILDERNESS_OVERRIDE_CONTEXT);
+        } else {
+            this.defaultContexts = ImmutableSet.of(ClaimContexts.BASIC_DEFAULT_CONTEXT, claim.world.getContext());
+            this.overrideContexts = ImmutableSet.of(ClaimContexts.BASIC_OVERRIDE_CONTEXT, claim.world.getContext());
+        }
+
+        this.globalFlagContexts = ImmutableSet.<Context>builder().addAll(globalActiveContexts).add(claim.getContext()).build();
+        this.globalDefaultContexts = ImmutableSet.<Context>builder().addAll(globalActiveContexts).addAll(this.defaultContexts).build();
+        this.globalOverrideContexts = ImmutableSet.<Context>builder().addAll(globalActiveContexts).addAll(this.overrideContexts).build();
+    }
+
+    private static ImmutableSet<Context> getGlobalActiveContexts() {
+        if (globalActiveContexts == null) {
+            globalActiveContexts = ImmutableSet.copyOf(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
+        }
+        return globalActiveContexts;
+    }
+
+    // Called on reload, the sets of all claims are rebuilt on next use
+    public static void invalidateGlobalContexts() {
+        globalActiveContexts = null;
+        globalGeneration++;
+    }
+
+    boolean isValid() {
+        return this.generation == globalGeneration;
+    }
+
+    public ImmutableList<Context> getInheritedContexts() {
+        return this.inheritedContexts;
+    }
+
+    public ImmutableSet<Context> getOverrideContexts() {
+        return this.overrideContexts;
+    }
+
+    // Global subject active contexts with claim context
+    public ImmutableSet<Context> getGlobalFlagContexts() {
+        return this.globalFlagContexts;
+    }
+
+    // Global subject active contexts with claim type default and world contexts
+    public ImmutableSet<Context> getGlobalDefaultContexts() {
+        return this.globalDefaultContexts;
+    }
+
+    // Global subject active contexts with claim type override contexts
+    public ImmutableSet<Context> getGlobalOverrideContexts() {
+        return this.globalOverrideContexts;
+    }
+}
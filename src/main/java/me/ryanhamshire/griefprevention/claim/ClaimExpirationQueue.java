@@ -0,0 +1,191 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import com.google.common.collect.Maps;
+import me.ryanhamshire.griefprevention.GPPlayerData;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Per-world queue of top level claims ordered by the time they expire.
+ *
+ * <p>The expiry of a claim is its last active date plus the chest or basic
+ * claim expiration option of its owner, whichever comes first. Claims are
+ * re-keyed when they are added, resized, become active or their owner's
+ * options change. A claim that was re-keyed leaves its old entry in the heap,
+ * which is skipped once it reaches the head.</p>
+ *
+ * <p>Expiry is always recomputed before a claim is handed out, so an entry
+ * that was not re-keyed after a change is only ever checked early, never
+ * expired early.</p>
+ *
+ * <p>Note: This is only used from the main thread.</p>
+ */
+public class ClaimExpirationQueue {
+
+    private final GPClaimManager claimManager;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    // Claim -> current entry, any other entry of the claim in the queue is stale
+    private final Map<GPClaim, Entry> entries = Maps.newHashMap();
+
+    public ClaimExpirationQueue(GPClaimManager claimManager) {
+        this.claimManager = claimManager;
+    }
+
+    // Re-keys the claim, removing it if it can no longer expire
+    public void update(GPClaim claim) {
+        final Entry entry = this.createEntry(claim);
+        if (entry == null) {
+            this.entries.remove(claim);
+            return;
+        }
+
+        this.entries.put(claim, entry);
+        this.queue.add(entry);
+        // drop stale entries once they outnumber the live ones
+        if (this.queue.size() > this.entries.size() * 2 + 64) {
+            this.queue.clear();
+            this.queue.addAll(this.entries.values());
+        }
+    }
+
+    public void remove(GPClaim claim) {
+        this.entries.remove(claim);
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes and returns the next claim that is expired at the given time.
+     *
+     * @param now The current time in epoch millis
+     * @return The expired entry, or null if nothing is due
+     */
+    @Nullable
+    public Entry pollExpired(long now) {
+        Entry head;
+        while ((head = this.queue.peek()) != null && head.expirationTime <= now) {
+            this.queue.poll();
+            if (this.entries.get(head.claim) != head) {
+                continue;
+            }
+
+            final Entry current = this.createEntry(head.claim);
+            if (current == null) {
+                this.entries.remove(head.claim);
+                continue;
+            }
+            if (current.expirationTime > now) {
+                this.entries.put(head.claim, current);
+                this.queue.add(current);
+                continue;
+            }
+
+            this.entries.remove(head.claim);
+            return current;
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private Entry createEntry(GPClaim claim) {
+        if (claim.parent != null || claim.isAdminClaim() || claim.isWilderness() || !claim.getInternalClaimData().allowExpiration()) {
+            return null;
+        }
+
+        final GPPlayerData playerData = this.claimManager.getPlayerDataMap().get(claim.getOwnerUniqueId());
+        // options are not known yet, the claim is re-keyed once they are loaded
+        if (playerData == null || !playerData.dataInitialized) {
+            return null;
+        }
+
+        final long lastActive = claim.getInternalClaimData().getDateLastActive().toEpochMilli();
+        long expirationTime = Long.MAX_VALUE;
+        boolean chestClaim = false;
+        final int claimExpirationChest = playerData.getChestClaimExpiration();
+        if (claimExpirationChest > 0 && claim.getArea() <= this.getAreaOfDefaultClaim()) {
+            expirationTime = lastActive + TimeUnit.DAYS.toMillis(claimExpirationChest);
+            chestClaim = true;
+        }
+        if (playerData.getOptions().claimExpirationBasic > 0) {
+            final long basicExpirationTime = lastActive + TimeUnit.DAYS.toMillis(playerData.getOptions().claimExpirationBasic);
+            if (basicExpirationTime < expirationTime) {
+                expirationTime = basicExpirationTime;
+                chestClaim = false;
+            }
+        }
+
+        return expirationTime == Long.MAX_VALUE ? null : new Entry(claim, expirationTime, chestClaim);
+    }
+
+    // The area of the default chest claim
+    private int getAreaOfDefaultClaim() {
+        final int claimRadius = GriefPreventionPlugin.getActiveConfig(this.claimManager.getWorldProperties()).getConfig().claim.claimRadius;
+        if (claimRadius < 0) {
+            return 0;
+        }
+        return (claimRadius * 2 + 1) * (claimRadius * 2 + 1);
+    }
+
+    public static class Entry implements Comparable<Entry> {
+
+        private final GPClaim claim;
+        private final long expirationTime;
+        private final boolean chestClaim;
+
+        Entry(GPClaim claim, long expirationTime, boolean chestClaim) {
+            this.claim = claim;
+            this.expirationTime = expirationTime;
+            this.chestClaim = chestClaim;
+        }
+
+        public GPClaim getClaim() {
+            return this.claim;
+        }
+
+        public long getExpirationTime() {
+            return this.expirationTime;
+        }
+
+        // Whether the claim expired as a new player chest claim
+        public boolean isChestClaim() {
+            return this.chestClaim;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(this.expirationTime, other.expirationTime);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import com.google.common.collect.Maps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Per-world spatial index of every claim, at any nesting depth, bucketed by
+ * the chunk columns its bounds cover.
+ *
+ * <p>Each bucket only holds claims that actually intersect that chunk so a
+ * lookup costs the number of claims stacked over a single 16x16 column,
+ * regardless of how many children a town or admin claim has elsewhere.</p>
+ */
+public class ClaimIndex {
+
+    private static final GPClaim[] EMPTY_BUCKET = new GPClaim[0];
+
+    // Chunk hash -> claims whose bounds intersect the chunk
+    private final Long2ObjectOpenHashMap<GPClaim[]> chunkBuckets = new Long2ObjectOpenHashMap<>(4096);
+    // Claim -> chunk bounds it is currently indexed under as {minX, minZ, maxX, maxZ}
+    private final Map<GPClaim, int[]> indexedBounds = Maps.newHashMap();
+
+    public void add(GPClaim claim) {
+        if (claim.isWilderness()) {
+            return;
+        }
+
+        this.remove(claim);
+        final int[] bounds = new int[] {
+                claim.lesserBoundaryCorner.getBlockX() >> 4,
+                claim.lesserBoundaryCorner.getBlockZ() >> 4,
+                claim.greaterBoundaryCorner.getBlockX() >> 4,
+                claim.greaterBoundaryCorner.getBlockZ() >> 4
+        };
+        for (int x = bounds[0]; x <= bounds[2]; x++) {
+            for (int z = bounds[1]; z <= bounds[3]; z++) {
+                final long chunkHash = ChunkPos.asLong(x, z);
+                final GPClaim[] bucket = this.chunkBuckets.get(chunkHash);
+                if (bucket == null) {
+                    this.chunkBuckets.put(chunkHash, new GPClaim[] {claim});
+                    continue;
+                }
+
+                final GPClaim[] newBucket = new GPClaim[bucket.length + 1];
+                System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+                newBucket[bucket.length] = claim;
+                this.chunkBuckets.put(chunkHash, newBucket);
+            }
+        }
+        this.indexedBounds.put(claim, bounds);
+    }
+
+    public void remove(GPClaim claim) {
+        final int[] bounds = this.indexedBounds.remove(claim);
+        if (bounds == null) {
+            return;
+        }
+
+        for (int x = bounds[0]; x <= bounds[2]; x++) {
+            for (int z = bounds[1]; z <= bounds[3]; z++) {
+                final long chunkHash = ChunkPos.asLong(x, z);
+                final GPClaim[] bucket = this.chunkBuckets.get(chunkHash);
+                if (bucket == null) {
+                    continue;
+                }
+
+                final int index = indexOf(bucket, claim);
+                if (index == -1) {
+                    continue;
+                }
+                if (bucket.length == 1) {
+                    this.chunkBuckets.remove(chunkHash);
+                    continue;
+                }
+
+                final GPClaim[] newBucket = new GPClaim[bucket.length - 1];
+                System.arraycopy(bucket, 0, newBucket, 0, index);
+                System.arraycopy(bucket, index + 1, newBucket, index, bucket.length - index - 1);
+                this.chunkBuckets.put(chunkHash, newBucket);
+            }
+        }
+    }
+
+    public boolean isIndexed(GPClaim claim) {
+        return this.indexedBounds.containsKey(claim);
+    }
+
+    public Long2ObjectMap<GPClaim[]> getChunkBuckets() {
+        return Long2ObjectMaps.unmodifiable(this.chunkBuckets);
+    }
+
+    public GPClaim[] getClaimsInChunk(int chunkX, int chunkZ) {
+        final GPClaim[] bucket = this.chunkBuckets.get(ChunkPos.asLong(chunkX, chunkZ));
+        return bucket == null ? EMPTY_BUCKET : bucket;
+    }
+
+    /**
+     * Gets the deepest claim containing the block position.
+     *
+     * <p>A child only matches when every one of its parents also contains the
+     * position, which mirrors walking down from the top level claim.</p>
+     *
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     * @return The deepest claim, or null if position is in wilderness
+     */
+    @Nullable
+    public GPClaim getDeepestClaimAt(int x, int y, int z) {
+        final GPClaim[] bucket = this.chunkBuckets.get(ChunkPos.asLong(x >> 4, z >> 4));
+        if (bucket == null) {
+            return null;
+        }
+
+        GPClaim result = null;
+        int resultDepth = -1;
+        for (GPClaim claim : bucket) {
+            final int depth = getContainingDepth(claim, x, y, z);
+            if (depth > resultDepth) {
+                result = claim;
+                resultDepth = depth;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets every claim, at any nesting depth, whose horizontal bounds
+     * intersect the block area. Edges are inclusive.
+     *
+     * <p>A claim spanning several of the covered chunks is only returned
+     * once, in the order it was first found.</p>
+     *
+     * @param minX The lesser block x
+     * @param minZ The lesser block z
+     * @param maxX The greater block x
+     * @param maxZ The greater block z
+     * @return The intersecting claims
+     */
+    public List<GPClaim> getClaimsIntersecting(int minX, int minZ, int maxX, int maxZ) {
+        final List<GPClaim> result = new ArrayList<>();
+        final Set<GPClaim> seen = new ReferenceOpenHashSet<>();
+        for (int x = minX >> 4; x <= maxX >> 4; x++) {
+            for (int z = minZ >> 4; z <= maxZ >> 4; z++) {
+                final GPClaim[] bucket = this.chunkBuckets.get(ChunkPos.asLong(x, z));
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (GPClaim claim : bucket) {
+                    if (claim.lesserBoundaryCorner.getBlockX() > maxX || claim.greaterBoundaryCorner.getBlockX() < minX
+                            || claim.lesserBoundaryCorner.getBlockZ() > maxZ || claim.greaterBoundaryCorner.getBlockZ() < minZ) {
+                        continue;
+                    }
+                    if (seen.add(claim)) {
+                        result.add(claim);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public void clear() {
+        this.chunkBuckets.clear();
+        this.indexedBounds.clear();
+    }
+
+    // Returns the nesting depth of claim if it and all of its parents contain the position, otherwise -1
+    private static int getContainingDepth(GPClaim claim, int x, int y, int z) {
+        int depth = -1;
+        GPClaim current = claim;
+        while (current != null) {
+            if (!isInBounds(current, x, y, z)) {
+                return -1;
+            }
+            depth++;
+            current = current.parent;
+        }
+
+        return depth;
+    }
+
+    static boolean isInBounds(GPClaim claim, int x, int y, int z) {
+        return y >= claim.lesserBoundaryCorner.getBlockY() &&
+                y <= claim.greaterBoundaryCorner.getBlockY() &&
+                x >= claim.lesserBoundaryCorner.getBlockX() &&
+                x <= claim.greaterBoundaryCorner.getBlockX() &&
+                z >= claim.lesserBoundaryCorner.getBlockZ() &&
+                z <= claim.greaterBoundaryCorner.getBlockZ();
+    }
+
+    private static int indexOf(GPClaim[] bucket, GPClaim claim) {
+        for (int i = 0; i < bucket.length; i++) {
+            if (bucket[i] == claim) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.configuration.IClaimData;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Flattened user trust of a claim, mapping each trusted UUID to a bitmask
+ * of its trust types.
+ *
+ * <p>When a claim inherits from its parent, the parent's index is merged in
+ * so a full trust check is a single map lookup. The trust lists stored in
+ * {@link IClaimData} remain the persisted source and an index is discarded
+ * and rebuilt whenever they, or the parent chain, change.</p>
+ */
+class ClaimTrustIndex {
+
+    private static final int ACCESSOR = 1;
+    private static final int CONTAINER = 1 << 1;
+    private static final int BUILDER = 1 << 2;
+    private static final int MANAGER = 1 << 3;
+
+    private final Object2IntOpenHashMap<UUID> trustMasks;
+    private final IClaimData claimData;
+    @Nullable private final ClaimTrustIndex parentIndex;
+
+    ClaimTrustIndex(IClaimData claimData, @Nullable ClaimTrustIndex parentIndex) {
+        this.claimData = claimData;
+        this.parentIndex = parentIndex;
+        this.trustMasks = parentIndex == null ? new Object2IntOpenHashMap<>() : new Object2IntOpenHashMap<>(parentIndex.trustMasks);
+        this.trustMasks.defaultReturnValue(0);
+        this.addAll(claimData.getAccessors(), ACCESSOR);
+        this.addAll(claimData.getContainers(), CONTAINER);
+        this.addAll(claimData.getBuilders(), BUILDER);
+        this.addAll(claimData.getManagers(), MANAGER);
+    }
+
+    boolean isValid(IClaimData claimData, @Nullable ClaimTrustIndex parentIndex) {
+        return this.claimData == claimData && this.parentIndex == parentIndex;
+    }
+
+    boolean isTrusted(UUID uuid, TrustType type) {
+        final int required = getRequiredMask(type);
+        return ((this.trustMasks.getInt(uuid) | this.trustMasks.getInt(GriefPreventionPlugin.PUBLIC_UUID)) & required) != 0;
+    }
+
+    private void addAll(List<UUID> uuids, int mask) {
+        if (uuids == null) {
+            return;
+        }
+
+        for (UUID uuid : uuids) {
+            this.trustMasks.put(uuid, this.trustMasks.getInt(uuid) | mask);
+        }
+    }
+
+    // Higher trust types imply the lower ones, ex. a builder can also access containers
+    private static int getRequiredMask(TrustType type) {
+        switch (type) {
+            case ACCESSOR:
+                return ACCESSOR | CONTAINER | BUILDER | MANAGER;
+            case CONTAINER:
+                return CONTAINER | BUILDER | MANAGER;
+            case BUILDER:
+                return BUILDER | MANAGER;
+            case MANAGER:
+                return MANAGER;
+            default:
+                return 0;
+        }
+    }
+}
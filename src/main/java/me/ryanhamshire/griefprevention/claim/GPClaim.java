@@ -32,6 +32,7 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import me.ryanhamshire.griefprevention.DataStore;
+import me.ryanhamshire.griefprevention.GPMetrics;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.ShovelMode;
@@ -125,7 +126,6 @@ public class GPClaim implements Claim {
     public Location<World> greaterBoundaryCorner;
     public World world;
     private ClaimType type = ClaimType.BASIC;
-    private Set<Long> chunkHashes;
     private final int hashCode;
     private final GPClaimManager worldClaimManager;
     private final Claim wildernessClaim;
@@ -142,6 +142,8 @@ public class GPClaim implements Claim {
 
     private ClaimStorageData claimStorage;
     private IClaimData claimData;
+    private ClaimTrustIndex trustIndex;
+    private ClaimContextSets contextSets;
 
     public GPClaim parent = null;
     public ArrayList<Claim> children = new ArrayList<>();
@@ -264,7 +266,7 @@ public void initializeClaimData(GPClaim parent) {
         } else {
             this.claimStorage = new ClaimStorageData(claimFile.toPath(), this.world.getUniqueId(), this.ownerUniqueId, this.type, this.cuboid);
         }
-        this.claimData = this.claimStorage.getConfig();
+        this.setClaimData(this.claimStorage.getConfig());
         this.parent = parent;
 
         this.updateClaimStorageData();
@@ -277,6 +279,7 @@ public ClaimType getType() {
     public void setType(ClaimType type) {
         this.type = type;
         this.claimData.setType(type);
+        this.invalidateContextSets();
     }
 
     public Visualization getVisualizer() {
@@ -317,6 +320,19 @@ public boolean isAdminClaim() {
         return this.type == ClaimType.ADMIN;
     }
 
+    // Keeps the running claim block total of the owner in sync after this claim changed
+    public void updateOwnerClaimCost() {
+        final UUID ownerUniqueId = this.getOwnerUniqueId();
+        if (ownerUniqueId == null) {
+            return;
+        }
+
+        final GPPlayerData ownerData = DATASTORE.getClaimWorldManager(this.world.getProperties()).getPlayerDataMap().get(ownerUniqueId);
+        if (ownerData != null) {
+            ownerData.updateClaimCost(this);
+        }
+    }
+
     @Override
     public boolean isCuboid() {
         if (this.claimData != null) {
@@ -610,10 +626,10 @@ public Text getOwnerName() {
 
     @Override
     public boolean contains(Location<World> location, boolean excludeChildren) {
-        int x = location.getBlockX();
-        int y = location.getBlockY();
-        int z = location.getBlockZ();
+        return this.contains(location.getBlockX(), location.getBlockY(), location.getBlockZ(), excludeChildren);
+    }
 
+    public boolean contains(int x, int y, int z, boolean excludeChildren) {
         // main check
         boolean inClaim = (
                 y >= this.lesserBoundaryCorner.getBlockY()) &&
@@ -631,7 +647,7 @@ public boolean contains(Location<World> location, boolean excludeChildren) {
         // NOTE: if a player creates children then resizes the parent claim,
         // it's possible that a child can reach outside of its parent's boundaries. so this check is important!
         if (!excludeChildren && this.parent != null && (this.getData() == null || (this.getData() != null && this.getData().doesInheritParent()))) {
-            return this.parent.contains(location, false);
+            return this.parent.contains(x, y, z, false);
         }
 
         return true;
@@ -687,16 +703,16 @@ public boolean isBandingAcross(GPClaim otherClaim) {
         final int bigY = otherClaim.getGreaterBoundaryCorner().getBlockY();
         final int bigZ = otherClaim.getGreaterBoundaryCorner().getBlockZ();
 
-        if(this.contains(otherClaim.lesserBoundaryCorner, false)) {
+        if(this.contains(smallX, smallY, smallZ, false)) {
             return true;
         }
-        if(this.contains(otherClaim.greaterBoundaryCorner, false)) {
+        if(this.contains(bigX, bigY, bigZ, false)) {
             return true;
         }
-        if(this.contains(new Location<World>(this.world, smallX, 0, bigZ), false)) {
+        if(this.contains(smallX, 0, bigZ, false)) {
             return true;
         }
-        if(this.contains(new Location<World>(this.world, bigX, 0, smallZ), false)) {
+        if(this.contains(bigX, 0, smallZ, false)) {
             return true;
         }
 
@@ -795,27 +811,22 @@ public boolean canIgnoreHeight() {
         return true;
     }
 
+    // Only used by the API, internally chunk coverage is kept as a rectangle by ClaimIndex
     @Override
     public Set<Long> getChunkHashes() {
-        return this.getChunkHashes(true);
-    }
-
-    public Set<Long> getChunkHashes(boolean refresh) {
-        if (this.chunkHashes == null || refresh) {
-            this.chunkHashes = new HashSet<Long>();
-            int smallX = this.lesserBoundaryCorner.getBlockX() >> 4;
-            int smallZ = this.lesserBoundaryCorner.getBlockZ() >> 4;
-            int largeX = this.greaterBoundaryCorner.getBlockX() >> 4;
-            int largeZ = this.greaterBoundaryCorner.getBlockZ() >> 4;
-    
-            for (int x = smallX; x <= largeX; x++) {
-                for (int z = smallZ; z <= largeZ; z++) {
-                    this.chunkHashes.add(ChunkPos.asLong(x, z));
-                }
+        final Set<Long> chunkHashes = new HashSet<Long>();
+        int smallX = this.lesserBoundaryCorner.getBlockX() >> 4;
+        int smallZ = this.lesserBoundaryCorner.getBlockZ() >> 4;
+        int largeX = this.greaterBoundaryCorner.getBlockX() >> 4;
+        int largeZ = this.greaterBoundaryCorner.getBlockZ() >> 4;
+
+        for (int x = smallX; x <= largeX; x++) {
+            for (int z = smallZ; z <= largeZ; z++) {
+                chunkHashes.add(ChunkPos.asLong(x, z));
             }
         }
 
-        return this.chunkHashes;
+        return chunkHashes;
     }
 
     @Override
@@ -842,6 +853,9 @@ public ClaimStorageData getClaimStorage() {
 
     public void setClaimData(IClaimData data) {
         this.claimData = data;
+        if (data instanceof ClaimDataConfig) {
+            ((ClaimDataConfig) data).setClaim(this);
+        }
     }
 
     public void setClaimStorage(ClaimStorageData storage) {
@@ -973,12 +987,14 @@ public ClaimResult transferOwner(UUID newOwnerID) {
 
         this.claimData.setOwnerUniqueId(newOwnerID);
         if (this.isBasicClaim()) {
-            ownerData.getInternalClaims().remove(this);
-            newOwnerData.getInternalClaims().add(this);
+            ownerData.removeInternalClaim(this);
+            newOwnerData.addInternalClaim(this);
         }
 
         this.ownerPlayerData = newOwnerData;
+        DATASTORE.getClaimWorldManager(this.world.getProperties()).updateClaimIndexes(this);
         this.getClaimStorage().save();
+        GPPermissionHandler.getPermissionCache().invalidate(this);
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
 
@@ -991,40 +1007,40 @@ public ClaimResult doesClaimOverlap() {
             }
 
             // 2 - Check parent children
+            final List<Claim> overlappingClaims = new ArrayList<>();
             for (Claim child : parentClaim.children) {
                 final GPClaim childClaim = (GPClaim) child;
                 if (this.isBandingAcross(childClaim) || childClaim.isBandingAcross(this)) {
-                    return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                    overlappingClaims.add(childClaim);
                 }
             }
+            if (!overlappingClaims.isEmpty()) {
+                return new GPClaimResult(overlappingClaims, ClaimResultType.OVERLAPPING_CLAIM);
+            }
             return new GPClaimResult(this, ClaimResultType.SUCCESS);
         }
 
-        final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
-        final Set<Long> chunkHashes = this.getChunkHashes(true);
-
-        // Since there is no parent we need to check all claims stored in chunk hashes
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null || claimsInChunk.size() == 0) {
-                continue;
-            }
-            for (Claim child : claimsInChunk) {
-                final GPClaim gpChild = (GPClaim) child;
-                // First check if newly resized claim is crossing another
-                if (this.isBandingAcross(gpChild) || gpChild.isBandingAcross(this)) {
-                    return new GPClaimResult(child, ClaimResultType.OVERLAPPING_CLAIM);
-                }
+        // Since there is no parent we need to check all top level claims in the area
+        final List<Claim> overlappingClaims = new ArrayList<>();
+        for (GPClaim claim : this.getTopLevelClaimsInArea()) {
+            // First check if newly resized claim is crossing another
+            if (this.isBandingAcross(claim) || claim.isBandingAcross(this)) {
+                overlappingClaims.add(claim);
             }
         }
+        if (!overlappingClaims.isEmpty()) {
+            return new GPClaimResult(overlappingClaims, ClaimResultType.OVERLAPPING_CLAIM);
+        }
 
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
 
     // Scans area for any overlaps and migrates children to a newly created or resized claim
+    // On failure, the result holds every overlapping claim so they can all be shown at once
     public ClaimResult checkArea(boolean resize) {
         final List<Claim> claimsInArea = new ArrayList<>();
         claimsInArea.add(this);
+        final List<Claim> overlappingClaims = new ArrayList<>();
 
         if (this.parent != null) {
             if (this.isClaimOnBorder(this.parent)) {
@@ -1043,11 +1059,13 @@ public ClaimResult checkArea(boolean resize) {
                     continue;
                 }
                 if (this.isBandingAcross(childClaim) || childClaim.isBandingAcross(this)) {
-                    return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                    overlappingClaims.add(childClaim);
+                    continue;
                 }
                 if (childClaim.isInside(this)) {
                     if (this.type.equals(childClaim.type)) {
-                        return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                        overlappingClaims.add(childClaim);
+                        continue;
                     }
                     if (!this.isSubdivision()) {
                         claimsInArea.add(childClaim);
@@ -1056,28 +1074,25 @@ public ClaimResult checkArea(boolean resize) {
                 // ignore claims not inside
             }
 
+            final List<Claim> claimsToMigrate = new ArrayList<>();
             if (resize) {
                 // Make sure children are still within their parent
-                final List<Claim> claimsToMigrate = new ArrayList<>();
                 for (Claim child : this.children) {
                     GPClaim childClaim = (GPClaim) child;
                     if (this.isBandingAcross(childClaim) || childClaim.isBandingAcross(this)) {
-                        return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                        overlappingClaims.add(childClaim);
+                        continue;
                     }
                     if (!childClaim.isInside(this)) {
-                        if (this.parent != null) {
-                            claimsToMigrate.add(childClaim);
-                        } else {
-                            childClaim.parent = null;
-                            this.children.remove(childClaim);
-                            final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
-                            claimWorldManager.addClaim(childClaim, true);
-                        }
+                        claimsToMigrate.add(childClaim);
                     }
                 }
-                if (!claimsToMigrate.isEmpty()) {
-                    this.parent.migrateClaims(claimsToMigrate);
-                }
+            }
+            if (!overlappingClaims.isEmpty()) {
+                return new GPClaimResult(overlappingClaims, ClaimResultType.OVERLAPPING_CLAIM);
+            }
+            if (!claimsToMigrate.isEmpty()) {
+                this.parent.migrateClaims(claimsToMigrate);
             }
             return new GPClaimResult(claimsInArea, ClaimResultType.SUCCESS);
         }
@@ -1087,11 +1102,12 @@ public ClaimResult checkArea(boolean resize) {
         for (Claim child : this.children) {
             final GPClaim childClaim = (GPClaim) child;
             if (this.isBandingAcross(childClaim) || childClaim.isBandingAcross(this)) {
-                return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                overlappingClaims.add(childClaim);
+                continue;
             }
             if (childClaim.isInside(this)) {
                 if (this.type.equals(childClaim.type)) {
-                    return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                    overlappingClaims.add(childClaim);
                 }
             } else {
                 // child is no longer within parent
@@ -1099,51 +1115,48 @@ public ClaimResult checkArea(boolean resize) {
                 if (resize) {
                     claimsToMigrate.add(childClaim);
                 } else {
-                    return new GPClaimResult(childClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                    overlappingClaims.add(childClaim);
                 }
             }
         }
 
-        if (!claimsToMigrate.isEmpty()) {
-            ((GPClaim) this.wildernessClaim).migrateClaims(claimsToMigrate);
-        }
-
-        final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
-        final Set<Long> chunkHashes = this.getChunkHashes(true);
-
-        // Since there is no parent we need to check all claims stored in chunk hashes
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null || claimsInChunk.size() == 0) {
+        // Since there is no parent we need to check all top level claims in the area
+        for (GPClaim claim : this.getTopLevelClaimsInArea()) {
+            // First check if newly resized claim is crossing another
+            if (this.isBandingAcross(claim) || claim.isBandingAcross(this)) {
+                overlappingClaims.add(claim);
                 continue;
             }
-            for (Claim chunkClaim : claimsInChunk) {
-                final GPClaim gpChunkClaim = (GPClaim) chunkClaim;
-                if (gpChunkClaim.equals(this)) {
+            if (claim.isInside(this)) {
+                if (this.type.equals(claim.type) || !this.canEnclose(claim)) {
+                    overlappingClaims.add(claim);
                     continue;
                 }
-
-                // First check if newly resized claim is crossing another
-                if (this.isBandingAcross(gpChunkClaim) || gpChunkClaim.isBandingAcross(this)) {
-                    return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
-                }
-                if (gpChunkClaim.isInside(this)) {
-                    if (this.type.equals(gpChunkClaim.type)) {
-                        return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
-                    }
-                    if (!this.canEnclose(gpChunkClaim)) {
-                        return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
-                    }
-                    if (!this.isSubdivision()) {
-                        claimsInArea.add(gpChunkClaim);
-                    }
+                if (!this.isSubdivision()) {
+                    claimsInArea.add(claim);
                 }
             }
         }
 
+        if (!overlappingClaims.isEmpty()) {
+            return new GPClaimResult(overlappingClaims, ClaimResultType.OVERLAPPING_CLAIM);
+        }
+        if (!claimsToMigrate.isEmpty()) {
+            ((GPClaim) this.wildernessClaim).migrateClaims(claimsToMigrate);
+        }
+
         return new GPClaimResult(claimsInArea, ClaimResultType.SUCCESS);
     }
 
+    // Gets all top level claims, other than this one, whose bounds intersect this claim horizontally
+    private List<GPClaim> getTopLevelClaimsInArea() {
+        final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
+        final List<GPClaim> claims = claimWorldManager.getClaimIndex().getClaimsIntersecting(this.lesserBoundaryCorner.getBlockX(),
+                this.lesserBoundaryCorner.getBlockZ(), this.greaterBoundaryCorner.getBlockX(), this.greaterBoundaryCorner.getBlockZ());
+        claims.removeIf(claim -> claim.parent != null || claim.equals(this));
+        return claims;
+    }
+
     public boolean canEnclose(Claim claim) {
         if (claim.isWilderness()) {
             return false;
@@ -1294,10 +1307,6 @@ public ClaimResult resizeInternal(int smallX, int smallY, int smallZ, int bigX,
         this.lesserBoundaryCorner = newLesserCorner;
         this.greaterBoundaryCorner = newGreaterCorner;
 
-        // checkArea refreshes the current chunk hashes so it is important
-        // to make a copy before making the call
-        final Set<Long> currentChunkHashes = new HashSet<>(this.chunkHashes);
-
         final ClaimResult result = this.checkArea(true);
         if (!result.successful()) {
             this.lesserBoundaryCorner = currentLesserCorner;
@@ -1325,27 +1334,14 @@ public ClaimResult resizeInternal(int smallX, int smallY, int smallZ, int bigX,
         this.greaterBoundaryCorner = newGreaterCorner;
         GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
 
-        // resize validated, remove invalid chunkHashes
+        // resize validated, re-index the chunks covered by the new bounds
         if (this.parent == null) {
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(this);
-                }
-            }
-
-            final Set<Long> newChunkHashes = this.getChunkHashes(true);
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(this);
-            }
+            claimWorldManager.updateChunkHashes(this);
+            // chest claim expiration depends on the area
+            claimWorldManager.getExpirationQueue().update(this);
         }
+        this.updateOwnerClaimCost();
+        claimWorldManager.getClaimIndex().add(this);
 
         this.claimData.setLesserBoundaryCorner(BlockUtils.positionToString(this.lesserBoundaryCorner));
         this.claimData.setGreaterBoundaryCorner(BlockUtils.positionToString(this.greaterBoundaryCorner));
@@ -1417,10 +1413,6 @@ public ClaimResult resizeCuboid(int smallX, int smallY, int smallZ, int bigX, in
         this.lesserBoundaryCorner = newLesserCorner;
         this.greaterBoundaryCorner = newGreaterCorner;
 
-        // checkArea refreshes the current chunk hashes so it is important
-        // to make a copy before making the call
-        final Set<Long> currentChunkHashes = new HashSet<>(this.chunkHashes);
-
         final ClaimResult result = this.checkArea(true);
         if (!result.successful()) {
             this.lesserBoundaryCorner = currentLesserCorner;
@@ -1446,28 +1438,15 @@ public ClaimResult resizeCuboid(int smallX, int smallY, int smallZ, int bigX, in
 
         this.lesserBoundaryCorner = newLesserCorner;
         this.greaterBoundaryCorner = newGreaterCorner;
-        // resize validated, remove invalid chunkHashes
+        // resize validated, re-index the chunks covered by the new bounds
         final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
         if (this.parent == null) {
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(this);
-                }
-            }
-
-            final Set<Long> newChunkHashes = this.getChunkHashes(true);
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(this);
-            }
+            claimWorldManager.updateChunkHashes(this);
+            // chest claim expiration depends on the area
+            claimWorldManager.getExpirationQueue().update(this);
         }
+        this.updateOwnerClaimCost();
+        claimWorldManager.getClaimIndex().add(this);
 
         this.claimData.setLesserBoundaryCorner(BlockUtils.positionToString(this.lesserBoundaryCorner));
         this.claimData.setGreaterBoundaryCorner(BlockUtils.positionToString(this.greaterBoundaryCorner));
@@ -1663,7 +1642,7 @@ public void unload() {
         // clear any references
         this.world = null;
         if (this.ownerPlayerData != null) {
-            this.ownerPlayerData.getInternalClaims().remove(this);
+            this.ownerPlayerData.removeInternalClaim(this);
         }
     }
 
@@ -1862,8 +1841,7 @@ public ClaimResult changeType(ClaimType type, Optional<UUID> ownerUniqueId) {
         final String fileName = this.getClaimStorage().filePath.getFileName().toString();
         final Path newPath = this.getClaimStorage().folderPath.getParent().resolve(type.name().toLowerCase()).resolve(fileName);
         try {
-            Files.createDirectories(newPath.getParent());
-            Files.move(this.getClaimStorage().filePath, newPath);
+            GriefPreventionPlugin.instance.storageWriteQueue.move(this.getClaimStorage().filePath, newPath);
             this.setClaimStorage(new ClaimStorageData(newPath, this.getWorldUniqueId(), (ClaimDataConfig) this.getInternalClaimData()));
             this.getClaimStorage().save();
         } catch (IOException e) {
@@ -1874,17 +1852,12 @@ public ClaimResult changeType(ClaimType type, Optional<UUID> ownerUniqueId) {
         final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
         // If switched to admin or new owner, remove from player claim list
         if (type == ClaimType.ADMIN || !this.ownerUniqueId.equals(newOwnerUUID)) {
-            final List<Claim> currentPlayerClaims = claimWorldManager.getInternalPlayerClaims(this.ownerUniqueId);
-            if (currentPlayerClaims != null) {
-                currentPlayerClaims.remove(this);
-            }
-        }
-        if (type != ClaimType.ADMIN) {
-            final List<Claim> newPlayerClaims = claimWorldManager.getInternalPlayerClaims(newOwnerUUID);
-            if (newPlayerClaims != null && !newPlayerClaims.contains(this)) {
-                newPlayerClaims.add(this);
+            final GPPlayerData currentOwnerData = claimWorldManager.getPlayerDataMap().get(this.ownerUniqueId);
+            if (currentOwnerData != null) {
+                currentOwnerData.removeInternalClaim(this);
             }
         }
+        final GPPlayerData newOwnerData = type != ClaimType.ADMIN ? claimWorldManager.getPlayerDataMap().get(newOwnerUUID) : null;
 
         if (!this.isAdminClaim() && this.ownerPlayerData != null) {
             final Player player = Sponge.getServer().getPlayer(this.ownerUniqueId).orElse(null);
@@ -1907,15 +1880,25 @@ public ClaimResult changeType(ClaimType type, Optional<UUID> ownerUniqueId) {
             this.setOwnerUniqueId(newOwnerUUID);
         }
         this.setType(type);
+        // cost depends on the new type so the claim is added to its owner afterwards
+        if (newOwnerData != null) {
+            newOwnerData.addInternalClaim(this);
+        }
+        // the cost of a child depends on whether its parent is an admin claim
+        for (Claim child : this.children) {
+            ((GPClaim) child).updateOwnerClaimCost();
+        }
+        claimWorldManager.updateClaimIndexes(this);
         this.visualization = null;
         this.getInternalClaimData().setRequiresSave(true);
         this.getClaimStorage().save();
+        GPPermissionHandler.getPermissionCache().invalidate(this);
         return new GPClaimResult(ClaimResultType.SUCCESS);
     }
 
     public ClaimResult validateClaimType(ClaimType type, UUID newOwnerUUID, GPPlayerData playerData) {
         boolean isAdmin = false;
-        if (playerData != null && (playerData.canManageAdminClaims || playerData.canIgnoreClaim(this))) {
+        if (playerData != null && (playerData.getOptions().canManageAdminClaims || playerData.canIgnoreClaim(this))) {
             isAdmin = true;
         }
 
@@ -2002,7 +1985,10 @@ public List<UUID> getUserTrusts() {
 
     @Override
     public List<UUID> getUserTrusts(TrustType type) {
-        return ImmutableList.copyOf(this.getUserTrustList(type));
+        if (type == TrustType.NONE) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.copyOf(this.getUserTrustList(type, false));
     }
 
     @Override
@@ -2021,65 +2007,28 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
             return false;
         }
 
+        final long metricsStart = GPMetrics.start();
+        try {
+            return this.checkUserTrusted(user, type, contexts);
+        } finally {
+            GPMetrics.USER_TRUSTED.record(metricsStart, type == null ? null : type.toString(), this.getType(), this.world.getName());
+        }
+    }
+
+    private boolean checkUserTrusted(User user, TrustType type, Set<Context> contexts) {
         final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(world, user.getUniqueId());
-        if (!playerData.executingClaimDebug && !playerData.debugClaimPermissions) {
-            if (user.getUniqueId().equals(this.getOwnerUniqueId())) {
-                return true;
-            }
-            if (this.isAdminClaim() && playerData.canManageAdminClaims) {
-                return true;
-            }
-            if (this.isWilderness() && playerData.canManageWilderness) {
-                return true;
-            }
-            if (playerData.canIgnoreClaim(this)) {
-                return true;
-            }
+        if (this.isBypassTrusted(user, playerData)) {
+            return true;
         }
 
         if (type == null) {
             return true;
         }
-        if (this.isPublicTrusted(type)) {
+        // Includes public trust and the trust of inherited parents
+        if (this.getTrustIndex().isTrusted(user.getUniqueId(), type)) {
             return true;
         }
 
-        if (type == TrustType.ACCESSOR) {
-            if (this.claimData.getAccessors().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getContainers().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.BUILDER) {
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.CONTAINER) {
-            if (this.claimData.getContainers().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.MANAGER) {
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        }
-
         if (contexts == null) {
             contexts = new HashSet<>();
             contexts.add(this.getContext());
@@ -2090,53 +2039,72 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
         }
 
         // Only check parent if this claim inherits
-        if (this.parent != null && this.getData().doesInheritParent()) {
-            return this.parent.isUserTrusted(user, type, contexts);
+        GPClaim parentClaim = this.parent;
+        boolean inherit = this.getData().doesInheritParent();
+        while (parentClaim != null && inherit) {
+            if (parentClaim.isBypassTrusted(user, playerData)) {
+                return true;
+            }
+            inherit = parentClaim.getData().doesInheritParent();
+            parentClaim = parentClaim.parent;
         }
 
         return false;
     }
 
-    private boolean isPublicTrusted(TrustType type) {
-        if (type == TrustType.ACCESSOR) {
-            if (this.claimData.getAccessors().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getContainers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-        } else if (type == TrustType.BUILDER) {
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-        } else if (type == TrustType.CONTAINER) {
-            if (this.claimData.getContainers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-        } else if (type == TrustType.MANAGER) {
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
+    private boolean isBypassTrusted(User user, GPPlayerData playerData) {
+        if (playerData.executingClaimDebug || playerData.debugClaimPermissions) {
+            return false;
+        }
+
+        if (user.getUniqueId().equals(this.getOwnerUniqueId())) {
+            return true;
+        }
+        if (this.isAdminClaim() && playerData.getOptions().canManageAdminClaims) {
+            return true;
+        }
+        if (this.isWilderness() && playerData.getOptions().canManageWilderness) {
+            return true;
+        }
+        if (playerData.canIgnoreClaim(this)) {
+            return true;
         }
 
         return false;
     }
 
+    private ClaimTrustIndex getTrustIndex() {
+        final ClaimTrustIndex parentIndex = this.parent != null && this.getData().doesInheritParent() ? this.parent.getTrustIndex() : null;
+        if (this.trustIndex == null || !this.trustIndex.isValid(this.claimData, parentIndex)) {
+            this.trustIndex = new ClaimTrustIndex(this.claimData, parentIndex);
+        }
+
+        return this.trustIndex;
+    }
+
+    // Called after the user trust lists of this claim are modified, children pick up the change through their parent index
+    public void invalidateTrustIndex() {
+        this.trustIndex = null;
+    }
+
+    public ClaimContextSets getContextSets() {
+        if (this.contextSets == null || !this.contextSets.isValid()) {
+            final ClaimContextSets parentSets = this.parent != null ? this.parent.getContextSets() : null;
+            final boolean inheritParent = this.parent != null && this.getData().doesInheritParent();
+            this.contextSets = new ClaimContextSets(this, inheritParent, parentSets);
+        }
+
+        return this.contextSets;
+    }
+
+    // Called after the type, parent or inherit setting of this claim changed, child sets include those of their parent
+    public void invalidateContextSets() {
+        this.contextSets = null;
+        for (Claim child : this.children) {
+            ((GPClaim) child).invalidateContextSets();
+        }
+    }
+
     @Override
     public boolean isGroupTrusted(String group, TrustType type) {
         if (group == null) {
@@ -2413,7 +2381,17 @@ public ClaimResult removeAllTrustsFromGroup(String group) {
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
 
+    /**
+     * Gets the stored user trust list of a type.
+     *
+     * <p>Note: The returned list is live so the trust index is discarded
+     * as callers may modify it.</p>
+     *
+     * @param type The trust type
+     * @return The user trust list
+     */
     public List<UUID> getUserTrustList(TrustType type) {
+        this.invalidateTrustIndex();
         if (type == TrustType.NONE) {
             return new ArrayList<>();
         }
@@ -2855,6 +2833,7 @@ public boolean migrateClaims(List<Claim> claims) {
                 childClaim.parent.children.remove(child);
             }
             Path newPath = null;
+            childClaim.invalidateContextSets();
             if (this.isWilderness()) {
                 childClaim.parent = null;
                 childClaim.getClaimStorage().getConfig().setParent(null);
@@ -2867,8 +2846,7 @@ public boolean migrateClaims(List<Claim> claims) {
             }
 
             try {
-                Files.createDirectories(newPath.getParent());
-                Files.move(childClaim.getClaimStorage().filePath, newPath);
+                GriefPreventionPlugin.instance.storageWriteQueue.move(childClaim.getClaimStorage().filePath, newPath);
                 childClaim.setClaimStorage(new ClaimStorageData(newPath, this.getWorldUniqueId(), (ClaimDataConfig) childClaim.getInternalClaimData()));
                 childClaim.getClaimStorage().save();
             } catch (IOException e) {
@@ -2882,6 +2860,7 @@ public boolean migrateClaims(List<Claim> claims) {
             } else {
                 claimWorldManager.updateChunkHashes(childClaim);
             }
+            childClaim.updateOwnerClaimCost();
             // migrate admin children
             if (!childClaim.children.isEmpty()) {
                 childClaim.migrateClaims(new ArrayList<>(childClaim.children));
@@ -27,11 +27,12 @@
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import me.ryanhamshire.griefprevention.DataStore;
+import me.ryanhamshire.griefprevention.GPMetrics;
 import me.ryanhamshire.griefprevention.GPPlayerData;
-import me.ryanhamshire.griefprevention.GPTimings;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.api.claim.ClaimBlockSystem;
@@ -44,7 +45,10 @@
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
 import me.ryanhamshire.griefprevention.event.GPDeleteClaimEvent;
-import net.minecraft.util.math.ChunkPos;
+import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import me.ryanhamshire.griefprevention.util.EntityBlockCache;
+import me.ryanhamshire.griefprevention.visual.VisibleSurfaceCache;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.CauseStackManager;
@@ -57,15 +61,18 @@
 import org.spongepowered.api.world.storage.WorldProperties;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -81,8 +88,23 @@ public class GPClaimManager implements ClaimManager {
     private List<Claim> worldClaims = new ArrayList<>();
     // Claim UUID -> Claim
     private Map<UUID, Claim> claimUniqueIdMap = Maps.newHashMap();
-    // String -> Claim
-    private Map<Long, Set<Claim>> chunksToClaimsMap = new Long2ObjectOpenHashMap<>(4096);
+    // Owner UUID -> top level claims owned, excluding admin claims
+    private final Map<UUID, Set<Claim>> ownerClaimIndex = Maps.newHashMap();
+    // Lower case plain name -> named top level claims
+    private final Map<String, Set<Claim>> nameClaimIndex = Maps.newHashMap();
+    // Claim -> owner and name it is currently indexed under
+    private final Map<GPClaim, UUID> indexedOwners = Maps.newHashMap();
+    private final Map<GPClaim, String> indexedNames = Maps.newHashMap();
+    // Chunk coverage of top level claims only
+    private final ClaimIndex chunksToClaimsIndex = new ClaimIndex();
+    // Spatial index of all claims, including children
+    private final ClaimIndex claimIndex = new ClaimIndex();
+    // Top level claims ordered by expiry
+    private final ClaimExpirationQueue expirationQueue = new ClaimExpirationQueue(this);
+    private final EntityBlockCache entityBlockCache = new EntityBlockCache();
+    private final VisibleSurfaceCache visibleSurfaceCache = new VisibleSurfaceCache();
+    // Player storage parsed ahead of time during world load, consumed by createPlayerData
+    private Map<UUID, PlayerStorageData> preloadedPlayerStorage = Maps.newHashMap();
     private GPClaim theWildernessClaim;
 
     public GPClaimManager() {
@@ -105,60 +127,103 @@ public GPPlayerData getOrCreatePlayerData(UUID playerUniqueId) {
     }
 
     private GPPlayerData createPlayerData(UUID playerUniqueId) {
-        Path playerFilePath = null;
-        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
-            playerFilePath = DataStore.globalPlayerDataPath.resolve(playerUniqueId.toString());
-        } else {
-            playerFilePath = DataStore.worldConfigMap.get(this.worldProperties.getUniqueId()).getPath().getParent().resolve("PlayerData").resolve(playerUniqueId.toString());
+        PlayerStorageData playerStorage = this.preloadedPlayerStorage.remove(playerUniqueId);
+        if (playerStorage == null) {
+            playerStorage = new PlayerStorageData(this.getPlayerFilePath(playerUniqueId));
         }
-
-        PlayerStorageData playerStorage = new PlayerStorageData(playerFilePath);
         List<Claim> claimList = this.createPlayerClaimList(playerUniqueId);
         GPPlayerData playerData = new GPPlayerData(this.worldProperties, playerUniqueId, playerStorage, this.activeConfig, claimList);
         this.getPlayerDataMap().put(playerUniqueId, playerData);
         return playerData;
     }
 
+    private Path getPlayerFilePath(UUID playerUniqueId) {
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            return DataStore.globalPlayerDataPath.resolve(playerUniqueId.toString());
+        }
+
+        return DataStore.worldConfigMap.get(this.worldProperties.getUniqueId()).getPath().getParent().resolve("PlayerData").resolve(playerUniqueId.toString());
+    }
+
+    /**
+     * Parses the storage of players without loaded data in parallel so a
+     * following {@link #getOrCreatePlayerData} only has to register it.
+     *
+     * <p>Note: This must be called from the main thread.</p>
+     *
+     * @param playerUniqueIds The players to preload
+     */
+    public void preloadPlayerStorage(Collection<UUID> playerUniqueIds) {
+        final Map<UUID, Path> playerFilePaths = Maps.newHashMap();
+        for (UUID playerUniqueId : playerUniqueIds) {
+            if (!this.getPlayerDataMap().containsKey(playerUniqueId) && !this.preloadedPlayerStorage.containsKey(playerUniqueId)) {
+                playerFilePaths.put(playerUniqueId, this.getPlayerFilePath(playerUniqueId));
+            }
+        }
+
+        final Map<UUID, PlayerStorageData> playerStorages = playerFilePaths.entrySet().parallelStream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> new PlayerStorageData(entry.getValue())));
+        this.preloadedPlayerStorage.putAll(playerStorages);
+    }
+
+    public void clearPreloadedPlayerStorage() {
+        this.preloadedPlayerStorage.clear();
+    }
+
     private List<Claim> createPlayerClaimList(UUID playerUniqueId) {
-        List<Claim> claimList = new ArrayList<>();
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            List<Claim> claimList = new ArrayList<>();
             for (World world : Sponge.getServer().getWorlds()) {
-                GPClaimManager claimmanager = DATASTORE.getClaimWorldManager(world.getProperties());
-                for (Claim claim : claimmanager.worldClaims) {
-                    GPClaim gpClaim = (GPClaim) claim;
-                    if (gpClaim.isAdminClaim()) {
-                        continue;
-                    }
-                    if (gpClaim.parent != null) {
-                       if (gpClaim.parent.getOwnerUniqueId().equals(playerUniqueId)) {
-                           claimList.add(claim);
-                       }
-                    } else {
-                        if (gpClaim.getOwnerUniqueId().equals(playerUniqueId)) {
-                            claimList.add(claim);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Claim claim : this.worldClaims) {
-                GPClaim gpClaim = (GPClaim) claim;
-                if (gpClaim.isAdminClaim()) {
-                    continue;
-                }
-                if (gpClaim.parent != null) {
-                   if (gpClaim.parent.getOwnerUniqueId().equals(playerUniqueId)) {
-                       claimList.add(claim);
-                   }
-                } else {
-                    if (gpClaim.getOwnerUniqueId().equals(playerUniqueId)) {
-                        claimList.add(claim);
-                    }
-                }
+                claimList.addAll(DATASTORE.getClaimWorldManager(world.getProperties()).getOwnerClaims(playerUniqueId));
             }
+            return claimList;
         }
 
-        return claimList;
+        return new ArrayList<>(this.getOwnerClaims(playerUniqueId));
+    }
+
+    // Top level claims owned by the player in this world, excluding admin claims
+    public Set<Claim> getOwnerClaims(UUID playerUniqueId) {
+        final Set<Claim> claims = this.ownerClaimIndex.get(playerUniqueId);
+        return claims == null ? ImmutableSet.<Claim>of() : Collections.unmodifiableSet(claims);
+    }
+
+    // Re-indexes a top level claim under its current owner and name
+    public void updateClaimIndexes(GPClaim claim) {
+        this.removeClaimIndexes(claim);
+        if (claim.parent != null || claim.isWilderness() || !this.worldClaims.contains(claim)) {
+            return;
+        }
+
+        if (!claim.isAdminClaim() && claim.getOwnerUniqueId() != null) {
+            this.ownerClaimIndex.computeIfAbsent(claim.getOwnerUniqueId(), k -> new LinkedHashSet<>()).add(claim);
+            this.indexedOwners.put(claim, claim.getOwnerUniqueId());
+        }
+        final Text claimName = claim.getName().orElse(null);
+        if (claimName != null && !claimName.isEmpty()) {
+            final String name = claimName.toPlain().toLowerCase(Locale.ENGLISH);
+            this.nameClaimIndex.computeIfAbsent(name, k -> new LinkedHashSet<>()).add(claim);
+            this.indexedNames.put(claim, name);
+        }
+    }
+
+    private void removeClaimIndexes(GPClaim claim) {
+        final UUID owner = this.indexedOwners.remove(claim);
+        if (owner != null) {
+            final Set<Claim> claims = this.ownerClaimIndex.get(owner);
+            claims.remove(claim);
+            if (claims.isEmpty()) {
+                this.ownerClaimIndex.remove(owner);
+            }
+        }
+        final String name = this.indexedNames.remove(claim);
+        if (name != null) {
+            final Set<Claim> claims = this.nameClaimIndex.get(name);
+            claims.remove(claim);
+            if (claims.isEmpty()) {
+                this.nameClaimIndex.remove(name);
+            }
+        }
     }
 
     public void removePlayer(UUID playerUniqueId) {
@@ -209,16 +274,16 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
             return;
         }
 
+        this.claimIndex.add(claim);
         if (claim.parent != null) {
             claim.parent.children.add(claim);
             this.worldClaims.remove(claim);
             this.deleteChunkHashes((GPClaim) claim);
+            this.expirationQueue.remove(claim);
+            this.removeClaimIndexes(claim);
             if (!claim.isAdminClaim() && claim.isInTown() && !claim.getTownClaim().getOwnerUniqueId().equals(claim.getOwnerUniqueId())) {
                 final GPPlayerData playerData = this.getPlayerDataMap().get(claim.getOwnerUniqueId());
-                List<Claim> playerClaims = playerData.getInternalClaims();
-                if (!playerClaims.contains(claim)) {
-                    playerClaims.add(claim);
-                }
+                playerData.addInternalClaim(claim);
             }
             return;
         }
@@ -226,39 +291,31 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
         if (!this.worldClaims.contains(claim)) {
             this.worldClaims.add(claim);
         }
+        this.updateClaimIndexes(claim);
         final UUID ownerId = claim.getOwnerUniqueId();
         final GPPlayerData playerData = this.getPlayerDataMap().get(ownerId);
         if (playerData != null) {
-            List<Claim> playerClaims = playerData.getInternalClaims();
-            if (!playerClaims.contains(claim)) {
-                playerClaims.add(claim);
-            }
+            playerData.addInternalClaim(claim);
         } else if (!claim.isAdminClaim()) {
             this.createPlayerData(ownerId);
         }
 
         this.updateChunkHashes(claim);
+        this.expirationQueue.update(claim);
         return;
     }
 
+    // Re-indexes claim under the chunks its current bounds cover
     public void updateChunkHashes(GPClaim claim) {
-        this.deleteChunkHashes(claim);
-        Set<Long> chunkHashes = claim.getChunkHashes(true);
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null) {
-                claimsInChunk = new HashSet<Claim>();
-                this.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-            }
-
-            claimsInChunk.add(claim);
-        }
+        this.chunksToClaimsIndex.add(claim);
     }
 
     // Used when parent claims becomes children
     public void removeClaimData(Claim claim) {
         this.worldClaims.remove(claim);
         this.deleteChunkHashes((GPClaim) claim);
+        this.expirationQueue.remove((GPClaim) claim);
+        this.removeClaimIndexes((GPClaim) claim);
     }
 
     @Override
@@ -285,11 +342,11 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
             GPClaim childClaim = (GPClaim) child;
             ((GPClaim) claim).children.remove(childClaim);
             childClaim.parent = gpClaim.parent;
+            childClaim.invalidateContextSets();
             String fileName = childClaim.getClaimStorage().filePath.getFileName().toString();
             final Path newPath = gpClaim.getClaimStorage().filePath.getParent().getParent().resolve(childClaim.getType().name().toLowerCase()).resolve(fileName);
             try {
-                Files.createDirectories(newPath.getParent());
-                Files.move(childClaim.getClaimStorage().filePath, newPath);
+                GriefPreventionPlugin.instance.storageWriteQueue.move(childClaim.getClaimStorage().filePath, newPath);
                 childClaim.setClaimStorage(new ClaimStorageData(newPath, this.getWorldProperties().getUniqueId(), (ClaimDataConfig) childClaim.getInternalClaimData()));
                 if (childClaim.parent == null) {
                     this.addClaim(childClaim, false);
@@ -302,7 +359,7 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         // player may be offline so check is needed
         GPPlayerData playerData = this.getPlayerDataMap().get(claim.getOwnerUniqueId());
         if (playerData != null) {
-            playerData.getInternalClaims().remove(claim);
+            playerData.removeInternalClaim(claim);
             if (playerData.lastClaim != null) {
                 playerData.lastClaim.clear();
             }
@@ -324,6 +381,11 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         this.worldClaims.remove(claim);
         this.claimUniqueIdMap.remove(claim.getUniqueId());
         this.deleteChunkHashes((GPClaim) claim);
+        this.claimIndex.remove(gpClaim);
+        this.expirationQueue.remove(gpClaim);
+        this.removeClaimIndexes(gpClaim);
+        GPPermissionHandler.getPermissionCache().invalidate(gpClaim);
+        GPOptionHandler.getOptionCache().invalidate(gpClaim);
         if (gpClaim.parent != null) {
             gpClaim.parent.children.remove(claim);
         }
@@ -348,17 +410,7 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
     }
 
     private void deleteChunkHashes(GPClaim claim) {
-        Set<Long> chunkHashes = claim.getChunkHashes(false);
-        if (chunkHashes == null) {
-            return;
-        }
-
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk != null) {
-                claimsInChunk.remove(claim);
-            }
-        }
+        this.chunksToClaimsIndex.remove(claim);
     }
 
     @Nullable
@@ -416,13 +468,34 @@ public Map<UUID, GPPlayerData> getPlayerDataMap() {
         return this.playerDataList;
     }
 
+    // Only used by the API, internally use getTopLevelClaimsInChunk
     @Override
     public Map<Long, Set<Claim>> getChunksToClaimsMap() {
-        return ImmutableMap.copyOf(this.chunksToClaimsMap);
+        final ImmutableMap.Builder<Long, Set<Claim>> builder = ImmutableMap.builder();
+        for (Long2ObjectMap.Entry<GPClaim[]> entry : this.chunksToClaimsIndex.getChunkBuckets().long2ObjectEntrySet()) {
+            builder.put(entry.getLongKey(), ImmutableSet.<Claim>copyOf(entry.getValue()));
+        }
+        return builder.build();
     }
 
-    public Map<Long, Set<Claim>> getInternalChunksToClaimsMap() {
-        return this.chunksToClaimsMap;
+    public GPClaim[] getTopLevelClaimsInChunk(int chunkX, int chunkZ) {
+        return this.chunksToClaimsIndex.getClaimsInChunk(chunkX, chunkZ);
+    }
+
+    public ClaimIndex getClaimIndex() {
+        return this.claimIndex;
+    }
+
+    public ClaimExpirationQueue getExpirationQueue() {
+        return this.expirationQueue;
+    }
+
+    public EntityBlockCache getEntityBlockCache() {
+        return this.entityBlockCache;
+    }
+
+    public VisibleSurfaceCache getVisibleSurfaceCache() {
+        return this.visibleSurfaceCache;
     }
 
     public void save() {
@@ -441,7 +514,10 @@ public void unload() {
         this.playerDataList.clear();
         this.worldClaims.clear();
         this.claimUniqueIdMap.clear();
-        this.chunksToClaimsMap.clear();
+        this.chunksToClaimsIndex.clear();
+        this.claimIndex.clear();
+        this.entityBlockCache.clear();
+        this.visibleSurfaceCache.clear();
         if (this.theWildernessClaim != null) {
             this.theWildernessClaim.unload();
             this.theWildernessClaim = null;
@@ -461,75 +537,42 @@ public Claim getClaimAt(Location<World> location) {
     // gets the claim at a specific location
     // ignoreHeight = TRUE means that a location UNDER an existing claim will return the claim
     public Claim getClaimAt(Location<World> location, GPClaim cachedClaim) {
-        //GPTimings.CLAIM_GETCLAIM.startTimingIfSync();
+        final long metricsStart = GPMetrics.start();
         // check cachedClaim guess first. if the location is inside it, we're done
         if (cachedClaim != null && !cachedClaim.isWilderness() && cachedClaim.contains(location, true)) {
-           // GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
+            GPMetrics.recordClaimGuess(metricsStart, true);
+            GPMetrics.CLAIM_GETCLAIM.record(metricsStart, null, cachedClaim.getType(), location.getExtent().getName());
             return cachedClaim;
         }
+        if (cachedClaim != null) {
+            GPMetrics.recordClaimGuess(metricsStart, false);
+        }
 
-        Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(ChunkPos.asLong(location.getBlockX() >> 4, location.getBlockZ() >> 4));
-        if (claimsInChunk == null) {
-            //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-            return this.getWildernessClaim();
-        }
-
-        // TODO change to check deepest level and work its way up to root
-        for (Claim claim : claimsInChunk) {
-            final GPClaim gpClaim = (GPClaim) claim;
-            if (gpClaim.contains(location)) {
-                // when we find a top level claim, if the location is in one of its children,
-                // return the child claim, not the top level claim
-                for (int i = 0; i < gpClaim.children.size(); i++) {
-                    GPClaim child = (GPClaim) gpClaim.children.get(i);
-                    // check if child has children (Town -> Basic -> Subdivision)
-                    for (int j = 0; j < child.children.size(); j++) {
-                        GPClaim innerChild = (GPClaim) child.children.get(j);
-                        for (int k = 0; k < innerChild.children.size(); k++) {
-                            Claim subChild = innerChild.children.get(k);
-                            if (subChild.contains(location)) {
-                               // GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                                return subChild;
-                            }
-                        }
-
-                        if (innerChild.contains(location)) {
-                            //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                            return innerChild;
-                        }
-                    }
-                    if (child.contains(location)) {
-                        //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                        return child;
-                    }
-                }
-
-                //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                return gpClaim;
-            }
+        GPClaim claim = this.claimIndex.getDeepestClaimAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if (claim == null) {
+            // if no claim found, return the world claim
+            claim = this.getWildernessClaim();
         }
 
-        //GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-        // if no claim found, return the world claim
-        return this.getWildernessClaim();
+        GPMetrics.CLAIM_GETCLAIM.record(metricsStart, null, claim.getType(), location.getExtent().getName());
+        return claim;
     }
 
     @Override
     public List<Claim> getClaimsByName(String name) {
         List<Claim> claimList = new ArrayList<>();
-        for (Claim worldClaim : this.getWorldClaims()) {
-            Text claimName = worldClaim.getName().orElse(null);
-            if (claimName != null && !claimName.isEmpty()) {
-                if (claimName.toPlain().equalsIgnoreCase(name)) {
-                    claimList.add(worldClaim);
-                }
-            }
-            // check children
-            for (Claim child : ((GPClaim) worldClaim).getChildren(true)) {
-                if (child.getUniqueId().toString().equals(name)) {
-                    claimList.add(child);
-                }
+        final Set<Claim> namedClaims = this.nameClaimIndex.get(name.toLowerCase(Locale.ENGLISH));
+        if (namedClaims != null) {
+            claimList.addAll(namedClaims);
+        }
+        // children are matched by their unique id
+        try {
+            final GPClaim child = (GPClaim) this.claimUniqueIdMap.get(UUID.fromString(name));
+            if (child != null && child.parent != null) {
+                claimList.add(child);
             }
+        } catch (IllegalArgumentException e) {
+            // not a unique id
         }
         return claimList;
     }
@@ -576,8 +619,8 @@ public void resetPlayerData() {
             if (newAccruedBlocks < 0) {
                 newAccruedBlocks = 0;
             }
-            if (newAccruedBlocks > playerData.optionMaxAccruedBlocks) {
-                newAccruedBlocks = playerData.optionMaxAccruedBlocks;
+            if (newAccruedBlocks > playerData.getOptions().maxAccruedBlocks) {
+                newAccruedBlocks = playerData.getOptions().maxAccruedBlocks;
             }
             playerStorage.getConfig().setAccruedClaimBlocks(newAccruedBlocks);
             playerStorage.save();
@@ -133,12 +133,12 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
                 GriefPreventionPlugin.addLogEntry(
                         player.getName() + " abandoned a " + claim.getType() + " @ " + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()));
                 GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimCleanupWarning.toText());
-                GriefPreventionPlugin.instance.restoreClaim(claim, 20L * 60 * 2);
+                GriefPreventionPlugin.instance.restoreClaim(claim, 20L * 60 * 2, player);
             }
 
             // this prevents blocks being gained without spending adjust claim blocks when abandoning a top level claim
             if (!claim.isSubdivision() && !claim.isAdminClaim()) {
-                int newAccruedClaimCount = playerData.getAccruedClaimBlocks() - ((int) Math.ceil(claim.getClaimBlocks() * (1 - playerData.optionAbandonReturnRatioBasic)));
+                int newAccruedClaimCount = playerData.getAccruedClaimBlocks() - ((int) Math.ceil(claim.getClaimBlocks() * (1 - playerData.getOptions().abandonReturnRatioBasic)));
                 playerData.setAccruedClaimBlocks(newAccruedClaimCount);
             }
 
@@ -108,7 +108,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             // if in a creative mode world, /restorenature the claim
             if (GriefPreventionPlugin.instance
                 .claimModeIsActive(claim.getLesserBoundaryCorner().getExtent().getProperties(), ClaimsMode.Creative)) {
-                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
+                GriefPreventionPlugin.instance.restoreClaim(claim, 0, player);
             }
 
             GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimDeleted.toText());
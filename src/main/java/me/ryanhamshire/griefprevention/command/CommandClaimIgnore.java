@@ -29,6 +29,7 @@
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -51,7 +52,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
 
         final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
         final GPClaim claim = GriefPreventionPlugin.instance.dataStore.getClaimAt(player.getLocation());
-        if (claim.isBasicClaim() && !playerData.ignoreBasicClaims || claim.isWilderness() && !playerData.ignoreWilderness || claim.isAdminClaim() && !playerData.ignoreAdminClaims) {
+        if (claim.isBasicClaim() && !playerData.getOptions().ignoreBasicClaims || claim.isWilderness() && !playerData.getOptions().ignoreWilderness || claim.isAdminClaim() && !playerData.getOptions().ignoreAdminClaims) {
             final Text message = GriefPreventionPlugin.instance.messageData.permissionClaimIgnore
                     .apply(ImmutableMap.of(
                     "type", claim.getType().name())).build();
@@ -60,6 +61,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         }
 
         playerData.ignoreClaims = !playerData.ignoreClaims;
+        GPPermissionHandler.getPermissionCache().invalidate(player.getUniqueId());
 
         // toggle ignore claims mode on or off
         if (!playerData.ignoreClaims) {
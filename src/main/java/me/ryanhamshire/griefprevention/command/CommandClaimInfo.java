@@ -34,6 +34,7 @@
 import me.ryanhamshire.griefprevention.api.claim.TrustType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandResult;
@@ -591,6 +592,7 @@ private static Consumer<CommandSource> createClaimInfoConsumer(CommandSource src
 
                     gpClaim.getInternalClaimData().setInheritParent(!gpClaim.getInternalClaimData().doesInheritParent());
                     gpClaim.getInternalClaimData().setRequiresSave(true);
+                    GPPermissionHandler.getPermissionCache().invalidate(gpClaim);
                     claim.getData().save();
                     CommandHelper.executeCommand(src, "claiminfo", gpClaim.getUniqueId().toString());
                     return;
@@ -598,6 +600,7 @@ private static Consumer<CommandSource> createClaimInfoConsumer(CommandSource src
                     gpClaim.getInternalClaimData().setExpiration(!gpClaim.getInternalClaimData().allowExpiration());
                     gpClaim.getInternalClaimData().setRequiresSave(true);
                     gpClaim.getClaimStorage().save();
+                    GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(gpClaim.getWorld().getProperties()).getExpirationQueue().update(gpClaim);
                     break;
                 case DENY_MESSAGES :
                     gpClaim.getInternalClaimData().setDenyMessages(!gpClaim.getInternalClaimData().allowDenyMessages());
@@ -608,6 +611,7 @@ private static Consumer<CommandSource> createClaimInfoConsumer(CommandSource src
                     gpClaim.getInternalClaimData().setFlagOverrides(!gpClaim.getInternalClaimData().allowFlagOverrides());
                     gpClaim.getInternalClaimData().setRequiresSave(true);
                     gpClaim.getClaimStorage().save();
+                    GPPermissionHandler.getPermissionCache().invalidate(gpClaim);
                     break;
                 case PVP_OVERRIDE :
                     Tristate value = gpClaim.getInternalClaimData().getPvpOverride();
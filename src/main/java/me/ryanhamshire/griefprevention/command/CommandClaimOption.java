@@ -77,6 +77,7 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
 
         final Double value = args.<Double>getOne("value").orElse(null);
         Set<Context> contexts = new HashSet<>();
+        GPClaim contextClaim = null;
         if (!isGlobalOption) {
             final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
             final GPClaim claim = GriefPreventionPlugin.instance.dataStore.getClaimAtPlayer(playerData, player.getLocation());
@@ -113,6 +114,7 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
                     return CommandResult.success();
                 }
                 contexts.add(claim.getContext());
+                contextClaim = claim;
             }
         }
 
@@ -136,10 +138,19 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
        }
 
        final String flagOption = option;
+       final GPClaim optionClaim = contextClaim;
        GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().setOption(contexts, option, value.toString())
            .thenAccept(consumer -> {
                if (consumer.booleanValue()) {
                    GriefPreventionPlugin.sendMessage(src, Text.of("Set option ", TextColors.AQUA, flagOption, TextColors.WHITE, " to ", TextColors.GREEN, value, TextColors.WHITE, " on group ", TextColors.GOLD, GriefPreventionPlugin.GLOBAL_SUBJECT.getIdentifier(), TextColors.WHITE, "."));
+                   Sponge.getScheduler().createTaskBuilder().execute(() -> {
+                       if (optionClaim != null) {
+                           GPOptionHandler.getOptionCache().invalidate(optionClaim);
+                       } else {
+                           // options without a claim context are also part of every player's option snapshot
+                           GriefPreventionPlugin.instance.dataStore.refreshAllPlayerOptions();
+                       }
+                   }).submit(GriefPreventionPlugin.instance);
                } else {
                    GriefPreventionPlugin.sendMessage(src, Text.of(TextColors.RED, "The permission plugin failed to set the option."));
                }
@@ -149,6 +149,8 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
             .thenAccept(consumer -> {
                 if (consumer.booleanValue()) {
                     GriefPreventionPlugin.sendMessage(src, Text.of("Set option ", TextColors.AQUA, flagOption, TextColors.WHITE, " to ", TextColors.GREEN, value, TextColors.WHITE, " on group ", TextColors.GOLD, subj.getIdentifier(), TextColors.WHITE, "."));
+                    Sponge.getScheduler().createTaskBuilder().execute(() -> GriefPreventionPlugin.instance.dataStore.refreshAllPlayerOptions())
+                        .submit(GriefPreventionPlugin.instance);
                 } else {
                     GriefPreventionPlugin.sendMessage(src, Text.of(TextColors.RED, "The permission plugin failed to set the option."));
                 }
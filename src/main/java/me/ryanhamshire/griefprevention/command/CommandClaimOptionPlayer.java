@@ -144,6 +144,8 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
             .thenAccept(consumer -> {
                 if (consumer.booleanValue()) {
                     GriefPreventionPlugin.sendMessage(src, Text.of("Set option ", TextColors.AQUA, flagOption, TextColors.WHITE, " to ", TextColors.GREEN, newOptionValue, TextColors.WHITE, " on user ", TextColors.GOLD, user.getName(), TextColors.WHITE, "."));
+                    Sponge.getScheduler().createTaskBuilder().execute(() -> GriefPreventionPlugin.instance.dataStore.refreshPlayerOptions(user.getUniqueId()))
+                        .submit(GriefPreventionPlugin.instance);
                 } else {
                     GriefPreventionPlugin.sendMessage(src, Text.of(TextColors.RED, "The permission plugin failed to set the option."));
                 }
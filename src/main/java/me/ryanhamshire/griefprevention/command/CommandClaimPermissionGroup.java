@@ -29,6 +29,7 @@
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
 import org.spongepowered.api.Sponge;
@@ -84,10 +85,10 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
         final Text message = GriefPreventionPlugin.instance.messageData.permissionClaimManage
                 .apply(ImmutableMap.of(
                 "type", claim.getType().name())).build();
-        if (claim.isWilderness() && !playerData.canManageWilderness) {
+        if (claim.isWilderness() && !playerData.getOptions().canManageWilderness) {
             GriefPreventionPlugin.sendMessage(src, message);
             return CommandResult.success();
-        } else if (claim.isAdminClaim() && !playerData.canManageAdminClaims) {
+        } else if (claim.isAdminClaim() && !playerData.getOptions().canManageAdminClaims) {
             GriefPreventionPlugin.sendMessage(src, message);
             return CommandResult.success();
         }
@@ -120,6 +121,8 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
         }
 
         subj.getSubjectData().setPermission(contexts, permission, tristateValue);
+        GPPermissionHandler.getPermissionCache().invalidateAll();
+        GriefPreventionPlugin.instance.dataStore.refreshAllPlayerOptions();
         GriefPreventionPlugin.sendMessage(src, Text.of("Set permission ", TextColors.AQUA, permission, TextColors.WHITE, " to ", TextColors.GREEN, value, TextColors.WHITE, " on group ", TextColors.GOLD, subj.getIdentifier(), TextColors.WHITE, "."));
         return CommandResult.success();
     }
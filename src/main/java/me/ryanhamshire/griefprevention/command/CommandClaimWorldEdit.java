@@ -100,8 +100,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             } else {
                 if (result.getResultType() == ClaimResultType.OVERLAPPING_CLAIM) {
                     GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimCreateOverlapShort.toText());
-                    List<Claim> claims = new ArrayList<>();
-                    claims.add(result.getClaim().get());
+                    List<Claim> claims = new ArrayList<>(result.getClaims());
                     CommandHelper.showClaims(player, claims, 0, true);
                     GPTimings.PLAYER_HANDLE_SHOVEL_ACTION.stopTimingIfSync();
                 }
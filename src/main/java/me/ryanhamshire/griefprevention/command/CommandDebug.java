@@ -26,6 +26,9 @@
 
 import me.ryanhamshire.griefprevention.GPDebugData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.configuration.StorageWriteQueue;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
@@ -79,6 +82,20 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             GriefPreventionPlugin.instance.getDebugUserMap().put(src.getIdentifier(), debugData);
         }
 
+        final GPPermissionCache permissionCache = GPPermissionHandler.getPermissionCache();
+        src.sendMessage(Text.of(
+                GP_TEXT, TextColors.GRAY, "Permission cache: ", TextColors.WHITE, permissionCache.size(), " entries", " | ",
+                TextColors.GRAY, "Hits: ", TextColors.GREEN, permissionCache.getHits(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Misses: ", TextColors.RED, permissionCache.getMisses(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Evictions: ", TextColors.GOLD, permissionCache.getEvictions(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Hit rate: ", TextColors.AQUA, String.format("%.1f%%", permissionCache.getHitRate() * 100)));
+        final StorageWriteQueue storageWriteQueue = GriefPreventionPlugin.instance.storageWriteQueue;
+        src.sendMessage(Text.of(
+                GP_TEXT, TextColors.GRAY, "Storage writes: ", TextColors.WHITE, storageWriteQueue.getPendingWrites(), " pending (max ", storageWriteQueue.getMaxPendingWrites(), ")", " | ",
+                TextColors.GRAY, "Written: ", TextColors.GREEN, storageWriteQueue.getCompletedWrites(), " in ", storageWriteQueue.getBatches(), " batches", TextColors.WHITE, " | ",
+                TextColors.GRAY, "Coalesced: ", TextColors.AQUA, storageWriteQueue.getCoalescedWrites(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Queue full: ", TextColors.GOLD, storageWriteQueue.getCallerWrites(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Failed: ", TextColors.RED, storageWriteQueue.getFailedWrites(), " (", storageWriteQueue.getRetriedWrites(), " retried)"));
         return CommandResult.success();
     }
 
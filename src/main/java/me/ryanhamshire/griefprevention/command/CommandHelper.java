@@ -51,6 +51,7 @@
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.util.TaskUtils;
@@ -341,7 +342,7 @@ public static FlagResult applyFlagPermission(CommandSource src, Subject subject,
             Player player = (Player) src;
             GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
             Tristate result = Tristate.UNDEFINED;
-            if (playerData.canManageAdminClaims) {
+            if (playerData.getOptions().canManageAdminClaims) {
                 result = Tristate.fromBoolean(src.hasPermission(GPPermissions.ADMIN_CLAIM_FLAGS + "." + basePermission));
             } else if (GriefPreventionPlugin.getActiveConfig(player.getWorld().getProperties()).getConfig().flags.getUserClaimFlags().contains(basePermission)) {
                 result = Tristate.fromBoolean(src.hasPermission(GPPermissions.USER_CLAIM_FLAGS + "." + basePermission));
@@ -425,6 +426,7 @@ public static FlagResult applyFlagPermission(CommandSource src, Subject subject,
             }
 
             GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().setPermission(contexts, flagPermission, value);
+            invalidatePermissionCache(claim, contexts);
             if (!clicked) {
                 src.sendMessage(Text.of(Text.builder()
                     .append(Text.of(TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -447,6 +449,7 @@ TextColors.LIGHT_PURPLE, getClickableText(src, GriefPreventionPlugin.GLOBAL_SUBJ
             }
 
             subject.getSubjectData().setPermission(contexts, flagPermission, value);
+            invalidatePermissionCache(claim, contexts);
             if (!clicked) {
                 src.sendMessage(Text.of(Text.builder()
                         .append(Text.of(TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -463,6 +466,14 @@ TextColors.LIGHT_PURPLE, getClickableText(src, subject, subjectName, contexts, f
         return new GPFlagResult(FlagResultType.SUCCESS);
     }
 
+    private static void invalidatePermissionCache(GPClaim claim, Set<Context> contexts) {
+        if (contexts.contains(claim.getContext())) {
+            GPPermissionHandler.getPermissionCache().invalidate(claim);
+        } else {
+            GPPermissionHandler.getPermissionCache().invalidateAll();
+        }
+    }
+
     public static TextColor getFlagTypeColor(FlagType type) {
         TextColor color = TextColors.LIGHT_PURPLE;
         if (type == FlagType.CLAIM) {
@@ -494,6 +505,7 @@ public static Consumer<CommandSource> createFlagConsumer(CommandSource src, Subj
             String target = flagPermission.replace(GPPermissions.FLAG_BASE + ".",  "");
             Set<Context> newContexts = new HashSet<>(contexts);
             subject.getSubjectData().setPermission(newContexts, flagPermission, newValue);
+            GPPermissionHandler.getPermissionCache().invalidateAll();
             src.sendMessage(Text.of(
                     TextColors.GREEN, "Set ", flagTypeText, " permission ", 
                     TextColors.AQUA, target, 
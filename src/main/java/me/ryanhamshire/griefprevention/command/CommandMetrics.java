@@ -0,0 +1,100 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.GPMetrics;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+public class CommandMetrics implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        final String action = ctx.<String>getOne("action").orElse(null);
+        if ("reset".equalsIgnoreCase(action)) {
+            GPMetrics.reset();
+            src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.GREEN, "Metrics reset."));
+            return CommandResult.success();
+        }
+        if ("dump".equalsIgnoreCase(action)) {
+            this.dump(src);
+            return CommandResult.success();
+        }
+
+        if (!GPMetrics.enabled) {
+            src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.RED, "Metrics are disabled in the global config."));
+        }
+        src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.GRAY, "Recorded over ", TextColors.WHITE,
+                (System.currentTimeMillis() - GPMetrics.getStartTime()) / 1000L, " seconds", TextColors.GRAY, ", latencies in microseconds"));
+        for (GPMetrics.Metric metric : GPMetrics.getMetrics()) {
+            final GPMetrics.Histogram histogram = metric.getTotal();
+            src.sendMessage(Text.of(
+                    TextColors.AQUA, metric.getName(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Count: ", TextColors.WHITE, histogram.getCount(), " | ",
+                    TextColors.GRAY, "Mean: ", TextColors.GREEN, String.format("%.2f", histogram.getMean() / 1000d), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "p50: ", TextColors.GREEN, String.format("%.2f", histogram.getPercentile(0.5) / 1000d), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "p99: ", TextColors.GOLD, String.format("%.2f", histogram.getPercentile(0.99) / 1000d), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Max: ", TextColors.RED, String.format("%.2f", histogram.getMaxNanos() / 1000d)));
+        }
+        final GPPermissionCache permissionCache = GPPermissionHandler.getPermissionCache();
+        src.sendMessage(Text.of(
+                TextColors.GRAY, "Permission cache hit rate: ", TextColors.AQUA, String.format("%.1f%%", permissionCache.getHitRate() * 100), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Cached claim guess hit rate: ", TextColors.AQUA, String.format("%.1f%%", GPMetrics.getClaimGuessHitRate() * 100)));
+        src.sendMessage(Text.of(TextColors.GRAY, "Use ", TextColors.WHITE, "/gpmetrics dump", TextColors.GRAY, " for the per flag, claim type and world breakdown."));
+        return CommandResult.success();
+    }
+
+    private void dump(CommandSource src) {
+        final List<String> report = GPMetrics.createReport();
+        final String fileName = "metrics-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt";
+        final Path path = GriefPreventionPlugin.instance.getConfigPath().resolve("metrics").resolve(fileName);
+        // report is built on the main thread, only the write happens async
+        GriefPreventionPlugin.instance.executor.execute(() -> {
+            try {
+                Files.createDirectories(path.getParent());
+                Files.write(path, report, StandardCharsets.UTF_8);
+                src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.GREEN, "Metrics written to ", TextColors.WHITE, path.toString()));
+            } catch (IOException e) {
+                e.printStackTrace();
+                src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.RED, "Could not write metrics : ", TextColors.WHITE, e.getMessage()));
+            }
+        });
+    }
+}
@@ -99,17 +99,17 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             }
         }
         Text claimSizeLimit = Text.of(TextColors.GRAY, "none");
-        if (playerData.optionMaxClaimSizeBasicX != 0 || playerData.optionMaxClaimSizeBasicY != 0 || playerData.optionMaxClaimSizeBasicZ != 0) {
-            claimSizeLimit = Text.of(TextColors.GRAY, playerData.optionMaxClaimSizeBasicX + "," + playerData.optionMaxClaimSizeBasicY + "," + playerData.optionMaxClaimSizeBasicZ);
+        if (playerData.getOptions().maxClaimSizeBasicX != 0 || playerData.getOptions().maxClaimSizeBasicY != 0 || playerData.getOptions().maxClaimSizeBasicZ != 0) {
+            claimSizeLimit = Text.of(TextColors.GRAY, playerData.getOptions().maxClaimSizeBasicX + "," + playerData.getOptions().maxClaimSizeBasicY + "," + playerData.getOptions().maxClaimSizeBasicZ);
         }
 
         Text townTaxRate = Text.of(
-                TextColors.GRAY, "TOWN", TextColors.WHITE, " : ", TextColors.GREEN, playerData.optionTaxRateTown, 
-                TextColors.GRAY, " BASIC", TextColors.WHITE, " : ", TextColors.GREEN, playerData.optionTaxRateTownBasic, 
-                TextColors.GRAY, " SUB", TextColors.WHITE, " : ", TextColors.GREEN, playerData.optionTaxRateTownSubdivision);
+                TextColors.GRAY, "TOWN", TextColors.WHITE, " : ", TextColors.GREEN, playerData.getOptions().taxRateTown, 
+                TextColors.GRAY, " BASIC", TextColors.WHITE, " : ", TextColors.GREEN, playerData.getOptions().taxRateTownBasic, 
+                TextColors.GRAY, " SUB", TextColors.WHITE, " : ", TextColors.GREEN, playerData.getOptions().taxRateTownSubdivision);
         Text claimTaxRate = Text.of(
-                TextColors.GRAY, "BASIC", TextColors.WHITE, " : ", TextColors.GREEN, playerData.optionTaxRateBasic, 
-                TextColors.GRAY, " SUB", TextColors.WHITE, " : ", TextColors.GREEN, playerData.optionTaxRateSubdivision);
+                TextColors.GRAY, "BASIC", TextColors.WHITE, " : ", TextColors.GREEN, playerData.getOptions().taxRateBasic, 
+                TextColors.GRAY, " SUB", TextColors.WHITE, " : ", TextColors.GREEN, playerData.getOptions().taxRateSubdivision);
         Text currentTaxRateText = Text.of(TextColors.YELLOW, "Current Claim Tax Rate", TextColors.WHITE, " : ", TextColors.RED, "N/A");
         if (src instanceof Player) {
             Player player = (Player) src;
@@ -128,9 +128,9 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         final Text uuidText = Text.of(TextColors.YELLOW, "UUID", WHITE_SEMI_COLON, TextColors.GRAY, user.getUniqueId());
         final Text worldText = Text.of(TextColors.YELLOW, "World", WHITE_SEMI_COLON, TextColors.GRAY, worldProperties.getWorldName());
         final Text sizeLimitText = Text.of(TextColors.YELLOW, "Claim Size Limits", WHITE_SEMI_COLON, claimSizeLimit);
-        final Text initialBlockText = Text.of(TextColors.YELLOW, "Initial Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.optionInitialClaimBlocks);
-        final Text accruedBlockText = Text.of(TextColors.YELLOW, "Accrued Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getAccruedClaimBlocks(), TextColors.GRAY, " (", TextColors.LIGHT_PURPLE, playerData.optionBlocksAccruedPerHour, TextColors.WHITE, " per hour", TextColors.GRAY, ")");
-        final Text maxAccruedBlockText = Text.of(TextColors.YELLOW, "Max Accrued Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.optionMaxAccruedBlocks);
+        final Text initialBlockText = Text.of(TextColors.YELLOW, "Initial Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getOptions().initialClaimBlocks);
+        final Text accruedBlockText = Text.of(TextColors.YELLOW, "Accrued Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getAccruedClaimBlocks(), TextColors.GRAY, " (", TextColors.LIGHT_PURPLE, playerData.getOptions().blocksAccruedPerHour, TextColors.WHITE, " per hour", TextColors.GRAY, ")");
+        final Text maxAccruedBlockText = Text.of(TextColors.YELLOW, "Max Accrued Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getOptions().maxAccruedBlocks);
         final Text bonusBlockText = Text.of(TextColors.YELLOW, "Bonus Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getBonusClaimBlocks());
         final Text remainingBlockText = Text.of(TextColors.YELLOW, "Remaining Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getRemainingClaimBlocks());
         final Text minLevelText = Text.of(TextColors.YELLOW, "Minimum Claim Level", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getMinClaimLevel());
@@ -139,7 +139,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         final Text globalTownTaxText = Text.of(TextColors.YELLOW, "Global Town Tax Rate", WHITE_SEMI_COLON, TextColors.GREEN, townTaxRate);
         final Text globalClaimTaxText = Text.of(TextColors.YELLOW, "Global Claim Tax Rate", WHITE_SEMI_COLON, TextColors.GREEN, claimTaxRate);
         final Text totalTaxText = Text.of(TextColors.YELLOW, "Total Tax", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getTotalTax());
-        final Text totalBlockText = Text.of(TextColors.YELLOW, "Total Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.optionInitialClaimBlocks + playerData.getAccruedClaimBlocks() + playerData.getBonusClaimBlocks());
+        final Text totalBlockText = Text.of(TextColors.YELLOW, "Total Blocks", WHITE_SEMI_COLON, TextColors.GREEN, playerData.getOptions().initialClaimBlocks + playerData.getAccruedClaimBlocks() + playerData.getBonusClaimBlocks());
         final Text totalClaimableChunkText = Text.of(TextColors.YELLOW, "Total Claimable Chunks", WHITE_SEMI_COLON, TextColors.GREEN, Math.round(claimableChunks * 100.0)/100.0);
         final Text totalClaimText = Text.of(TextColors.YELLOW, "Total Claims", WHITE_SEMI_COLON, TextColors.GREEN, claimList.size());
 
@@ -0,0 +1,80 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.GPPlayerData;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+public class CommandVerifyClaimBlocks implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        final boolean fix = ctx.<String>getOne("action").isPresent();
+        // player data is shared between worlds when global player storage is used
+        final Set<GPPlayerData> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+        int mismatches = 0;
+        for (GPClaimManager claimManager : GriefPreventionPlugin.instance.dataStore.getClaimWorldManagers()) {
+            for (GPPlayerData playerData : claimManager.getPlayerDataMap().values()) {
+                if (!checked.add(playerData)) {
+                    continue;
+                }
+
+                final int cachedCost = playerData.getTotalClaimsCost();
+                final int actualCost = playerData.recalculateTotalClaimsCost();
+                if (cachedCost == actualCost) {
+                    continue;
+                }
+
+                mismatches++;
+                src.sendMessage(Text.of(TextColors.AQUA, playerData.getPlayerName(), TextColors.GRAY, " in ", TextColors.WHITE,
+                        playerData.worldProperties.getWorldName(), TextColors.GRAY, ": cached ", TextColors.RED, cachedCost,
+                        TextColors.GRAY, ", actual ", TextColors.GREEN, actualCost));
+                if (fix) {
+                    playerData.resetClaimCosts();
+                }
+            }
+        }
+
+        if (mismatches == 0) {
+            src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.GREEN, "Claim block totals of ", TextColors.WHITE, checked.size(),
+                    TextColors.GREEN, " players are correct."));
+        } else {
+            src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.RED, mismatches, " of ", checked.size(), " players had wrong claim block totals",
+                    fix ? "; they were recalculated." : Text.of(". Use ", TextColors.WHITE, "/gpverifyclaimblocks fix", TextColors.RED, " to recalculate them.")));
+        }
+        return CommandResult.success();
+    }
+}
@@ -27,8 +27,8 @@
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.Maps;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
-import me.ryanhamshire.griefprevention.api.data.EconomyData;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.configuration.category.ConfigCategory;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import ninja.leaping.configurate.objectmapping.Setting;
@@ -44,6 +44,8 @@
 import java.util.Optional;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 @ConfigSerializable
 public class ClaimDataConfig extends ConfigCategory implements IClaimData {
 
@@ -52,6 +54,8 @@ public class ClaimDataConfig extends ConfigCategory implements IClaimData {
     private Vector3i greaterPos;
     private Vector3i spawnPos;
     private ClaimStorageData claimStorage;
+    // The claim this data belongs to, notified of changes it caches
+    @Nullable private GPClaim claim;
 
     @Setting
     private UUID parent;
@@ -391,6 +395,9 @@ public void setDateLastActive(Instant date) {
     public void setName(Text name) {
         this.requiresSave = true;
         this.claimName = name;
+        if (this.claim != null) {
+            ((GPClaimManager) this.claim.getClaimManager()).updateClaimIndexes(this.claim);
+        }
     }
 
     @Override
@@ -474,6 +481,9 @@ public boolean doesInheritParent() {
     public void setInheritParent(boolean flag) {
         this.requiresSave = true;
         this.inheritParent = flag;
+        if (this.claim != null) {
+            this.claim.invalidateContextSets();
+        }
     }
 
     @Override
@@ -492,6 +502,10 @@ public void setClaimStorageData(ClaimStorageData claimStorage) {
         this.claimStorage = claimStorage;
     }
 
+    public void setClaim(@Nullable GPClaim claim) {
+        this.claim = claim;
+    }
+
     @Override
     public void save() {
         this.claimStorage.save();
@@ -517,6 +531,10 @@ public boolean requiresClaimBlocks() {
     public void setRequiresClaimBlocks(boolean requiresClaimBlocks) {
         this.requiresSave = true;
         this.requiresClaimBlocks = requiresClaimBlocks;
+        // no-op until the claim is registered with its owner
+        if (this.claim != null) {
+            this.claim.updateOwnerClaimCost();
+        }
     }
 
     @Override
@@ -539,7 +557,7 @@ public void setExpired(boolean expire) {
     }
 
     @Override
-    public EconomyData getEconomyData() {
+    public EconomyDataConfig getEconomyData() {
         return this.economyData;
     }
 }
\ No newline at end of file
@@ -0,0 +1,509 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * A binary copy of every claim file in a world's ClaimData folder, used to
+ * skip HOCON parsing at startup.
+ *
+ * <p>The HOCON files remain the source of truth. Each entry records the
+ * modification time, size and content checksum of the file it was read from
+ * along with a checksum of its payload, and is only used while all of them
+ * still match. Any other claim file is loaded from HOCON as usual.</p>
+ *
+ * <p>Layout: magic, version, entry count, then per entry the file path
+ * relative to the ClaimData folder, last modified time, file size, file
+ * checksum, payload checksum, payload length and the payload, an encoded
+ * config node tree.</p>
+ *
+ * <p>The snapshot file stays mapped until {@link #close()} is called, which
+ * must happen before the file is replaced as Windows refuses to replace a
+ * mapped file.</p>
+ */
+public class ClaimSnapshot implements Closeable {
+
+    public static final String FILE_NAME = "ClaimData.snapshot";
+
+    private static final int MAGIC = 0x47504353; // GPCS
+    private static final int VERSION = 2;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_MAP = 1;
+    private static final byte TYPE_LIST = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_INTEGER = 5;
+    private static final byte TYPE_LONG = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_DOUBLE = 8;
+
+    private final Path claimDataPath;
+    @Nullable private volatile ByteBuffer buffer;
+    private final Map<String, Entry> entries;
+
+    private ClaimSnapshot(Path claimDataPath, ByteBuffer buffer, Map<String, Entry> entries) {
+        this.claimDataPath = claimDataPath;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps a snapshot file into memory.
+     *
+     * @param snapshotPath The snapshot file
+     * @param claimDataPath The ClaimData folder the snapshot was taken of
+     * @return The snapshot, or null if the file is missing or unreadable
+     */
+    @Nullable
+    public static ClaimSnapshot open(Path snapshotPath, Path claimDataPath) {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+
+        MappedByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                GriefPreventionPlugin.instance.getLogger().warn("Ignoring claim snapshot " + snapshotPath + " with unknown format.");
+                unmap(buffer);
+                return null;
+            }
+
+            final int entryCount = buffer.getInt();
+            final Map<String, Entry> entries = new HashMap<>(entryCount * 2);
+            for (int i = 0; i < entryCount; i++) {
+                final String relativePath = readString(buffer);
+                final long lastModified = buffer.getLong();
+                final long fileSize = buffer.getLong();
+                final int fileChecksum = buffer.getInt();
+                final int checksum = buffer.getInt();
+                final int length = buffer.getInt();
+                final int offset = buffer.position();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Truncated entry " + relativePath);
+                }
+                buffer.position(offset + length);
+                entries.put(relativePath, new Entry(lastModified, fileSize, fileChecksum, checksum, offset, length));
+            }
+
+            return new ClaimSnapshot(claimDataPath, buffer, entries);
+        } catch (IOException | RuntimeException e) {
+            GriefPreventionPlugin.instance.getLogger().warn("Could not read claim snapshot " + snapshotPath + ", loading claims from HOCON.", e);
+            if (buffer != null) {
+                unmap(buffer);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Unmaps the snapshot file. Reads return null afterwards.
+     *
+     * <p>Must not be called while other threads still read from the
+     * snapshot.</p>
+     */
+    @Override
+    public void close() {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer != null) {
+            this.buffer = null;
+            unmap(buffer);
+        }
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the config root of a claim file if the snapshot still matches it.
+     *
+     * <p>This may be called from several threads at once.</p>
+     *
+     * @param claimFilePath The claim file
+     * @return The config root, or null if the claim must be read from HOCON
+     */
+    @Nullable
+    public CommentedConfigurationNode read(Path claimFilePath) {
+        final Entry entry = this.entries.get(getRelativePath(this.claimDataPath, claimFilePath));
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            if (Files.getLastModifiedTime(claimFilePath).toMillis() != entry.lastModified || Files.size(claimFilePath) != entry.fileSize) {
+                return null;
+            }
+            // a file rewritten within the same millisecond keeps its time and possibly its size
+            if (checksum(Files.readAllBytes(claimFilePath)) != entry.fileChecksum) {
+                return null;
+            }
+
+            final ByteBuffer payload = this.getPayload(entry);
+            if (payload == null) {
+                return null;
+            }
+
+            final CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults()
+                    .setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+            readNode(payload, root);
+            return root;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Returns a view of the entry payload, or null if its checksum does not match
+    @Nullable
+    private ByteBuffer getPayload(Entry entry) {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            return null;
+        }
+
+        final ByteBuffer payload = buffer.duplicate();
+        payload.position(entry.offset);
+        payload.limit(entry.offset + entry.length);
+        final CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != entry.checksum) {
+            return null;
+        }
+
+        return payload;
+    }
+
+    private static int checksum(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    // Releases a mapping right away instead of on garbage collection, falls back to the latter if the JVM does not allow it
+    private static void unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = null;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+            }
+            if (invokeCleaner != null) {
+                final Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                invokeCleaner.invoke(unsafeField.get(null), buffer);
+                return;
+            }
+
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // unmapped once collected
+        }
+    }
+
+    /**
+     * Writes a new snapshot of every claim file in a ClaimData folder.
+     *
+     * <p>Entries of files whose content did not change since the previous
+     * snapshot are copied as is, other files are parsed from HOCON. Each file
+     * is read once and its payload is built from exactly the bytes that were
+     * checksummed. The previous snapshot is unmapped, then the new one is
+     * written to a temporary file and moved over it.</p>
+     *
+     * @param snapshotPath The snapshot file
+     * @param claimDataPath The ClaimData folder
+     * @return The number of claim files in the snapshot
+     * @throws IOException If the snapshot could not be written
+     */
+    public static int write(Path snapshotPath, Path claimDataPath) throws IOException {
+        if (!Files.isDirectory(claimDataPath)) {
+            return 0;
+        }
+
+        final List<Path> claimFiles;
+        try (Stream<Path> stream = Files.walk(claimDataPath)) {
+            claimFiles = stream.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().length() == 36)
+                    .collect(Collectors.toList());
+        }
+
+        final List<String> relativePaths = new ArrayList<>();
+        final List<long[]> fileStates = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+        try (ClaimSnapshot previous = open(snapshotPath, claimDataPath)) {
+            for (Path claimFile : claimFiles) {
+                final String relativePath = getRelativePath(claimDataPath, claimFile);
+                try {
+                    final long lastModified = Files.getLastModifiedTime(claimFile).toMillis();
+                    final byte[] source = Files.readAllBytes(claimFile);
+                    final int fileChecksum = checksum(source);
+                    byte[] payload = null;
+                    final Entry entry = previous == null ? null : previous.entries.get(relativePath);
+                    if (entry != null && entry.fileSize == source.length && entry.fileChecksum == fileChecksum) {
+                        final ByteBuffer previousPayload = previous.getPayload(entry);
+                        if (previousPayload != null) {
+                            payload = new byte[entry.length];
+                            previousPayload.get(payload);
+                        }
+                    }
+                    if (payload == null) {
+                        final ConfigurationNode root = HoconConfigurationLoader.builder()
+                                .setSource(() -> new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8)))
+                                .build()
+                                .load();
+                        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+                        writeNode(new DataOutputStream(bytes), root);
+                        payload = bytes.toByteArray();
+                    }
+
+                    relativePaths.add(relativePath);
+                    fileStates.add(new long[] {lastModified, source.length, fileChecksum});
+                    payloads.add(payload);
+                } catch (IOException | IllegalArgumentException e) {
+                    // left to HOCON on next load
+                }
+            }
+        }
+
+        final Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (OutputStream fileStream = Files.newOutputStream(tempPath);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream, 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(payloads.size());
+            final CRC32 crc = new CRC32();
+            for (int i = 0; i < payloads.size(); i++) {
+                final byte[] payload = payloads.get(i);
+                crc.reset();
+                crc.update(payload);
+                writeString(out, relativePaths.get(i));
+                out.writeLong(fileStates.get(i)[0]);
+                out.writeLong(fileStates.get(i)[1]);
+                out.writeInt((int) fileStates.get(i)[2]);
+                out.writeInt((int) crc.getValue());
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+        }
+
+        try {
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return payloads.size();
+    }
+
+    private static String getRelativePath(Path claimDataPath, Path claimFilePath) {
+        return claimDataPath.relativize(claimFilePath).toString().replace('\\', '/');
+    }
+
+    private static void writeNode(DataOutputStream out, ConfigurationNode node) throws IOException {
+        if (node.hasMapChildren()) {
+            final Map<Object, ? extends ConfigurationNode> children = node.getChildrenMap();
+            out.writeByte(TYPE_MAP);
+            out.writeInt(children.size());
+            for (Map.Entry<Object, ? extends ConfigurationNode> child : children.entrySet()) {
+                writeString(out, String.valueOf(child.getKey()));
+                writeNode(out, child.getValue());
+            }
+            return;
+        }
+        if (node.hasListChildren()) {
+            final List<? extends ConfigurationNode> children = node.getChildrenList();
+            out.writeByte(TYPE_LIST);
+            out.writeInt(children.size());
+            for (ConfigurationNode child : children) {
+                writeNode(out, child);
+            }
+            return;
+        }
+
+        final Object value = node.getValue();
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Map) {
+            // empty map
+            out.writeByte(TYPE_MAP);
+            out.writeInt(0);
+        } else if (value instanceof List) {
+            // empty list
+            out.writeByte(TYPE_LIST);
+            out.writeInt(0);
+        } else {
+            throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    private static void readNode(ByteBuffer buffer, ConfigurationNode node) {
+        final byte type = buffer.get();
+        switch (type) {
+            case TYPE_NULL:
+                break;
+            case TYPE_MAP: {
+                final int size = buffer.getInt();
+                if (size == 0) {
+                    node.setValue(ImmutableMap.of());
+                }
+                for (int i = 0; i < size; i++) {
+                    readNode(buffer, node.getNode(readString(buffer)));
+                }
+                break;
+            }
+            case TYPE_LIST: {
+                final int size = buffer.getInt();
+                if (size == 0) {
+                    node.setValue(ImmutableList.of());
+                }
+                for (int i = 0; i < size; i++) {
+                    readNode(buffer, node.getAppendedNode());
+                }
+                break;
+            }
+            case TYPE_STRING:
+                node.setValue(readString(buffer));
+                break;
+            case TYPE_BOOLEAN:
+                node.setValue(buffer.get() != 0);
+                break;
+            case TYPE_INTEGER:
+                node.setValue(buffer.getInt());
+                break;
+            case TYPE_LONG:
+                node.setValue(buffer.getLong());
+                break;
+            case TYPE_FLOAT:
+                node.setValue(buffer.getFloat());
+                break;
+            case TYPE_DOUBLE:
+                node.setValue(buffer.getDouble());
+                break;
+            default:
+                throw new IllegalStateException("Unknown node type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry {
+
+        private final long lastModified;
+        private final long fileSize;
+        private final int fileChecksum;
+        private final int checksum;
+        private final int offset;
+        private final int length;
+
+        private Entry(long lastModified, long fileSize, int fileChecksum, int checksum, int offset, int length) {
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+            this.fileChecksum = fileChecksum;
+            this.checksum = checksum;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
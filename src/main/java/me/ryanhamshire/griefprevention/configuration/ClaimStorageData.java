@@ -32,9 +32,7 @@
 import ninja.leaping.configurate.ConfigurationOptions;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
-import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import ninja.leaping.configurate.objectmapping.ObjectMapper;
-import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.util.Functional;
 import org.spongepowered.api.world.Location;
@@ -53,7 +51,6 @@
 
 public class ClaimStorageData {
 
-    protected HoconConfigurationLoader loader;
     private CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults()
             .setHeader(GriefPreventionPlugin.CONFIG_HEADER));
     protected ObjectMapper<ClaimDataConfig>.BoundInstance configMapper;
@@ -95,6 +92,7 @@ public class ClaimStorageData {
     public static final String MAIN_ALLOW_CLAIM_EXPIRATION = "claim-expiration";
     public static final String MAIN_TAX_PAST_DUE_DATE = "tax-past-due-date";
     public static final String MAIN_TAX_BALANCE = "tax-balance";
+    public static final String MAIN_TAX_LAST_APPLIED = "tax-last-applied";
     // SUB
     public static final String MAIN_INHERIT_PARENT = "inherit-parent";
 
@@ -104,12 +102,6 @@ public ClaimStorageData(Path path, UUID worldUniqueId, UUID ownerUniqueId, Claim
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
             if (type == ClaimType.TOWN) {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
             } else {
@@ -132,12 +124,6 @@ public ClaimStorageData(Path path, UUID worldUniqueId, ClaimDataConfig claimData
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
             this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataConfig.class).bind(claimData);
             this.configMapper.getInstance().setClaimStorageData(this);
             reload();
@@ -153,19 +139,33 @@ public ClaimStorageData(Path path, UUID worldUniqueId) {
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
+            if (path.getParent().endsWith("town")) {
+                this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
+            } else {
+                this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataConfig.class).bindToNew();
             }
+            this.configMapper.getInstance().setClaimStorageData(this);
+            reload();
+            ((EconomyDataConfig) this.configMapper.getInstance().getEconomyData()).activeConfig = GriefPreventionPlugin.getActiveConfig(worldUniqueId);
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to initialize configuration", e);
+        }
+    }
 
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+    // Used during server load with a config root already read from the claim snapshot or the database
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ClaimStorageData(Path path, UUID worldUniqueId, CommentedConfigurationNode root) {
+        this.filePath = path;
+        this.folderPath = path.getParent();
+        try {
             if (path.getParent().endsWith("town")) {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
             } else {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataConfig.class).bindToNew();
             }
             this.configMapper.getInstance().setClaimStorageData(this);
-            reload();
+            this.root = root;
+            this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
             ((EconomyDataConfig) this.configMapper.getInstance().getEconomyData()).activeConfig = GriefPreventionPlugin.getActiveConfig(worldUniqueId);
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to initialize configuration", e);
@@ -177,20 +177,22 @@ public ClaimDataConfig getConfig() {
     }
 
     public void save() {
-        try {
+        // the copy is serialized and written on the storage thread
+        final ClaimDataConfig snapshot = DataSnapshot.copy(this.configBase);
+        final CommentedConfigurationNode root = this.root;
+        GriefPreventionPlugin.instance.storageWriteQueue.submit(this.filePath, () -> {
+            final CommentedConfigurationNode copy = root.copy();
             // subdivisions are stored in their own claim files
-            this.root.getNode(GriefPreventionPlugin.MOD_ID).removeChild("subdivisions");
-            this.configMapper.serialize(this.root.getNode(GriefPreventionPlugin.MOD_ID));
-            this.loader.save(this.root);
-            this.configBase.setRequiresSave(false);
-        } catch (IOException | ObjectMappingException e) {
-            SpongeImpl.getLogger().error("Failed to save configuration", e);
-        }
+            copy.getNode(GriefPreventionPlugin.MOD_ID).removeChild("subdivisions");
+            ObjectMapper.forObject(snapshot).serialize(copy.getNode(GriefPreventionPlugin.MOD_ID));
+            return copy;
+        });
+        this.configBase.setRequiresSave(false);
     }
 
     public void reload() {
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults().setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+            this.root = GriefPreventionPlugin.instance.storageWriteQueue.load(this.filePath);
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to load configuration", e);
@@ -267,7 +269,7 @@ public CompletableFuture<CommentedConfigurationNode> updateSetting(String key, O
             CommentedConfigurationNode upd = getSetting(key);
             upd.setValue(value);
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
-            this.loader.save(this.root);
+            GriefPreventionPlugin.instance.storageWriteQueue.submit(this.filePath, this.root.copy());
             return upd;
         }, ForkJoinPool.commonPool());
     }
@@ -0,0 +1,123 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import ninja.leaping.configurate.objectmapping.Setting;
+import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Copies the {@link Setting} fields of a config object so it can be
+ * serialized off the main thread.
+ *
+ * <p>Collections and nested {@link ConfigSerializable} objects are copied,
+ * any other value is expected to be immutable.</p>
+ */
+public final class DataSnapshot {
+
+    private static final ClassValue<Field[]> SETTING_FIELDS = new ClassValue<Field[]>() {
+
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            final List<Field> fields = new ArrayList<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || !field.isAnnotationPresent(Setting.class)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private DataSnapshot() {
+    }
+
+    public static <T> T copy(T object) {
+        try {
+            return copyObject(object);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not copy " + object.getClass().getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T copyObject(T object) throws ReflectiveOperationException {
+        final Class<T> type = (Class<T>) object.getClass();
+        final Constructor<T> constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        final T copy = constructor.newInstance();
+        for (Field field : SETTING_FIELDS.get(type)) {
+            field.set(copy, copyValue(field.get(object)));
+        }
+        return copy;
+    }
+
+    @Nullable
+    private static Object copyValue(@Nullable Object value) throws ReflectiveOperationException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof List) {
+            return copyElements((List<?>) value, new ArrayList<>(((List<?>) value).size()));
+        }
+        if (value instanceof Set) {
+            return copyElements((Set<?>) value, new LinkedHashSet<>());
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value.getClass().isAnnotationPresent(ConfigSerializable.class)) {
+            return copyObject(value);
+        }
+        return value;
+    }
+
+    private static <C extends Collection<Object>> C copyElements(Collection<?> elements, C copy) throws ReflectiveOperationException {
+        for (Object element : elements) {
+            copy.add(copyValue(element));
+        }
+        return copy;
+    }
+}
@@ -40,6 +40,8 @@
 @ConfigSerializable
 public class EconomyDataConfig extends ConfigCategory implements EconomyData {
 
+    private static final Gson GSON = new Gson();
+
     public GriefPreventionConfig<?> activeConfig;
 
     @Setting(value = ClaimStorageData.MAIN_CLAIM_FOR_SALE)
@@ -50,6 +52,8 @@ public class EconomyDataConfig extends ConfigCategory implements EconomyData {
     private double taxBalance = 0.0;
     @Setting(value = ClaimStorageData.MAIN_TAX_PAST_DUE_DATE)
     private String taxPastDueDate;
+    @Setting(value = ClaimStorageData.MAIN_TAX_LAST_APPLIED)
+    private String taxLastApplied;
     @Setting
     private List<String> bankTransactionLog = new ArrayList<>();
 
@@ -92,7 +96,23 @@ public Optional<Instant> getTaxPastDueDate() {
 
     @Override
     public void setTaxPastDueDate(Instant date) {
-        this.taxPastDueDate = date.toString();
+        this.taxPastDueDate = date == null ? null : date.toString();
+    }
+
+    // The tax period this claim was last charged for
+    public Optional<Instant> getTaxLastApplied() {
+        if (this.taxLastApplied == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Instant.parse(this.taxLastApplied));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void setTaxLastApplied(Instant period) {
+        this.taxLastApplied = period == null ? null : period.toString();
     }
 
     @Override
@@ -110,7 +130,7 @@ public void addBankTransaction(BankTransaction transaction) {
         if (this.getBankTransactionLog().size() == this.activeConfig.getConfig().claim.bankTransactionLogLimit) {
             this.getBankTransactionLog().remove(0);
         }
-        this.getBankTransactionLog().add(new Gson().toJson(transaction));
+        this.getBankTransactionLog().add(GSON.toJson(transaction));
     }
 
     @Override
@@ -0,0 +1,134 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores each claim and player as a HOCON file.
+ */
+public class FileStorageBackend implements StorageBackend {
+
+    @Override
+    public CommentedConfigurationNode load(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        if (Files.notExists(path)) {
+            Files.createFile(path);
+        }
+
+        return HoconConfigurationLoader.builder().setPath(path).build().load(ConfigurationOptions.defaults()
+                .setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+    }
+
+    @Override
+    public Map<Path, CommentedConfigurationNode> loadAll(Path folder) {
+        // files are parsed one by one, in parallel by the caller
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean exists(Path path) {
+        return Files.exists(path);
+    }
+
+    @Override
+    public List<Path> list(Path folder) {
+        final List<Path> paths = new ArrayList<>();
+        list(folder.toFile().listFiles(), paths);
+        return paths;
+    }
+
+    private static void list(File[] files, List<Path> paths) {
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isFile()) {
+                paths.add(file.toPath());
+            }
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                list(file.listFiles(), paths);
+            }
+        }
+    }
+
+    @Override
+    public void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(source, target);
+    }
+
+    @Override
+    public void write(Map<Path, ConfigurationNode> batch) throws IOException {
+        IOException failure = null;
+        for (Map.Entry<Path, ConfigurationNode> entry : batch.entrySet()) {
+            try {
+                if (entry.getValue() == null) {
+                    Files.deleteIfExists(entry.getKey());
+                } else {
+                    write(entry.getKey(), entry.getValue());
+                }
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void write(Path path, ConfigurationNode node) throws IOException {
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.getParent());
+        HoconConfigurationLoader.builder().setPath(tempPath).build().save(node);
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -59,6 +59,9 @@ public interface IClaimData extends ClaimData {
 
     void setType(ClaimType type);
 
+    @Override
+    EconomyDataConfig getEconomyData();
+
     void setCuboid(boolean cuboid);
 
     void setLesserBoundaryCorner(String location);
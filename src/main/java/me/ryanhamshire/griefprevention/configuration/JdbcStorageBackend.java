@@ -0,0 +1,657 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+/**
+ * Stores claim and player data in a relational database.
+ *
+ * <p>Data is still addressed by its flat file path, which is mapped to a row
+ * by world folder and UUID relative to the data folder. Any other path is
+ * stored as a file. Each batch is applied in a single transaction.</p>
+ *
+ * <p>Columns GP looks up or shares between servers are normalized, the rest
+ * of each config is stored as HOCON text.</p>
+ */
+public class JdbcStorageBackend implements StorageBackend {
+
+    private static final String GLOBAL_SCOPE = "global";
+    private static final String[] CLAIM_TRUST_KEYS = {
+            ClaimStorageData.MAIN_ACCESSORS, ClaimStorageData.MAIN_BUILDERS, ClaimStorageData.MAIN_CONTAINERS, ClaimStorageData.MAIN_MANAGERS,
+            ClaimStorageData.MAIN_ACCESSOR_GROUPS, ClaimStorageData.MAIN_BUILDER_GROUPS, ClaimStorageData.MAIN_CONTAINER_GROUPS,
+            ClaimStorageData.MAIN_MANAGER_GROUPS
+    };
+    private static final String[] CLAIM_FLAG_KEYS = {
+            ClaimStorageData.MAIN_INHERIT_PARENT, ClaimStorageData.MAIN_CLAIM_RESIZABLE, ClaimStorageData.MAIN_ALLOW_DENY_MESSAGES,
+            ClaimStorageData.MAIN_ALLOW_CLAIM_EXPIRATION, ClaimStorageData.MAIN_ALLOW_FLAG_OVERRIDES, ClaimStorageData.MAIN_REQUIRES_CLAIM_BLOCKS,
+            ClaimStorageData.MAIN_CLAIM_PVP
+    };
+    private static final String PLAYER_ACCRUED_BLOCKS = "accrued-claim-blocks";
+    private static final String PLAYER_BONUS_BLOCKS = "bonus-claim-blocks";
+
+    private final DataSource dataSource;
+    private final Path rootPath;
+    // Paths that are not claim or player data
+    private final FileStorageBackend fileBackend = new FileStorageBackend();
+
+    /**
+     * Creates a backend for the data below a folder.
+     *
+     * @param dataSource The pooled data source
+     * @param rootPath The data folder that claim and player paths are relative to
+     */
+    public JdbcStorageBackend(DataSource dataSource, Path rootPath) {
+        this.dataSource = dataSource;
+        this.rootPath = rootPath.toAbsolutePath().normalize();
+    }
+
+    public void createTables() throws SQLException {
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            final String textType = getTextType(connection.getMetaData());
+            statement.execute("CREATE TABLE IF NOT EXISTS gp_claim (claim_id CHAR(36) NOT NULL, scope VARCHAR(255) NOT NULL, "
+                    + "folder VARCHAR(255) NOT NULL, world_id CHAR(36), owner_id CHAR(36), parent_id CHAR(36), claim_type VARCHAR(16), "
+                    + "lesser_corner VARCHAR(64), greater_corner VARCHAR(64), cuboid BOOLEAN, data " + textType + " NOT NULL, PRIMARY KEY (claim_id))");
+            // claims are listed and loaded per world
+            createIndex(connection, statement, "gp_claim", "gp_claim_scope", "scope");
+            statement.execute("CREATE TABLE IF NOT EXISTS gp_claim_trust (claim_id CHAR(36) NOT NULL, trust_key VARCHAR(32) NOT NULL, "
+                    + "subject VARCHAR(255) NOT NULL, PRIMARY KEY (claim_id, trust_key, subject))");
+            statement.execute("CREATE TABLE IF NOT EXISTS gp_claim_flag (claim_id CHAR(36) NOT NULL, flag_key VARCHAR(32) NOT NULL, "
+                    + "flag_value VARCHAR(16) NOT NULL, PRIMARY KEY (claim_id, flag_key))");
+            statement.execute("CREATE TABLE IF NOT EXISTS gp_player (scope VARCHAR(255) NOT NULL, player_id CHAR(36) NOT NULL, "
+                    + "accrued_claim_blocks INT NOT NULL, bonus_claim_blocks INT NOT NULL, data " + textType + " NOT NULL, PRIMARY KEY (scope, player_id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS gp_schema_version (version INT NOT NULL)");
+        }
+    }
+
+    // A text type large enough for configs with many flag overrides or a long transaction log
+    private static String getTextType(DatabaseMetaData metaData) throws SQLException {
+        final String productName = metaData.getDatabaseProductName().toLowerCase(Locale.ENGLISH);
+        if (productName.contains("mysql") || productName.contains("mariadb")) {
+            // TEXT holds at most 64KB
+            return "MEDIUMTEXT";
+        }
+        if (productName.contains("h2")) {
+            return "CLOB";
+        }
+        // unbounded in PostgreSQL and SQLite
+        return "TEXT";
+    }
+
+    // CREATE INDEX IF NOT EXISTS is not supported by MySQL
+    private static void createIndex(Connection connection, Statement statement, String table, String index, String column) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        final String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ENGLISH) : table;
+        try (ResultSet results = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, false)) {
+            while (results.next()) {
+                if (index.equalsIgnoreCase(results.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+        }
+
+        statement.execute("CREATE INDEX " + index + " ON " + table + " (" + column + ")");
+    }
+
+    public int getSchemaVersion() throws SQLException {
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement();
+                ResultSet results = statement.executeQuery("SELECT version FROM gp_schema_version")) {
+            return results.next() ? results.getInt("version") : 0;
+        }
+    }
+
+    public void setSchemaVersion(int version) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                    PreparedStatement insert = connection.prepareStatement("INSERT INTO gp_schema_version (version) VALUES (?)")) {
+                statement.execute("DELETE FROM gp_schema_version");
+                insert.setInt(1, version);
+                insert.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public CommentedConfigurationNode load(Path path) throws IOException {
+        final DataKey key = this.keyOf(path);
+        if (key == null) {
+            return this.fileBackend.load(path);
+        }
+
+        final CommentedConfigurationNode root;
+        try (Connection connection = this.dataSource.getConnection()) {
+            if (key.isClaim()) {
+                root = loadClaim(connection, key);
+            } else {
+                root = loadPlayer(connection, key);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not load " + path, e);
+        }
+
+        return root == null ? createRoot() : root;
+    }
+
+    @Override
+    public Map<Path, CommentedConfigurationNode> loadAll(Path folder) throws IOException {
+        final DataKey key = this.folderKeyOf(folder);
+        if (key == null || !key.isClaim()) {
+            return Collections.emptyMap();
+        }
+
+        // one query per table instead of three per claim
+        final Map<String, CommentedConfigurationNode> claimNodes = new HashMap<>();
+        final Map<Path, CommentedConfigurationNode> roots = new HashMap<>();
+        try (Connection connection = this.dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM gp_claim WHERE scope = ?")) {
+                statement.setString(1, key.scope);
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        final String claimId = results.getString("claim_id");
+                        final CommentedConfigurationNode root = readClaim(results);
+                        claimNodes.put(claimId, root.getNode(GriefPreventionPlugin.MOD_ID));
+                        roots.put(folder.resolve(results.getString("folder")).resolve(claimId), root);
+                    }
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement("SELECT t.claim_id, t.trust_key, t.subject FROM gp_claim_trust t "
+                    + "JOIN gp_claim c ON c.claim_id = t.claim_id WHERE c.scope = ?")) {
+                statement.setString(1, key.scope);
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        final CommentedConfigurationNode claimNode = claimNodes.get(results.getString("claim_id"));
+                        if (claimNode != null) {
+                            readTrust(claimNode, results);
+                        }
+                    }
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement("SELECT f.claim_id, f.flag_key, f.flag_value FROM gp_claim_flag f "
+                    + "JOIN gp_claim c ON c.claim_id = f.claim_id WHERE c.scope = ?")) {
+                statement.setString(1, key.scope);
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        final CommentedConfigurationNode claimNode = claimNodes.get(results.getString("claim_id"));
+                        if (claimNode != null) {
+                            readFlag(claimNode, results);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not load " + folder, e);
+        }
+
+        return roots;
+    }
+
+    @Override
+    public boolean exists(Path path) throws IOException {
+        final DataKey key = this.keyOf(path);
+        if (key == null) {
+            return this.fileBackend.exists(path);
+        }
+
+        final String query = key.isClaim() ? "SELECT 1 FROM gp_claim WHERE claim_id = ?" : "SELECT 1 FROM gp_player WHERE player_id = ? AND scope = ?";
+        try (Connection connection = this.dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, key.id);
+            if (!key.isClaim()) {
+                statement.setString(2, key.scope);
+            }
+            try (ResultSet results = statement.executeQuery()) {
+                return results.next();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not look up " + path, e);
+        }
+    }
+
+    @Override
+    public List<Path> list(Path folder) throws IOException {
+        final DataKey key = this.folderKeyOf(folder);
+        if (key == null) {
+            return this.fileBackend.list(folder);
+        }
+
+        final List<Path> paths = new ArrayList<>();
+        final String query = key.isClaim() ? "SELECT folder, claim_id FROM gp_claim WHERE scope = ? ORDER BY folder"
+                : "SELECT player_id FROM gp_player WHERE scope = ?";
+        try (Connection connection = this.dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, key.scope);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    if (key.isClaim()) {
+                        paths.add(folder.resolve(results.getString("folder")).resolve(results.getString("claim_id")));
+                    } else {
+                        paths.add(folder.resolve(results.getString("player_id")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not list " + folder, e);
+        }
+
+        return paths;
+    }
+
+    @Override
+    public void move(Path source, Path target) throws IOException {
+        final DataKey sourceKey = this.keyOf(source);
+        final DataKey targetKey = this.keyOf(target);
+        if (sourceKey == null || targetKey == null) {
+            this.fileBackend.move(source, target);
+            return;
+        }
+        if (!sourceKey.isClaim() || !targetKey.isClaim() || !sourceKey.id.equals(targetKey.id)) {
+            throw new IOException("Cannot move " + source + " to " + target);
+        }
+
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("UPDATE gp_claim SET scope = ?, folder = ? WHERE claim_id = ?")) {
+            statement.setString(1, targetKey.scope);
+            statement.setString(2, targetKey.folder);
+            statement.setString(3, targetKey.id);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Could not move " + source + " to " + target, e);
+        }
+    }
+
+    @Override
+    public void write(Map<Path, ConfigurationNode> batch) throws IOException {
+        final Map<Path, ConfigurationNode> fileBatch = new LinkedHashMap<>();
+        try (Connection connection = this.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement deleteTrusts = connection.prepareStatement("DELETE FROM gp_claim_trust WHERE claim_id = ?");
+                    PreparedStatement deleteFlags = connection.prepareStatement("DELETE FROM gp_claim_flag WHERE claim_id = ?");
+                    PreparedStatement deleteClaim = connection.prepareStatement("DELETE FROM gp_claim WHERE claim_id = ?");
+                    PreparedStatement deletePlayer = connection.prepareStatement("DELETE FROM gp_player WHERE scope = ? AND player_id = ?");
+                    PreparedStatement insertClaim = connection.prepareStatement("INSERT INTO gp_claim (claim_id, scope, folder, world_id, owner_id, "
+                            + "parent_id, claim_type, lesser_corner, greater_corner, cuboid, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    PreparedStatement insertTrust = connection.prepareStatement("INSERT INTO gp_claim_trust (claim_id, trust_key, subject) VALUES (?, ?, ?)");
+                    PreparedStatement insertFlag = connection.prepareStatement("INSERT INTO gp_claim_flag (claim_id, flag_key, flag_value) VALUES (?, ?, ?)");
+                    PreparedStatement insertPlayer = connection.prepareStatement("INSERT INTO gp_player (scope, player_id, accrued_claim_blocks, "
+                            + "bonus_claim_blocks, data) VALUES (?, ?, ?, ?, ?)")) {
+                for (Map.Entry<Path, ConfigurationNode> entry : batch.entrySet()) {
+                    final DataKey key = this.keyOf(entry.getKey());
+                    if (key == null) {
+                        fileBatch.put(entry.getKey(), entry.getValue());
+                        continue;
+                    }
+
+                    final ConfigurationNode root = entry.getValue();
+                    if (key.isClaim()) {
+                        deleteTrusts.setString(1, key.id);
+                        deleteTrusts.addBatch();
+                        deleteFlags.setString(1, key.id);
+                        deleteFlags.addBatch();
+                        deleteClaim.setString(1, key.id);
+                        deleteClaim.addBatch();
+                        if (root != null) {
+                            addClaim(insertClaim, insertTrust, insertFlag, key, root);
+                        }
+                    } else {
+                        deletePlayer.setString(1, key.scope);
+                        deletePlayer.setString(2, key.id);
+                        deletePlayer.addBatch();
+                        if (root != null) {
+                            addPlayer(insertPlayer, key, root);
+                        }
+                    }
+                }
+
+                deleteTrusts.executeBatch();
+                deleteFlags.executeBatch();
+                deleteClaim.executeBatch();
+                deletePlayer.executeBatch();
+                insertClaim.executeBatch();
+                insertTrust.executeBatch();
+                insertFlag.executeBatch();
+                insertPlayer.executeBatch();
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not write " + batch.keySet(), e);
+        }
+
+        if (!fileBatch.isEmpty()) {
+            this.fileBackend.write(fileBatch);
+        }
+    }
+
+    private static void addClaim(PreparedStatement insertClaim, PreparedStatement insertTrust, PreparedStatement insertFlag, DataKey key,
+            ConfigurationNode root) throws SQLException, IOException {
+        final ConfigurationNode data = root.copy();
+        final ConfigurationNode claimNode = data.getNode(GriefPreventionPlugin.MOD_ID);
+        insertClaim.setString(1, key.id);
+        insertClaim.setString(2, key.scope);
+        insertClaim.setString(3, key.folder);
+        setString(insertClaim, 4, removeString(claimNode, ClaimStorageData.MAIN_WORLD_UUID));
+        setString(insertClaim, 5, removeString(claimNode, ClaimStorageData.MAIN_OWNER_UUID));
+        setString(insertClaim, 6, removeString(claimNode, ClaimStorageData.MAIN_PARENT_CLAIM_UUID));
+        setString(insertClaim, 7, removeString(claimNode, ClaimStorageData.MAIN_CLAIM_TYPE));
+        setString(insertClaim, 8, removeString(claimNode, ClaimStorageData.MAIN_LESSER_BOUNDARY_CORNER));
+        setString(insertClaim, 9, removeString(claimNode, ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER));
+        final ConfigurationNode cuboidNode = claimNode.getNode(ClaimStorageData.MAIN_CLAIM_CUBOID);
+        if (cuboidNode.isVirtual()) {
+            insertClaim.setNull(10, Types.BOOLEAN);
+        } else {
+            insertClaim.setBoolean(10, cuboidNode.getBoolean());
+            claimNode.removeChild(ClaimStorageData.MAIN_CLAIM_CUBOID);
+        }
+
+        for (String trustKey : CLAIM_TRUST_KEYS) {
+            for (ConfigurationNode subject : claimNode.getNode(trustKey).getChildrenList()) {
+                if (subject.getString() == null) {
+                    continue;
+                }
+                insertTrust.setString(1, key.id);
+                insertTrust.setString(2, trustKey);
+                insertTrust.setString(3, subject.getString());
+                insertTrust.addBatch();
+            }
+            claimNode.removeChild(trustKey);
+        }
+
+        for (String flagKey : CLAIM_FLAG_KEYS) {
+            final String value = removeString(claimNode, flagKey);
+            if (value == null) {
+                continue;
+            }
+            insertFlag.setString(1, key.id);
+            insertFlag.setString(2, flagKey);
+            insertFlag.setString(3, value);
+            insertFlag.addBatch();
+        }
+
+        insertClaim.setString(11, toHocon(data));
+        insertClaim.addBatch();
+    }
+
+    private static void addPlayer(PreparedStatement insertPlayer, DataKey key, ConfigurationNode root) throws SQLException, IOException {
+        final ConfigurationNode data = root.copy();
+        final ConfigurationNode playerNode = data.getNode(GriefPreventionPlugin.MOD_ID);
+        insertPlayer.setString(1, key.scope);
+        insertPlayer.setString(2, key.id);
+        insertPlayer.setInt(3, playerNode.getNode(PLAYER_ACCRUED_BLOCKS).getInt());
+        insertPlayer.setInt(4, playerNode.getNode(PLAYER_BONUS_BLOCKS).getInt());
+        playerNode.removeChild(PLAYER_ACCRUED_BLOCKS);
+        playerNode.removeChild(PLAYER_BONUS_BLOCKS);
+        insertPlayer.setString(5, toHocon(data));
+        insertPlayer.addBatch();
+    }
+
+    @Nullable
+    private static CommentedConfigurationNode loadClaim(Connection connection, DataKey key) throws SQLException, IOException {
+        final CommentedConfigurationNode root;
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM gp_claim WHERE claim_id = ?")) {
+            statement.setString(1, key.id);
+            try (ResultSet results = statement.executeQuery()) {
+                if (!results.next()) {
+                    return null;
+                }
+
+                root = readClaim(results);
+            }
+        }
+
+        final CommentedConfigurationNode claimNode = root.getNode(GriefPreventionPlugin.MOD_ID);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT trust_key, subject FROM gp_claim_trust WHERE claim_id = ?")) {
+            statement.setString(1, key.id);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    readTrust(claimNode, results);
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT flag_key, flag_value FROM gp_claim_flag WHERE claim_id = ?")) {
+            statement.setString(1, key.id);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    readFlag(claimNode, results);
+                }
+            }
+        }
+
+        return root;
+    }
+
+    // Reads the config root of the current gp_claim row, without its trusts and flags
+    private static CommentedConfigurationNode readClaim(ResultSet results) throws SQLException, IOException {
+        final CommentedConfigurationNode root = fromHocon(results.getString("data"));
+        final CommentedConfigurationNode claimNode = root.getNode(GriefPreventionPlugin.MOD_ID);
+        setValue(claimNode, ClaimStorageData.MAIN_WORLD_UUID, results.getString("world_id"));
+        setValue(claimNode, ClaimStorageData.MAIN_OWNER_UUID, results.getString("owner_id"));
+        setValue(claimNode, ClaimStorageData.MAIN_PARENT_CLAIM_UUID, results.getString("parent_id"));
+        setValue(claimNode, ClaimStorageData.MAIN_CLAIM_TYPE, results.getString("claim_type"));
+        setValue(claimNode, ClaimStorageData.MAIN_LESSER_BOUNDARY_CORNER, results.getString("lesser_corner"));
+        setValue(claimNode, ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER, results.getString("greater_corner"));
+        final boolean cuboid = results.getBoolean("cuboid");
+        if (!results.wasNull()) {
+            claimNode.getNode(ClaimStorageData.MAIN_CLAIM_CUBOID).setValue(cuboid);
+        }
+        return root;
+    }
+
+    private static void readTrust(CommentedConfigurationNode claimNode, ResultSet results) throws SQLException {
+        claimNode.getNode(results.getString("trust_key")).getAppendedNode().setValue(results.getString("subject"));
+    }
+
+    private static void readFlag(CommentedConfigurationNode claimNode, ResultSet results) throws SQLException {
+        final String value = results.getString("flag_value");
+        // booleans are stored as text next to tristates
+        if (value.equals("true") || value.equals("false")) {
+            claimNode.getNode(results.getString("flag_key")).setValue(Boolean.parseBoolean(value));
+        } else {
+            claimNode.getNode(results.getString("flag_key")).setValue(value);
+        }
+    }
+
+    @Nullable
+    private static CommentedConfigurationNode loadPlayer(Connection connection, DataKey key) throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM gp_player WHERE scope = ? AND player_id = ?")) {
+            statement.setString(1, key.scope);
+            statement.setString(2, key.id);
+            try (ResultSet results = statement.executeQuery()) {
+                if (!results.next()) {
+                    return null;
+                }
+
+                final CommentedConfigurationNode root = fromHocon(results.getString("data"));
+                final CommentedConfigurationNode playerNode = root.getNode(GriefPreventionPlugin.MOD_ID);
+                playerNode.getNode(PLAYER_ACCRUED_BLOCKS).setValue(results.getInt("accrued_claim_blocks"));
+                playerNode.getNode(PLAYER_BONUS_BLOCKS).setValue(results.getInt("bonus_claim_blocks"));
+                return root;
+            }
+        }
+    }
+
+    private static CommentedConfigurationNode createRoot() {
+        return SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults().setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+    }
+
+    private static CommentedConfigurationNode fromHocon(String data) throws IOException {
+        return HoconConfigurationLoader.builder().setSource(() -> new BufferedReader(new StringReader(data))).build()
+                .load(ConfigurationOptions.defaults().setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+    }
+
+    private static String toHocon(ConfigurationNode node) throws IOException {
+        final StringWriter writer = new StringWriter();
+        HoconConfigurationLoader.builder().setSink(() -> new BufferedWriter(writer)).build().save(node);
+        return writer.toString();
+    }
+
+    @Nullable
+    private static String removeString(ConfigurationNode parent, String key) {
+        final String value = parent.getNode(key).getString();
+        parent.removeChild(key);
+        return value;
+    }
+
+    private static void setString(PreparedStatement statement, int index, @Nullable String value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.VARCHAR);
+        } else {
+            statement.setString(index, value);
+        }
+    }
+
+    private static void setValue(ConfigurationNode parent, String key, @Nullable String value) {
+        if (value != null) {
+            parent.getNode(key).setValue(value);
+        }
+    }
+
+    @Nullable
+    private DataKey keyOf(Path path) {
+        final Path relativePath = this.relativize(path);
+        return relativePath == null ? null : DataKey.of(relativePath);
+    }
+
+    @Nullable
+    private DataKey folderKeyOf(Path folder) {
+        final Path relativePath = this.relativize(folder);
+        return relativePath == null ? null : DataKey.ofFolder(relativePath);
+    }
+
+    @Nullable
+    private Path relativize(Path path) {
+        final Path absolutePath = path.toAbsolutePath().normalize();
+        if (!absolutePath.startsWith(this.rootPath)) {
+            return null;
+        }
+
+        return this.rootPath.relativize(absolutePath);
+    }
+
+    /**
+     * The row a data path maps to.
+     *
+     * <p>Claims are stored at worlds/mod/dimension/world/ClaimData/type/uuid,
+     * child claims in a type folder below the folder of their parent such as
+     * ClaimData/basic/subdivision/uuid. Players are stored at
+     * worlds/mod/dimension/world/PlayerData/uuid or GlobalPlayerData/uuid,
+     * all relative to the data folder.</p>
+     */
+    private static final class DataKey {
+
+        private final String scope;
+        @Nullable private final String folder;
+        @Nullable private final String id;
+
+        private DataKey(String scope, @Nullable String folder, @Nullable String id) {
+            this.scope = scope;
+            this.folder = folder;
+            this.id = id;
+        }
+
+        private boolean isClaim() {
+            return this.folder != null;
+        }
+
+        @Nullable
+        private static DataKey of(Path relativePath) {
+            final int count = relativePath.getNameCount();
+            if (count == 2 && relativePath.getName(0).toString().equals("GlobalPlayerData")) {
+                return new DataKey(GLOBAL_SCOPE, null, relativePath.getName(1).toString());
+            }
+            if (count < 6 || !relativePath.getName(0).toString().equals("worlds")) {
+                return null;
+            }
+
+            final String scope = relativePath.subpath(0, 4).toString().replace('\\', '/');
+            final String dataFolder = relativePath.getName(4).toString();
+            if (count == 6 && dataFolder.equals("PlayerData")) {
+                return new DataKey(scope, null, relativePath.getName(5).toString());
+            }
+            if (count >= 7 && dataFolder.equals("ClaimData")) {
+                final String folder = relativePath.subpath(5, count - 1).toString().replace('\\', '/');
+                return new DataKey(scope, folder, relativePath.getName(count - 1).toString());
+            }
+            return null;
+        }
+
+        @Nullable
+        private static DataKey ofFolder(Path relativePath) {
+            final int count = relativePath.getNameCount();
+            if (count == 1 && relativePath.getName(0).toString().equals("GlobalPlayerData")) {
+                return new DataKey(GLOBAL_SCOPE, null, null);
+            }
+            if (count != 5 || !relativePath.getName(0).toString().equals("worlds")) {
+                return null;
+            }
+
+            final String scope = relativePath.subpath(0, 4).toString().replace('\\', '/');
+            final String dataFolder = relativePath.getName(4).toString();
+            if (dataFolder.equals("PlayerData")) {
+                return new DataKey(scope, null, null);
+            }
+            if (dataFolder.equals("ClaimData")) {
+                return new DataKey(scope, "", null);
+            }
+            return null;
+        }
+    }
+}
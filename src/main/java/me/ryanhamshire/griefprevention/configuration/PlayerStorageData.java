@@ -28,18 +28,14 @@
 import ninja.leaping.configurate.ConfigurationOptions;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
-import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import ninja.leaping.configurate.objectmapping.ObjectMapper;
-import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import org.spongepowered.common.SpongeImpl;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class PlayerStorageData {
 
-    private HoconConfigurationLoader loader;
+    private Path filePath;
     private CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults()
             .setHeader(GriefPreventionPlugin.CONFIG_HEADER));
     private ObjectMapper<PlayerDataConfig>.BoundInstance configMapper;
@@ -47,14 +43,8 @@ public class PlayerStorageData {
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     public PlayerStorageData(Path path) {
-
+        this.filePath = path;
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
             this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(PlayerDataConfig.class).bindToNew();
 
             reload();
@@ -69,23 +59,24 @@ public PlayerDataConfig getConfig() {
     }
 
     public void save() {
-        try {
-            if (this.configBase != null) {
-                if (this.configBase.requiresSave()) {
-                    this.configMapper.serialize(this.root.getNode(GriefPreventionPlugin.MOD_ID));
-                    this.loader.save(this.root);
-                    this.configBase.setRequiresSave(false);
-                }
+        if (this.configBase != null) {
+            if (this.configBase.requiresSave()) {
+                // the copy is serialized and written on the storage thread
+                final PlayerDataConfig snapshot = DataSnapshot.copy(this.configBase);
+                final CommentedConfigurationNode root = this.root;
+                GriefPreventionPlugin.instance.storageWriteQueue.submit(this.filePath, () -> {
+                    final CommentedConfigurationNode copy = root.copy();
+                    ObjectMapper.forObject(snapshot).serialize(copy.getNode(GriefPreventionPlugin.MOD_ID));
+                    return copy;
+                });
+                this.configBase.setRequiresSave(false);
             }
-        } catch (IOException | ObjectMappingException e) {
-            SpongeImpl.getLogger().error("Failed to save configuration", e);
         }
     }
 
     public void reload() {
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults()
-                    .setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+            this.root = GriefPreventionPlugin.instance.storageWriteQueue.load(this.filePath);
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to load configuration", e);
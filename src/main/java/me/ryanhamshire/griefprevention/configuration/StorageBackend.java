@@ -0,0 +1,84 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where claim and player data is persisted.
+ *
+ * <p>Data is always addressed by the path of its flat file, even when it is
+ * not stored in a file. All access goes through {@link StorageWriteQueue}
+ * which makes sure pending writes are applied first.</p>
+ */
+public interface StorageBackend {
+
+    /**
+     * Loads a config root, or an empty root if nothing is stored.
+     *
+     * @param path The data path
+     * @return The config root
+     * @throws IOException If the data could not be read
+     */
+    CommentedConfigurationNode load(Path path) throws IOException;
+
+    /**
+     * Loads every config root stored under a folder and all of its sub
+     * folders at once, if the backend can do so faster than one
+     * {@link #load(Path)} per path.
+     *
+     * @param folder The folder
+     * @return The data path to config root, empty if each path must be loaded on its own
+     * @throws IOException If the data could not be read
+     */
+    Map<Path, CommentedConfigurationNode> loadAll(Path folder) throws IOException;
+
+    boolean exists(Path path) throws IOException;
+
+    /**
+     * Lists the data paths stored under a folder and all of its sub folders.
+     *
+     * @param folder The folder
+     * @return The data paths, entries of a folder before those of its sub folders
+     * @throws IOException If the folder could not be read
+     */
+    List<Path> list(Path folder) throws IOException;
+
+    void move(Path source, Path target) throws IOException;
+
+    /**
+     * Writes a batch of config roots in iteration order.
+     *
+     * @param batch The data path to config root, a null root deletes the data
+     * @throws IOException If the batch could not be written
+     */
+    void write(Map<Path, ConfigurationNode> batch) throws IOException;
+}
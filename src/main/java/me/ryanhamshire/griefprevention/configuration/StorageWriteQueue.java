@@ -0,0 +1,454 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Writes claim and player data on a dedicated I/O thread.
+ *
+ * <p>Callers hand over a {@link Snapshot} of their data, which is serialized
+ * to a config node on the I/O thread. Repeated writes to the same path
+ * before it is written are coalesced into the latest snapshot. The I/O
+ * thread hands pending writes to the {@link StorageBackend} in batches of up
+ * to {@link #MAX_BATCH_SIZE}.</p>
+ *
+ * <p>The queue is bounded. Once {@link #MAX_PENDING_WRITES} paths are
+ * pending, the caller writes its own snapshot instead of queueing it.</p>
+ *
+ * <p>Writes the backend fails to store are queued again, unless a newer
+ * write of the path is pending, and retried with an exponential backoff of
+ * up to {@link #MAX_RETRY_DELAY_MILLIS}. After {@link #shutdown()} a failed
+ * batch is retried {@link #SHUTDOWN_ATTEMPTS} times before it is given
+ * up.</p>
+ */
+public class StorageWriteQueue {
+
+    private static final int MAX_PENDING_WRITES = 8192;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long MIN_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+    // Marks a pending delete of a path
+    private static final Snapshot DELETE = () -> null;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Path, Snapshot> pendingWrites = new LinkedHashMap<>();
+    private final Set<Path> inFlightPaths = new HashSet<>();
+    private volatile StorageBackend backend = new FileStorageBackend();
+    private Thread thread;
+    private boolean running = true;
+    private boolean stopping;
+    // Failed batches since the last successful one, guarded by lock
+    private int failedAttempts;
+
+    // Metrics, guarded by lock
+    private long queuedWrites;
+    private long coalescedWrites;
+    private long completedWrites;
+    private long failedWrites;
+    private long retriedWrites;
+    private long callerWrites;
+    private long batches;
+    private int maxPendingWrites;
+
+    public StorageBackend getBackend() {
+        return this.backend;
+    }
+
+    /**
+     * Sets where data is stored. This must be called before any data is
+     * loaded.
+     *
+     * @param backend The backend
+     */
+    public void setBackend(StorageBackend backend) {
+        this.flush();
+        this.backend = backend;
+    }
+
+    /**
+     * Queues a write of a serialized config node.
+     *
+     * <p>Note: The node must not be modified after it is submitted.</p>
+     *
+     * @param path The data path
+     * @param node The node snapshot to write
+     */
+    public void submit(Path path, ConfigurationNode node) {
+        this.submit(path, () -> node);
+    }
+
+    /**
+     * Queues a write of a data snapshot, serialized on the I/O thread.
+     *
+     * @param path The data path
+     * @param snapshot The snapshot to write
+     */
+    public void submit(Path path, Snapshot snapshot) {
+        synchronized (this.lock) {
+            if (this.running && this.enqueue(path, snapshot)) {
+                return;
+            }
+            this.callerWrites++;
+        }
+
+        this.processDirect(Collections.singletonMap(path, snapshot));
+    }
+
+    /**
+     * Queues a delete, replacing any pending write of the path.
+     *
+     * @param path The data path
+     */
+    public void delete(Path path) {
+        synchronized (this.lock) {
+            if (this.running && this.enqueue(path, DELETE)) {
+                return;
+            }
+        }
+
+        this.processDirect(Collections.singletonMap(path, DELETE));
+    }
+
+    public CommentedConfigurationNode load(Path path) throws IOException {
+        this.flush(path);
+        return this.backend.load(path);
+    }
+
+    public Map<Path, CommentedConfigurationNode> loadAll(Path folder) throws IOException {
+        this.flush();
+        return this.backend.loadAll(folder);
+    }
+
+    public boolean exists(Path path) throws IOException {
+        this.flush(path);
+        return this.backend.exists(path);
+    }
+
+    public List<Path> list(Path folder) throws IOException {
+        this.flush();
+        return this.backend.list(folder);
+    }
+
+    public void move(Path source, Path target) throws IOException {
+        this.flush(source);
+        this.flush(target);
+        this.backend.move(source, target);
+    }
+
+    /**
+     * Waits until any pending write of the path is completed.
+     *
+     * <p>This must be called before data is accessed outside of this
+     * queue.</p>
+     *
+     * @param path The data path
+     */
+    public void flush(Path path) {
+        synchronized (this.lock) {
+            while (this.pendingWrites.containsKey(path) || this.inFlightPaths.contains(path)) {
+                this.awaitProgress();
+            }
+        }
+    }
+
+    public void flush() {
+        synchronized (this.lock) {
+            while (!this.pendingWrites.isEmpty() || !this.inFlightPaths.isEmpty()) {
+                this.awaitProgress();
+            }
+        }
+    }
+
+    /**
+     * Writes all pending data then stops the I/O thread. Any later write is
+     * done directly by the caller.
+     */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.stopping = true;
+            this.lock.notifyAll();
+        }
+        this.flush();
+        synchronized (this.lock) {
+            this.running = false;
+            this.lock.notifyAll();
+        }
+    }
+
+    public int getPendingWrites() {
+        synchronized (this.lock) {
+            return this.pendingWrites.size();
+        }
+    }
+
+    public int getMaxPendingWrites() {
+        synchronized (this.lock) {
+            return this.maxPendingWrites;
+        }
+    }
+
+    public long getQueuedWrites() {
+        synchronized (this.lock) {
+            return this.queuedWrites;
+        }
+    }
+
+    public long getCoalescedWrites() {
+        synchronized (this.lock) {
+            return this.coalescedWrites;
+        }
+    }
+
+    public long getCompletedWrites() {
+        synchronized (this.lock) {
+            return this.completedWrites;
+        }
+    }
+
+    public long getFailedWrites() {
+        synchronized (this.lock) {
+            return this.failedWrites;
+        }
+    }
+
+    public long getRetriedWrites() {
+        synchronized (this.lock) {
+            return this.retriedWrites;
+        }
+    }
+
+    public long getCallerWrites() {
+        synchronized (this.lock) {
+            return this.callerWrites;
+        }
+    }
+
+    public long getBatches() {
+        synchronized (this.lock) {
+            return this.batches;
+        }
+    }
+
+    // Must hold lock
+    private boolean enqueue(Path path, Snapshot snapshot) {
+        if (this.pendingWrites.containsKey(path)) {
+            this.pendingWrites.put(path, snapshot);
+            this.coalescedWrites++;
+            return true;
+        }
+        // A write of the same path in progress must complete first so always queue it
+        if (this.pendingWrites.size() >= MAX_PENDING_WRITES && !this.inFlightPaths.contains(path)) {
+            return false;
+        }
+
+        this.pendingWrites.put(path, snapshot);
+        this.queuedWrites++;
+        this.maxPendingWrites = Math.max(this.maxPendingWrites, this.pendingWrites.size());
+        if (this.thread == null) {
+            this.thread = new Thread(this::run, "GriefPrevention Storage Writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+        this.lock.notifyAll();
+        return true;
+    }
+
+    // Must hold lock
+    private void awaitProgress() {
+        try {
+            this.lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            final Map<Path, Snapshot> batch = new LinkedHashMap<>();
+            synchronized (this.lock) {
+                while (this.pendingWrites.isEmpty()) {
+                    if (!this.running) {
+                        this.thread = null;
+                        return;
+                    }
+                    this.awaitProgress();
+                }
+
+                final Iterator<Map.Entry<Path, Snapshot>> iterator = this.pendingWrites.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                    final Map.Entry<Path, Snapshot> entry = iterator.next();
+                    iterator.remove();
+                    batch.put(entry.getKey(), entry.getValue());
+                }
+                this.inFlightPaths.addAll(batch.keySet());
+            }
+
+            final Map<Path, ConfigurationNode> failed = this.process(batch);
+            synchronized (this.lock) {
+                this.inFlightPaths.removeAll(batch.keySet());
+                if (failed.isEmpty()) {
+                    this.failedAttempts = 0;
+                } else {
+                    this.failedAttempts++;
+                    if (!this.stopping || this.failedAttempts < SHUTDOWN_ATTEMPTS) {
+                        this.requeue(failed);
+                    } else {
+                        SpongeImpl.getLogger().error("Giving up on saving " + failed.keySet() + " after " + this.failedAttempts + " attempts");
+                    }
+                }
+                this.lock.notifyAll();
+                if (!failed.isEmpty()) {
+                    this.awaitRetry();
+                }
+            }
+        }
+    }
+
+    // The queue was full or stopped, a failed write is queued again unless the I/O thread is gone
+    private void processDirect(Map<Path, Snapshot> batch) {
+        final Map<Path, ConfigurationNode> failed = this.process(batch);
+        if (failed.isEmpty()) {
+            return;
+        }
+
+        synchronized (this.lock) {
+            if (this.running) {
+                this.requeue(failed);
+                return;
+            }
+        }
+        SpongeImpl.getLogger().error("Could not save " + failed.keySet() + " after shutdown");
+    }
+
+    // Must hold lock
+    private void requeue(Map<Path, ConfigurationNode> failed) {
+        for (Map.Entry<Path, ConfigurationNode> entry : failed.entrySet()) {
+            // A newer write replaces the failed one
+            if (this.pendingWrites.containsKey(entry.getKey())) {
+                continue;
+            }
+
+            final ConfigurationNode node = entry.getValue();
+            this.pendingWrites.put(entry.getKey(), node == null ? DELETE : () -> node);
+            this.retriedWrites++;
+        }
+        this.maxPendingWrites = Math.max(this.maxPendingWrites, this.pendingWrites.size());
+        this.lock.notifyAll();
+    }
+
+    // Must hold lock
+    private void awaitRetry() {
+        final boolean wasStopping = this.stopping;
+        final long delay = wasStopping ? MIN_RETRY_DELAY_MILLIS
+                : Math.min(MIN_RETRY_DELAY_MILLIS << Math.min(this.failedAttempts - 1, 5), MAX_RETRY_DELAY_MILLIS);
+        final long retryTime = System.currentTimeMillis() + delay;
+        long remaining = delay;
+        // Shutting down cuts a long backoff short
+        while (remaining > 0 && this.stopping == wasStopping) {
+            try {
+                this.lock.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remaining = retryTime - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Serializes and writes a batch.
+     *
+     * @param batch The data path to snapshot
+     * @return The serialized writes the backend failed to store
+     */
+    private Map<Path, ConfigurationNode> process(Map<Path, Snapshot> batch) {
+        final Map<Path, ConfigurationNode> writes = new LinkedHashMap<>(batch.size());
+        for (Map.Entry<Path, Snapshot> entry : batch.entrySet()) {
+            try {
+                writes.put(entry.getKey(), entry.getValue().serialize());
+            } catch (ObjectMappingException | RuntimeException e) {
+                synchronized (this.lock) {
+                    this.failedWrites++;
+                }
+                SpongeImpl.getLogger().error("Failed to serialize " + entry.getKey(), e);
+            }
+        }
+        if (writes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            this.backend.write(writes);
+            synchronized (this.lock) {
+                this.completedWrites += writes.size();
+                this.batches++;
+            }
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            synchronized (this.lock) {
+                this.failedWrites += writes.size();
+                this.batches++;
+            }
+            SpongeImpl.getLogger().error("Failed to save " + writes.keySet(), e);
+            return writes;
+        }
+    }
+
+    /**
+     * Data to write, serialized on the I/O thread.
+     *
+     * <p>A snapshot must not share mutable state with data that is changed
+     * after it is submitted, see {@link DataSnapshot}.</p>
+     */
+    @FunctionalInterface
+    public interface Snapshot {
+
+        /**
+         * Serializes the data.
+         *
+         * @return The config root, or null to delete the data
+         * @throws ObjectMappingException If the data could not be serialized
+         */
+        @Nullable
+        ConfigurationNode serialize() throws ObjectMappingException;
+    }
+}
@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.configuration;
 
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 
 import java.nio.file.Path;
 import java.util.UUID;
@@ -39,6 +40,10 @@ public TownStorageData(Path path, UUID worldUniqueId) {
         super(path, worldUniqueId);
     }
 
+    public TownStorageData(Path path, UUID worldUniqueId, CommentedConfigurationNode root) {
+        super(path, worldUniqueId, root);
+    }
+
     public TownDataConfig getConfig() {
         return (TownDataConfig) this.configBase;
     }
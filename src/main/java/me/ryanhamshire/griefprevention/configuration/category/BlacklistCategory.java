@@ -25,11 +25,15 @@
 package me.ryanhamshire.griefprevention.configuration.category;
 
 import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
+import me.ryanhamshire.griefprevention.util.BlacklistMatcher;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
@@ -147,6 +151,38 @@ public class BlacklistCategory extends ConfigCategory {
     @Setting(value = "projectile-impact-entity")
     private List<String> blacklistProjectileImpactEntity = new ArrayList<>();
 
+    // Compiled from the lists above on first use, a config reload creates a new category
+    private final Map<String, BlacklistMatcher> sourceMatchers = new ConcurrentHashMap<>();
+    private final Map<String, BlacklistMatcher> targetMatchers = new ConcurrentHashMap<>();
+
+    public BlacklistMatcher getSourceMatcher(String flag) {
+        BlacklistMatcher matcher = this.sourceMatchers.get(flag);
+        if (matcher == null) {
+            matcher = this.compileMatcher(this.globalSourceBlacklist, flag);
+            this.sourceMatchers.put(flag, matcher);
+        }
+
+        return matcher;
+    }
+
+    public BlacklistMatcher getTargetMatcher(String flag) {
+        BlacklistMatcher matcher = this.targetMatchers.get(flag);
+        if (matcher == null) {
+            matcher = this.compileMatcher(this.globalTargetBlacklist, flag);
+            this.targetMatchers.put(flag, matcher);
+        }
+
+        return matcher;
+    }
+
+    private BlacklistMatcher compileMatcher(List<String> globalBlacklist, String flag) {
+        if (globalBlacklist == null) {
+            return BlacklistMatcher.EMPTY;
+        }
+
+        return new BlacklistMatcher(Arrays.asList(globalBlacklist, this.getFlagBlacklist(flag)));
+    }
+
     public List<String> getBlockBreakBlacklist() {
         return this.blacklistBlockBreak;
     }
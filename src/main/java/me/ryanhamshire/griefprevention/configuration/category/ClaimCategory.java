@@ -37,8 +37,11 @@ public class ClaimCategory extends ConfigCategory {
     public List<String> accessTrustCommands = new ArrayList<>();
     @Setting(value = "auto-claim-radius", comment = "Radius used for auto-created claims. Set to -1 to disable.")
     public int claimRadius = 4;
-    @Setting(value = "expiration-cleanup-interval", comment = "The interval in minutes for cleaning up expired claims. Default: 0. Set to 0 to disable.")
+    @Setting(value = "expiration-cleanup-interval", comment = "The delay in minutes after startup before expired claims are cleaned up. Default: 0. Set to 0 to disable."
+            + "\nOnce started, claims are removed as soon as they expire.")
     public int expirationCleanupInterval = 0;
+    @Setting(value = "expiration-cleanup-budget", comment = "The max amount of milliseconds spent removing expired claims each tick. Default: 2.")
+    public int expirationCleanupBudget = 2;
     @Setting(value = "deliver-manuals", comment = "Send players manuals on claim creation.")
     public boolean deliverManuals = false;
     @Setting(value = "auto-nature-restore", comment = "Whether survival claims will be automatically restored to nature when auto-deleted. \nNote: This only supports vanilla blocks. Use with caution if using custom biomes.")
@@ -54,6 +57,8 @@ public class ClaimCategory extends ConfigCategory {
     public boolean bankTaxSystem = false;
     @Setting(value = "tax-apply-hour", comment = "The specific hour in day to apply tax to all claims.")
     public int taxApplyHour = 12;
+    @Setting(value = "tax-apply-budget", comment = "The max amount of milliseconds spent applying tax to claims each tick. Default: 2.")
+    public int taxApplyBudget = 2;
     @Setting(value = "bank-transaction-log-limit")
     public int bankTransactionLogLimit = 60;
     @Setting(value = "hide-borders-when-using-wecui", comment = "Whether to hide the glowstone/gold block borders when using WECUI.")
@@ -30,10 +30,12 @@
 @ConfigSerializable
 public class DatabaseCategory extends ConfigCategory {
 
-    @Setting(value = "password", comment = "password")
+    @Setting(value = "password", comment = "The database password, if not included in the url.")
     public String dbPassword = "";
-    @Setting(value = "username", comment = "username")
+    @Setting(value = "username", comment = "The database username, if not included in the url.")
     public String dbUsername = "";
-    @Setting(value = "url", comment = "url")
+    @Setting(value = "url", comment = "The JDBC url of the database to store claim and player data in, instead of files."
+            + "\nExample: jdbc:h2:./config/griefprevention/data or jdbc:mysql://localhost/griefprevention"
+            + "\nNote: Leave empty to use file storage. Existing files are not migrated.")
     public String dbURL = "";
 }
\ No newline at end of file
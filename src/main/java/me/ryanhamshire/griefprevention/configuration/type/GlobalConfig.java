@@ -25,21 +25,26 @@
 package me.ryanhamshire.griefprevention.configuration.type;
 
 import me.ryanhamshire.griefprevention.configuration.category.BanCategory;
+import me.ryanhamshire.griefprevention.configuration.category.DatabaseCategory;
 import me.ryanhamshire.griefprevention.configuration.category.LoggingCategory;
 import me.ryanhamshire.griefprevention.configuration.category.MessageCategory;
+import me.ryanhamshire.griefprevention.configuration.category.MetricsCategory;
 import me.ryanhamshire.griefprevention.configuration.category.MigratorCategory;
 import me.ryanhamshire.griefprevention.configuration.category.ModuleCategory;
 import me.ryanhamshire.griefprevention.configuration.category.PlayerDataCategory;
+import me.ryanhamshire.griefprevention.configuration.category.RestoreNatureCategory;
 import me.ryanhamshire.griefprevention.configuration.category.SpamCategory;
+import me.ryanhamshire.griefprevention.configuration.category.StorageCategory;
 import me.ryanhamshire.griefprevention.configuration.category.ThreadCategory;
+import me.ryanhamshire.griefprevention.configuration.category.VisualCategory;
 import ninja.leaping.configurate.objectmapping.Setting;
 
 public class GlobalConfig extends ConfigBase {
 
     @Setting
     public BanCategory bans = new BanCategory();
-    //@Setting
-    //public DatabaseCategory database = new DatabaseCategory();
+    @Setting
+    public DatabaseCategory database = new DatabaseCategory();
     @Setting
     public LoggingCategory logging = new LoggingCategory();
     @Setting
@@ -47,13 +52,21 @@ public class GlobalConfig extends ConfigBase {
     @Setting
     public SpamCategory spam = new SpamCategory();
     @Setting
+    public StorageCategory storage = new StorageCategory();
+    @Setting
     public MessageCategory message = new MessageCategory();
+    @Setting
+    public MetricsCategory metrics = new MetricsCategory();
     @Setting(comment = 
             "List of migrators that convert old or other protection data into the current GP claim data format." + 
             "\nNote: It is recommended to backup data before using.")
     public MigratorCategory migrator = new MigratorCategory();
     @Setting(value = "modules")
     public ModuleCategory modules = new ModuleCategory();
+    @Setting(value = "restore-nature")
+    public RestoreNatureCategory restoreNature = new RestoreNatureCategory();
     @Setting
     public ThreadCategory thread = new ThreadCategory();
+    @Setting
+    public VisualCategory visual = new VisualCategory();
 }
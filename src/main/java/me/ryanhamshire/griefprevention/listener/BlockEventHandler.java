@@ -44,6 +44,8 @@
 import me.ryanhamshire.griefprevention.util.BlockPosCache;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.CauseContextHelper;
+import me.ryanhamshire.griefprevention.util.EntityBlockCache;
+import me.ryanhamshire.griefprevention.visual.VisibleSurfaceCache;
 import me.ryanhamshire.griefprevention.visual.Visualization;
 import me.ryanhamshire.griefprevention.visual.VisualizationType;
 import net.minecraft.block.BlockBasePressurePlate;
@@ -406,10 +408,10 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
         BlockPos collidePos = ((IMixinLocation)(Object) event.getTargetLocation()).getBlockPos();
         short shortPos = BlockUtils.blockPosToShort(collidePos);
         int entityId = ((net.minecraft.entity.Entity) source).getEntityId();
-        BlockPosCache entityBlockCache = BlockUtils.ENTITY_BLOCK_CACHE.get(entityId);
+        final EntityBlockCache entityBlockCaches = this.dataStore.getClaimWorldManager(source.getWorld().getProperties()).getEntityBlockCache();
+        BlockPosCache entityBlockCache = entityBlockCaches.get(entityId);
         if (entityBlockCache == null) {
-            entityBlockCache = new BlockPosCache(shortPos);
-            BlockUtils.ENTITY_BLOCK_CACHE.put(entityId, entityBlockCache);
+            entityBlockCache = entityBlockCaches.add(entityId, shortPos);
         } else {
             Tristate result = entityBlockCache.getCacheResult(shortPos);
             if (result != Tristate.UNDEFINED) {
@@ -861,6 +863,26 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
         GPTimings.BLOCK_PLACE_EVENT.stopTimingIfSync();
     }
 
+    // Keeps claim visuals placed on the current surface
+    @Listener(order = Order.POST)
+    public void onBlockChangePost(ChangeBlockEvent.Post event) {
+        if (event.getTransactions().isEmpty()) {
+            return;
+        }
+        final World world = event.getTransactions().get(0).getFinal().getLocation().get().getExtent();
+        if (!GriefPreventionPlugin.instance.claimsEnabledForWorld(world.getProperties())) {
+            return;
+        }
+
+        final VisibleSurfaceCache surfaceCache = this.dataStore.getClaimWorldManager(world.getProperties()).getVisibleSurfaceCache();
+        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+            if (transaction.isValid()) {
+                final Vector3i position = transaction.getFinal().getPosition();
+                surfaceCache.invalidate(position.getX(), position.getZ());
+            }
+        }
+    }
+
     @Listener(order = Order.FIRST, beforeModifications = true)
     public void onSignChanged(ChangeSignEvent event) {
         final User user = CauseContextHelper.getEventUser(event);
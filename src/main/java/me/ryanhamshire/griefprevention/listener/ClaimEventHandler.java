@@ -0,0 +1,70 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.listener;
+
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.api.event.FlagClaimEvent;
+import me.ryanhamshire.griefprevention.api.event.TrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPPermissionCache;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.service.context.Context;
+
+import java.util.Collections;
+import java.util.Set;
+
+// Keeps claim caches in sync with changes made through GP's own claim events
+public class ClaimEventHandler {
+
+    @Listener(order = Order.POST)
+    public void onClaimFlagChange(FlagClaimEvent event) {
+        Set<Context> contexts = Collections.emptySet();
+        if (event instanceof FlagClaimEvent.Set) {
+            contexts = Collections.singleton(((FlagClaimEvent.Set) event).getPermissionContext());
+        } else if (event instanceof FlagClaimEvent.Clear) {
+            contexts = ((FlagClaimEvent.Clear) event).getContexts();
+        }
+        final GPPermissionCache permissionCache = GPPermissionHandler.getPermissionCache();
+        for (Context context : contexts) {
+            // default and override contexts apply to every claim in the world
+            if (!context.getKey().equals("gp_claim")) {
+                permissionCache.invalidateAll();
+                return;
+            }
+        }
+
+        for (Claim claim : event.getClaims()) {
+            permissionCache.invalidate(claim);
+        }
+    }
+
+    @Listener(order = Order.POST)
+    public void onClaimTrustChange(TrustClaimEvent event) {
+        for (Claim claim : event.getClaims()) {
+            GPPermissionHandler.getPermissionCache().invalidate(claim);
+        }
+    }
+}
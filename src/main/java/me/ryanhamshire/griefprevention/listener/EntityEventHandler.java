@@ -940,10 +940,12 @@ public void onEntityTeleport(MoveEntityEvent.Teleport event) {
                         // update lastActive timestamp for claim
                         claim.getData().setDateLastActive(Instant.now());
                         claimWorldManager.addClaim(claim);
+                        claimWorldManager.getExpirationQueue().update((GPClaim) claim);
                     } else if (claim.getParent().isPresent() && claim.getParent().get().getOwnerUniqueId().equals(playerUniqueId)) {
                         // update lastActive timestamp for subdivisions if parent owner logs on
                         claim.getData().setDateLastActive(Instant.now());
                         claimWorldManager.addClaim(claim);
+                        claimWorldManager.getExpirationQueue().update((GPClaim) claim);
                     }
                 }
             }
@@ -24,7 +24,8 @@
  */
 package me.ryanhamshire.griefprevention.listener;
 
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
@@ -38,7 +39,8 @@ public class EntityRemovalListener implements IWorldEventListener {
 
     @Override
     public void onEntityRemoved(Entity entityIn) {
-        BlockUtils.ENTITY_BLOCK_CACHE.remove(entityIn.getEntityId());
+        final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(((org.spongepowered.api.world.World) entityIn.world).getProperties());
+        claimManager.getEntityBlockCache().remove(entityIn.getEntityId());
     }
 
     @Override
@@ -846,6 +846,7 @@ public void onPlayerLogin(ClientConnectionEvent.Login event) {
                     subdivision.getData().setDateLastActive(dateNow);
                 }
                 ((GPClaim) claim).getInternalClaimData().setRequiresSave(true);
+                claimWorldManager.getExpirationQueue().update((GPClaim) claim);
             }
         }
         GPTimings.PLAYER_LOGIN_EVENT.stopTimingIfSync();
@@ -2080,7 +2081,6 @@ else if (location.getBlock().getType() == BlockTypes.FLOWING_WATER || location.g
                                 "remaining-blocks", claimBlocksRemaining);
                         GriefPreventionPlugin.sendMessage(player, MessageStorage.CLAIM_RESIZE_SUCCESS_2D, GriefPreventionPlugin.instance.messageData.claimResizeSuccess, params);
                     }
-                    playerData.revertActiveVisual(player);
                     ((GPClaim) claim).getVisualizer().resetVisuals();
                     ((GPClaim) claim).getVisualizer().createClaimBlockVisuals(location.getBlockY(), player.getLocation(), playerData);
                     ((GPClaim) claim).getVisualizer().apply(player);
@@ -2103,16 +2103,14 @@ else if (location.getBlock().getType() == BlockTypes.FLOWING_WATER || location.g
                     // if in a creative mode world and shrinking an existing claim, restore any unclaimed area
                     if (smaller && GriefPreventionPlugin.instance.claimModeIsActive(oldClaim.getLesserBoundaryCorner().getExtent().getProperties(), ClaimsMode.Creative)) {
                         GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimCleanupWarning.toText());
-                        GriefPreventionPlugin.instance.restoreClaim(oldClaim, 20L * 60 * 2); // 2 minutes
+                        GriefPreventionPlugin.instance.restoreClaim(oldClaim, 20L * 60 * 2, player); // 2 minutes
                         GriefPreventionPlugin.addLogEntry(player.getName() + " shrank a claim @ "
                                 + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()));
                     }
                 } else {
                     if (claimResult.getResultType() == ClaimResultType.OVERLAPPING_CLAIM) {
-                        GPClaim overlapClaim = (GPClaim) claimResult.getClaim().get();
                         GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimResizeOverlap.toText());
-                        List<Claim> claims = new ArrayList<>();
-                        claims.add(overlapClaim);
+                        List<Claim> claims = new ArrayList<>(claimResult.getClaims());
                         CommandHelper.showClaims(player, claims, location.getBlockY(), true);
                     } else {
                         if (!claimResult.getMessage().isPresent()) {
@@ -2146,7 +2144,7 @@ else if (location.getBlock().getType() == BlockTypes.FLOWING_WATER || location.g
 
                         // Check trust
                         if (claim.isAdminClaim()) {
-                            if (!playerData.canManageAdminClaims) {
+                            if (!playerData.getOptions().canManageAdminClaims) {
                                 playerCanResize = false;
                             }
                         } else if (!player.getUniqueId().equals(claim.getOwnerUniqueId())) {
@@ -2283,8 +2281,7 @@ else if (playerData.claimSubdividing != null) {
                             if (!result.successful()) {
                                 if (result.getResultType() == ClaimResultType.OVERLAPPING_CLAIM) {
                                     GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimCreateOverlapShort.toText());
-                                    List<Claim> claims = new ArrayList<>();
-                                    claims.add(gpClaim);
+                                    List<Claim> claims = new ArrayList<>(result.getClaims());
                                     CommandHelper.showClaims(player, claims, location.getBlockY(), true);
                                 }
                                 event.setCancelled(true);
@@ -2355,15 +2352,15 @@ else if (playerData.claimSubdividing != null) {
             if (!player.hasPermission(GPPermissions.OVERRIDE_CLAIM_LIMIT)) {
                 int createClaimLimit = -1;
                 if (playerData.shovelMode == ShovelMode.Basic) {
-                    createClaimLimit = playerData.optionCreateClaimLimitBasic;
+                    createClaimLimit = playerData.getOptions().createClaimLimitBasic;
                 } else if (playerData.shovelMode == ShovelMode.Town) {
-                    createClaimLimit = playerData.optionCreateClaimLimitTown;
+                    createClaimLimit = playerData.getOptions().createClaimLimitTown;
                 } else if (playerData.shovelMode == ShovelMode.Subdivide) {
-                    createClaimLimit = playerData.optionCreateClaimLimitSubdivision;
+                    createClaimLimit = playerData.getOptions().createClaimLimitSubdivision;
                 }
 
                 if (createClaimLimit > 0 &&
-                        (playerData.getInternalClaims().size() + 1) > playerData.optionCreateClaimLimitBasic) {
+                        (playerData.getInternalClaims().size() + 1) > playerData.getOptions().createClaimLimitBasic) {
                     GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimCreateFailedLimit.toText());
                     GPTimings.PLAYER_HANDLE_SHOVEL_ACTION.stopTimingIfSync();
                     return;
@@ -2451,10 +2448,8 @@ else if (playerData.claimSubdividing != null) {
             // if it didn't succeed, tell the player why
             if (!result.successful()) {
                 if (result.getResultType() == ClaimResultType.OVERLAPPING_CLAIM) {
-                    GPClaim overlapClaim = (GPClaim) result.getClaim().get();
                     GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.claimCreateOverlapShort.toText());
-                    List<Claim> claims = new ArrayList<>();
-                    claims.add(overlapClaim);
+                    List<Claim> claims = new ArrayList<>(result.getClaims());
                     CommandHelper.showClaims(player, claims, location.getBlockY(), true);
                 }
                 GPTimings.PLAYER_HANDLE_SHOVEL_ACTION.stopTimingIfSync();
@@ -2554,7 +2549,6 @@ private boolean investigateClaim(Player player, BlockSnapshot clickedBlock, Item
         // visualize boundary
         if (claim.id != playerData.visualClaimId) {
             int height = playerData.lastValidInspectLocation != null ? playerData.lastValidInspectLocation.getBlockY() : clickedBlock.getLocation().get().getBlockY();
-            playerData.revertActiveVisual(player);
             claim.getVisualizer().createClaimBlockVisuals(playerData.optionClaimCreateMode == 1 ? height : player.getProperty(EyeLocationProperty.class).get().getValue().getFloorY(), player.getLocation(), playerData);
             claim.getVisualizer().apply(player);
             if (this.worldEditProvider != null) {
@@ -38,6 +38,7 @@
 import org.spongepowered.api.event.world.UnloadWorldEvent;
 import org.spongepowered.api.event.world.chunk.LoadChunkEvent;
 import org.spongepowered.api.event.world.chunk.UnloadChunkEvent;
+import org.spongepowered.api.world.Chunk;
 import org.spongepowered.common.SpongeImpl;
 
 import java.util.concurrent.TimeUnit;
@@ -73,6 +74,9 @@ public void onWorldLoad(LoadWorldEvent event) {
             int taxHour = GriefPreventionPlugin.getActiveConfig(event.getTargetWorld().getProperties()).getConfig().claim.taxApplyHour;
             long delay = TaskUtils.computeDelay(taxHour, 0, 0);
             Sponge.getScheduler().createTaskBuilder().delay(delay, TimeUnit.SECONDS).interval(1, TimeUnit.DAYS).execute(taxTask).submit(GriefPreventionPlugin.instance);
+            // resume a run interrupted by a restart once player options are loaded
+            Sponge.getScheduler().createTaskBuilder().delay(1, TimeUnit.MINUTES).execute(new TaxApplyTask(event.getTargetWorld().getProperties(), true))
+                .submit(GriefPreventionPlugin.instance);
         }
     }
 
@@ -112,6 +116,12 @@ public void onChunkLoad(LoadChunkEvent event) {
 
     @Listener
     public void onChunkUnload(UnloadChunkEvent event) {
-        
+        final Chunk chunk = event.getTargetChunk();
+        if (!GriefPreventionPlugin.instance.claimsEnabledForWorld(chunk.getWorld().getProperties())) {
+            return;
+        }
+
+        final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(chunk.getWorld().getProperties());
+        claimWorldManager.getVisibleSurfaceCache().removeChunk(chunk.getPosition().getX(), chunk.getPosition().getZ());
     }
 }
@@ -0,0 +1,208 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import org.spongepowered.common.SpongeImpl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Caches the resolved value of {@link GPOptionHandler#getClaimOptionDouble}
+ * for a subject, claim and option.
+ *
+ * <p>Entries are dropped whenever GP changes options or permissions of a
+ * subject, when a claim is removed and on reload. Since permission plugins
+ * can also be edited directly, every entry additionally expires after
+ * {@link #EXPIRATION_TICKS} ticks.</p>
+ *
+ * <p>The keys of each claim and subject are indexed so invalidating them
+ * does not scan the whole cache.</p>
+ *
+ * <p>Note: This cache is only accessed from the main thread.</p>
+ */
+public class GPOptionCache {
+
+    private static final int MAX_ENTRIES = 65536;
+    private static final int EXPIRATION_TICKS = 1200;
+
+    private final Map<Key, Entry> cache = new LinkedHashMap<Key, Entry>(1024, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (this.size() > MAX_ENTRIES) {
+                GPOptionCache.this.evictions++;
+                GPOptionCache.this.unindex(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    private final Map<UUID, Set<Key>> claimKeys = new HashMap<>();
+    private final Map<String, Set<Key>> subjectKeys = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Nullable
+    public Double get(Key key) {
+        final Entry entry = this.cache.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        if (SpongeImpl.getServer().getTickCounter() - entry.tick > EXPIRATION_TICKS) {
+            this.cache.remove(key);
+            this.unindex(key);
+            this.evictions++;
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        return entry.value;
+    }
+
+    public void put(Key key, double value) {
+        if (this.cache.put(key, new Entry(value, SpongeImpl.getServer().getTickCounter())) == null) {
+            this.claimKeys.computeIfAbsent(key.claimUniqueId, k -> new HashSet<>()).add(key);
+            this.subjectKeys.computeIfAbsent(key.subjectIdentifier, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    public void invalidate(Claim claim) {
+        final Set<Key> keys = this.claimKeys.remove(claim.getUniqueId());
+        if (keys == null) {
+            return;
+        }
+
+        for (Key key : keys) {
+            this.cache.remove(key);
+            removeIndex(this.subjectKeys, key.subjectIdentifier, key);
+        }
+    }
+
+    public void invalidate(String subjectIdentifier) {
+        final Set<Key> keys = this.subjectKeys.remove(subjectIdentifier);
+        if (keys == null) {
+            return;
+        }
+
+        for (Key key : keys) {
+            this.cache.remove(key);
+            removeIndex(this.claimKeys, key.claimUniqueId, key);
+        }
+    }
+
+    public void invalidateAll() {
+        this.cache.clear();
+        this.claimKeys.clear();
+        this.subjectKeys.clear();
+    }
+
+    private void unindex(Key key) {
+        removeIndex(this.claimKeys, key.claimUniqueId, key);
+        removeIndex(this.subjectKeys, key.subjectIdentifier, key);
+    }
+
+    private static <T> void removeIndex(Map<T, Set<Key>> index, T indexKey, Key key) {
+        final Set<Key> keys = index.get(indexKey);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            index.remove(indexKey);
+        }
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    private static final class Entry {
+
+        private final double value;
+        private final int tick;
+
+        private Entry(double value, int tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+    }
+
+    public static final class Key {
+
+        private final String subjectIdentifier;
+        private final UUID claimUniqueId;
+        private final String option;
+        private final int hashCode;
+
+        public Key(String subjectIdentifier, UUID claimUniqueId, String option) {
+            this.subjectIdentifier = subjectIdentifier;
+            this.claimUniqueId = claimUniqueId;
+            this.option = option;
+            this.hashCode = 31 * (31 * subjectIdentifier.hashCode() + claimUniqueId.hashCode()) + option.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key that = (Key) o;
+            return this.claimUniqueId.equals(that.claimUniqueId)
+                    && this.option.equals(that.option)
+                    && this.subjectIdentifier.equals(that.subjectIdentifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
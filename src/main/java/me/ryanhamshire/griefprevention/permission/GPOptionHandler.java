@@ -28,14 +28,15 @@
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
-import org.spongepowered.api.service.context.Context;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.service.permission.Subject;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collections;
 
 public class GPOptionHandler {
 
+    private static final GPOptionCache OPTION_CACHE = new GPOptionCache();
+
     public static Double getClaimOptionDouble(Subject subject, Claim claim, GPOptions.Type type, GPPlayerData playerData) {
         if (claim == null) {
             return 0.0;
@@ -56,25 +57,25 @@ public static Double getClaimOptionDouble(Subject subject, Claim claim, String o
         // Handle global options (no context needed)
         switch(option) {
             case GPOptions.ABANDON_RETURN_RATIO_BASIC:
-                return playerData.optionAbandonReturnRatioBasic;
+                return playerData.getOptions().abandonReturnRatioBasic;
             case GPOptions.ABANDON_RETURN_RATIO_TOWN:
-                return playerData.optionAbandonReturnRatioTown;
+                return playerData.getOptions().abandonReturnRatioTown;
             case GPOptions.BLOCKS_ACCRUED_PER_HOUR:
-                return (double) playerData.optionBlocksAccruedPerHour;
+                return (double) playerData.getOptions().blocksAccruedPerHour;
             case GPOptions.CLAIM_EXPIRATION_BASIC:
-                return (double) playerData.optionClaimExpirationBasic;
+                return (double) playerData.getOptions().claimExpirationBasic;
             case GPOptions.CLAIM_EXPIRATION_CHEST:
-                return (double) playerData.optionClaimExpirationChest;
+                return (double) playerData.getOptions().claimExpirationChest;
             case GPOptions.CLAIM_EXPIRATION_SUBDIVISION:
-                return (double) playerData.optionClaimExpirationSubdivision;
+                return (double) playerData.getOptions().claimExpirationSubdivision;
             case GPOptions.CLAIM_EXPIRATION_TOWN:
-                return (double) playerData.optionClaimExpirationTown;
+                return (double) playerData.getOptions().claimExpirationTown;
             case GPOptions.CREATE_CLAIM_LIMIT_BASIC:
-                return (double) playerData.optionCreateClaimLimitBasic;
+                return (double) playerData.getOptions().createClaimLimitBasic;
             case GPOptions.CREATE_CLAIM_LIMIT_SUBDIVISION:
-                return (double) playerData.optionCreateClaimLimitSubdivision;
+                return (double) playerData.getOptions().createClaimLimitSubdivision;
             case GPOptions.CREATE_CLAIM_LIMIT_TOWN:
-                return (double) playerData.optionCreateClaimLimitTown;
+                return (double) playerData.getOptions().createClaimLimitTown;
         }
 
         // Handle claim context options
@@ -96,14 +97,26 @@ public static Double getClaimOptionDouble(Subject subject, Claim claim, String o
             return adminValue;
         }
 
-        Double optionValue = null;
-        Set<Context> contexts = new HashSet<>();
-        contexts.add(claim.getContext());
-        String optionValueStr = subject.getOption(contexts, option).orElse(null);
+        if (!Sponge.getServer().isMainThread()) {
+            return resolveClaimOption(subject, claim, option, adminValue);
+        }
+
+        final GPOptionCache.Key key = new GPOptionCache.Key(subject.getIdentifier(), claim.getUniqueId(), option);
+        Double optionValue = OPTION_CACHE.get(key);
+        if (optionValue == null) {
+            optionValue = resolveClaimOption(subject, claim, option, adminValue);
+            OPTION_CACHE.put(key, optionValue);
+        }
+        return optionValue;
+    }
+
+    private static double resolveClaimOption(Subject subject, Claim claim, String option, double adminValue) {
+        final String optionValueStr = subject.getOption(Collections.singleton(claim.getContext()), option).orElse(null);
         if (optionValueStr == null) {
             return adminValue;
         }
 
+        final double optionValue;
         try {
             optionValue = Double.parseDouble(optionValueStr);
         } catch (NumberFormatException e) {
@@ -142,6 +155,10 @@ public static Double getClaimOptionDouble(Subject subject, Claim claim, String o
         }
     }
 
+    public static GPOptionCache getOptionCache() {
+        return OPTION_CACHE;
+    }
+
     private static String checkClaimOption(GPOptions.Type type, Claim claim) {
         if (claim.isAdminClaim()) {
             return GPOptions.INVALID_OPTION;
@@ -0,0 +1,199 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import com.google.common.base.Objects;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.common.SpongeImpl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Caches the final decision of {@link GPPermissionHandler#getClaimPermission}
+ * for a claim, flag, source, target, subject and trust type.
+ *
+ * <p>Entries are dropped whenever GP changes flags or trust on a claim. Since
+ * permission plugins can also be edited directly, every entry additionally
+ * expires after {@link #EXPIRATION_TICKS} ticks.</p>
+ *
+ * <p>Note: This cache is only accessed from the main thread.</p>
+ */
+public class GPPermissionCache {
+
+    private static final int MAX_ENTRIES = 16384;
+    private static final int EXPIRATION_TICKS = 40;
+
+    private final Map<Key, Entry> cache = new LinkedHashMap<Key, Entry>(1024, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (this.size() > MAX_ENTRIES) {
+                GPPermissionCache.this.evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Nullable
+    public Tristate get(Key key) {
+        final Entry entry = this.cache.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        if (SpongeImpl.getServer().getTickCounter() - entry.tick > EXPIRATION_TICKS) {
+            this.cache.remove(key);
+            this.evictions++;
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        return entry.value;
+    }
+
+    public void put(Key key, Tristate value) {
+        this.cache.put(key, new Entry(value, SpongeImpl.getServer().getTickCounter()));
+    }
+
+    // Removes all decisions made in claim or in any of its children
+    public void invalidate(Claim claim) {
+        final Iterator<Key> iterator = this.cache.keySet().iterator();
+        while (iterator.hasNext()) {
+            final GPClaim cachedClaim = iterator.next().claim;
+            if (cachedClaim.equals(claim) || cachedClaim.isParent(claim)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidate(UUID subjectUniqueId) {
+        final Iterator<Key> iterator = this.cache.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (subjectUniqueId.equals(iterator.next().subjectUniqueId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        this.cache.clear();
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    public double getHitRate() {
+        final long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double) this.hits / total;
+    }
+
+    private static final class Entry {
+
+        private final Tristate value;
+        private final int tick;
+
+        private Entry(Tristate value, int tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+    }
+
+    public static final class Key {
+
+        private final GPClaim claim;
+        private final String flagPermission;
+        private final String sourceId;
+        private final String targetId;
+        @Nullable private final UUID subjectUniqueId;
+        @Nullable private final TrustType trustType;
+        private final boolean checkOverride;
+        private final int hashCode;
+
+        public Key(GPClaim claim, String flagPermission, String sourceId, String targetId, @Nullable UUID subjectUniqueId,
+                @Nullable TrustType trustType, boolean checkOverride) {
+            this.claim = claim;
+            this.flagPermission = flagPermission;
+            this.sourceId = sourceId;
+            this.targetId = targetId;
+            this.subjectUniqueId = subjectUniqueId;
+            this.trustType = trustType;
+            this.checkOverride = checkOverride;
+            this.hashCode = Objects.hashCode(claim.getUniqueId(), flagPermission, sourceId, targetId, subjectUniqueId, trustType, checkOverride);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key that = (Key) o;
+            return this.checkOverride == that.checkOverride
+                    && this.trustType == that.trustType
+                    && this.claim.getUniqueId().equals(that.claim.getUniqueId())
+                    && this.flagPermission.equals(that.flagPermission)
+                    && this.sourceId.equals(that.sourceId)
+                    && this.targetId.equals(that.targetId)
+                    && Objects.equal(this.subjectUniqueId, that.subjectUniqueId);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
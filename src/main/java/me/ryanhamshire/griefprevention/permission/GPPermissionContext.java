@@ -0,0 +1,160 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import org.spongepowered.api.event.Event;
+import org.spongepowered.api.service.context.Context;
+import org.spongepowered.api.service.permission.Subject;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Holds the state of a single claim permission evaluation.
+ *
+ * <p>Instances are pooled per thread and handed out as a stack so an
+ * evaluation may safely start another one, such as a wilderness override
+ * check, on the same thread. Each instance owns a context set that is
+ * cleared and refilled for every permission lookup instead of allocating a
+ * new one.</p>
+ *
+ * <p>Note: An instance must only be used by the thread that acquired it and
+ * must be released once the evaluation is done.</p>
+ */
+final class GPPermissionContext {
+
+    private static final ThreadLocal<Pool> POOL = ThreadLocal.withInitial(Pool::new);
+
+    @Nullable Event event;
+    @Nullable Location<World> location;
+    @Nullable Subject subject;
+    String sourceId = "none";
+    String targetId = "none";
+    // Set to false when the evaluation has side effects such as ban messages
+    boolean resultCacheable = true;
+    // Set while the subject's active contexts are resolved, see GPPermissionHandler#isResolvingActiveContexts
+    boolean resolvingActiveContexts;
+    private final Set<Context> contexts = new LinkedHashSet<>();
+    private final Pool pool;
+
+    private GPPermissionContext(Pool pool) {
+        this.pool = pool;
+    }
+
+    static GPPermissionContext acquire(@Nullable Event event, @Nullable Location<World> location, @Nullable Subject subject) {
+        final GPPermissionContext context = POOL.get().push();
+        context.event = event;
+        context.location = location;
+        context.subject = subject;
+        context.sourceId = "none";
+        context.targetId = "none";
+        context.resultCacheable = true;
+        context.resolvingActiveContexts = false;
+        return context;
+    }
+
+    /**
+     * Gets the innermost evaluation running on the current thread.
+     *
+     * @return The current evaluation, or null if none is running
+     */
+    @Nullable
+    static GPPermissionContext current() {
+        return POOL.get().peek();
+    }
+
+    /**
+     * Resets the reusable context set to the given active contexts.
+     *
+     * <p>The returned set is only valid until the next call on this
+     * evaluation.</p>
+     *
+     * @param activeContexts The active contexts to start from
+     * @return The reusable context set
+     */
+    Set<Context> contexts(Set<Context> activeContexts) {
+        this.contexts.clear();
+        this.contexts.addAll(activeContexts);
+        return this.contexts;
+    }
+
+    /**
+     * Resets the reusable context set to the active contexts of a subject,
+     * resolved without the claim the subject is standing in.
+     *
+     * <p>The returned set is only valid until the next call on this
+     * evaluation.</p>
+     *
+     * @param subject The subject
+     * @return The reusable context set
+     */
+    Set<Context> activeContexts(Subject subject) {
+        this.resolvingActiveContexts = true;
+        try {
+            return this.contexts(subject.getActiveContexts());
+        } finally {
+            this.resolvingActiveContexts = false;
+        }
+    }
+
+    void release() {
+        this.event = null;
+        this.location = null;
+        this.subject = null;
+        this.contexts.clear();
+        this.pool.pop(this);
+    }
+
+    private static final class Pool {
+
+        private final List<GPPermissionContext> stack = new ArrayList<>(4);
+        private int depth;
+
+        private GPPermissionContext push() {
+            if (this.depth == this.stack.size()) {
+                this.stack.add(new GPPermissionContext(this));
+            }
+            return this.stack.get(this.depth++);
+        }
+
+        @Nullable
+        private GPPermissionContext peek() {
+            return this.depth == 0 ? null : this.stack.get(this.depth - 1);
+        }
+
+        private void pop(GPPermissionContext context) {
+            if (this.depth == 0 || this.stack.get(this.depth - 1) != context) {
+                throw new IllegalStateException("Permission contexts must be released in reverse order of acquisition");
+            }
+            this.depth--;
+        }
+    }
+}
@@ -25,21 +25,21 @@
  */
 package me.ryanhamshire.griefprevention.permission;
 
+import com.google.common.collect.ImmutableSet;
 import me.ryanhamshire.griefprevention.GPFlags;
+import me.ryanhamshire.griefprevention.GPMetrics;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
-import me.ryanhamshire.griefprevention.api.claim.Claim;
-import me.ryanhamshire.griefprevention.api.claim.ClaimContexts;
 import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
 import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.claim.ClaimContextSets;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
 import net.minecraft.entity.EnumCreatureType;
 import net.minecraft.entity.item.EntityItem;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.item.ItemBlock;
 import org.apache.commons.lang3.StringUtils;
 import org.spongepowered.api.CatalogType;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
@@ -70,21 +70,16 @@
 import org.spongepowered.api.world.World;
 import org.spongepowered.common.SpongeImplHooks;
 
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 public class GPPermissionHandler {
 
-    private static Event currentEvent;
-    private static Location<World> eventLocation;
-    private static Subject eventSubject;
-    private static String eventSourceId = "none";
-    private static String eventTargetId = "none";
     private static final Pattern PATTERN_META = Pattern.compile("\\.[\\d+]*$");
+    private static final GPPermissionCache PERMISSION_CACHE = new GPPermissionCache();
 
     public static Tristate getClaimPermission(Event event, Location<World> location, GPClaim claim, String flagPermission, Object source, Object target, User user) {
         return getClaimPermission(event, location, claim, flagPermission, source, target, user, null, false);
@@ -100,19 +95,43 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
         }
 
         GPPlayerData playerData = null;
-        eventSubject = null;
-        if (user != null) {
-            eventSubject = user;
-            if (user instanceof Player) {
-                playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(claim.world, user.getUniqueId());
+        if (user instanceof Player) {
+            playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(claim.world, user.getUniqueId());
+        }
+
+        final long metricsStart = GPMetrics.start();
+        final GPPermissionContext context = GPPermissionContext.acquire(event, location, user);
+        try {
+            final String sourceId = getPermissionIdentifier(source, true, context);
+            final String targetId = getPermissionIdentifier(target, false, context);
+            final boolean useCache = !GriefPreventionPlugin.debugActive && (playerData == null || !playerData.debugClaimPermissions)
+                    && Sponge.getServer().isMainThread();
+            if (!useCache) {
+                return evaluateClaimPermission(context, claim, flagPermission, sourceId, targetId, user, type, playerData, checkOverride);
+            }
+
+            final GPPermissionCache.Key key = new GPPermissionCache.Key(claim, flagPermission, sourceId, targetId, user == null ? null : user.getUniqueId(),
+                    type, checkOverride);
+            Tristate value = PERMISSION_CACHE.get(key);
+            if (value != null) {
+                return value;
+            }
+
+            value = evaluateClaimPermission(context, claim, flagPermission, sourceId, targetId, user, type, playerData, checkOverride);
+            if (context.resultCacheable) {
+                PERMISSION_CACHE.put(key, value);
             }
+            return value;
+        } finally {
+            context.release();
+            GPMetrics.recordEvent(metricsStart, event);
+            GPMetrics.CLAIM_PERMISSION.record(metricsStart, flagPermission, claim.getType(), claim.world.getName());
         }
-        currentEvent = event;
-        eventLocation = location;
+    }
 
-        String sourceId = getPermissionIdentifier(source, true);
+    private static Tristate evaluateClaimPermission(GPPermissionContext context, GPClaim claim, String flagPermission, String sourceId, String targetId,
+            User user, TrustType type, GPPlayerData playerData, boolean checkOverride) {
         String targetPermission = flagPermission;
-        String targetId = getPermissionIdentifier(target);
         String targetModPermission = null;
         String targetMetaPermission = null;
         if (!targetId.isEmpty()) {
@@ -155,13 +174,13 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
             Tristate override = Tristate.UNDEFINED;
             if (user != null) {
                 // check global bans in wilderness
-                override = getFlagOverride((GPClaim) claim.getWilderness(), user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
+                override = getFlagOverride(context, (GPClaim) claim.getWilderness(), user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
                 if (override != Tristate.UNDEFINED) {
                     return override;
                 }
             }
             // First check for claim flag overrides
-            override = getFlagOverride(claim, user == null ? GriefPreventionPlugin.GLOBAL_SUBJECT : user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
+            override = getFlagOverride(context, claim, user == null ? GriefPreventionPlugin.GLOBAL_SUBJECT : user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
             if (override != Tristate.UNDEFINED) {
                 return override;
             }
@@ -170,105 +189,97 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
         if (playerData != null) {
             if (playerData.debugClaimPermissions) {
                 if (user != null && type != null && claim.isUserTrusted(user, type)) {
-                    return processResult(claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
+                    return processResult(context, claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
                 }
-                return getClaimFlagPermission(claim, targetPermission, targetModPermission, targetMetaPermission);
+                return getClaimFlagPermission(context, claim, targetPermission, targetModPermission, targetMetaPermission);
             }
              // Check for ignoreclaims after override and debug checks
             if (playerData.canIgnoreClaim(claim)) {
-                return processResult(claim, "trust.ignore", Tristate.TRUE, user);
+                return processResult(context, claim, "trust.ignore", Tristate.TRUE, user);
             }
         }
         if (user != null) {
             if (type != null) {
                 if (claim.isUserTrusted(user, type)) {
-                    return processResult(claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
+                    return processResult(context, claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
                 }
             }
-            return getUserPermission(user, claim, targetPermission, targetModPermission, targetMetaPermission, playerData);
+            return getUserPermission(context, user, claim, targetPermission, targetModPermission, targetMetaPermission);
         }
 
-        return getClaimFlagPermission(claim, targetPermission, targetModPermission, targetMetaPermission);
+        return getClaimFlagPermission(context, claim, targetPermission, targetModPermission, targetMetaPermission);
     }
 
-    private static Tristate getUserPermission(User user, GPClaim claim, String permission, String targetModPermission, String targetMetaPermission, GPPlayerData playerData) {
-        final List<Claim> inheritParents = claim.getInheritedParents();
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = true;
-        }
-        final Set<Context> contexts = new HashSet<>(user.getActiveContexts());
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = false;
-        }
+    private static Tristate getUserPermission(GPPermissionContext context, User user, GPClaim claim, String permission, String targetModPermission, String targetMetaPermission) {
+        final ClaimContextSets contextSets = claim.getContextSets();
+        final Set<Context> contexts = context.activeContexts(user);
 
-        for (Claim parentClaim : inheritParents) {
-            GPClaim parent = (GPClaim) parentClaim;
+        for (Context parentContext : contextSets.getInheritedContexts()) {
             // check parent context
-            contexts.add(parent.getContext());  
+            contexts.add(parentContext);
 
             Tristate value = user.getPermissionValue(contexts, permission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, permission, value, user);
+                return processResult(context, claim, permission, value, user);
             }
             if (targetModPermission != null) {
                 value = user.getPermissionValue(contexts, targetModPermission);
                 if (value != Tristate.UNDEFINED) {
-                    return processResult(claim, targetModPermission, value, user);
+                    return processResult(context, claim, targetModPermission, value, user);
                 }
             }
 
-            contexts.remove(parent.getContext());
+            contexts.remove(parentContext);
         }
 
         contexts.add(claim.getContext());
         Tristate value = user.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, user);
+            return processResult(context, claim, permission, value, user);
         }
         if (targetMetaPermission != null) {
             value = user.getPermissionValue(contexts, targetMetaPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(context, claim, targetMetaPermission, value, user);
             }
         }
         if (targetModPermission != null) {
             value = user.getPermissionValue(contexts, targetModPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(context, claim, targetModPermission, value, user);
             }
         }
 
-        return getClaimFlagPermission(claim, permission, targetModPermission, targetMetaPermission);
+        return getClaimFlagPermission(context, claim, permission, targetModPermission, targetMetaPermission);
     }
 
-    private static Tristate getClaimFlagPermission(GPClaim claim, String permission, String targetModPermission, String targetMetaPermission) {
-        Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
-        contexts.add(claim.getContext());
+    private static Tristate getClaimFlagPermission(GPPermissionContext context, GPClaim claim, String permission, String targetModPermission,
+            String targetMetaPermission) {
+        final Set<Context> contexts = claim.getContextSets().getGlobalFlagContexts();
 
         Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+            return processResult(context, claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
         }
         if (targetMetaPermission != null) {
             value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, targetMetaPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetMetaPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                return processResult(context, claim, targetMetaPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
             }
         }
         if (targetModPermission != null) {
             value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, targetModPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetModPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                return processResult(context, claim, targetModPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
             }
         }
 
-        return getFlagDefaultPermission(claim, permission);
+        return getFlagDefaultPermission(context, claim, permission);
     }
 
     // Only uses world and claim type contexts
-    private static Tristate getFlagDefaultPermission(GPClaim claim, String permission) {
+    private static Tristate getFlagDefaultPermission(GPPermissionContext context, GPClaim claim, String permission) {
         // Fallback to defaults
-        Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
         if (claim.parent != null && claim.getData().doesInheritParent()) {
             if (claim.parent.parent != null && claim.parent.getData().doesInheritParent()) {
                 claim = claim.parent.parent;
@@ -277,52 +288,23 @@ private static Tristate getFlagDefaultPermission(GPClaim claim, String permissio
             }
         }
 
-        if (claim.isAdminClaim()) {
-            contexts.add(ClaimContexts.ADMIN_DEFAULT_CONTEXT);
-        } else if (claim.isBasicClaim() || claim.isSubdivision()) {
-            contexts.add(ClaimContexts.BASIC_DEFAULT_CONTEXT);
-        } else if (claim.isTown()) {
-            contexts.add(ClaimContexts.TOWN_DEFAULT_CONTEXT);
-        } else { // wilderness
-            contexts.add(ClaimContexts.WILDERNESS_DEFAULT_CONTEXT);
-        }
-
-        contexts.add(claim.world.getContext());
+        final Set<Context> contexts = claim.getContextSets().getGlobalDefaultContexts();
         // check persisted/transient default data
         Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+            return processResult(context, claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
         }
 
-        return processResult(claim, permission, Tristate.UNDEFINED, GriefPreventionPlugin.GLOBAL_SUBJECT);
+        return processResult(context, claim, permission, Tristate.UNDEFINED, GriefPreventionPlugin.GLOBAL_SUBJECT);
     }
 
-    private static Tristate getFlagOverride(GPClaim claim, Subject subject, User user, GPPlayerData playerData, String flagPermission, String targetModPermission, String targetMetaPermission) {
+    private static Tristate getFlagOverride(GPPermissionContext context, GPClaim claim, Subject subject, User user, GPPlayerData playerData, String flagPermission, String targetModPermission, String targetMetaPermission) {
         if (!claim.getInternalClaimData().allowFlagOverrides()) {
             return Tristate.UNDEFINED;
         }
 
-        Player player = null;
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = true;
-        }
-        Set<Context> contexts = new LinkedHashSet<>(subject.getActiveContexts());
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = false;
-        }
-        if (claim.isAdminClaim()) {
-            contexts.add(ClaimContexts.ADMIN_OVERRIDE_CONTEXT);
-            contexts.add(claim.world.getContext());
-        } else if (claim.isTown()) {
-            contexts.add(ClaimContexts.TOWN_OVERRIDE_CONTEXT);
-            contexts.add(claim.world.getContext());
-        } else if (claim.isBasicClaim()) {
-            contexts.add(ClaimContexts.BASIC_OVERRIDE_CONTEXT);
-            contexts.add(claim.world.getContext());
-        } else if (claim.isWilderness()) {
-            contexts.add(ClaimContexts.WILDERNESS_OVERRIDE_CONTEXT);
-            player = user instanceof Player ? (Player) user : null;
-        }
+        final Set<Context> contexts = getOverrideContexts(context, claim, subject);
+        final Player player = claim.isWilderness() && user instanceof Player ? (Player) user : null;
 
         Tristate value = subject.getPermissionValue(contexts, flagPermission);
         if (value != Tristate.UNDEFINED) {
@@ -330,9 +312,10 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                 Text reason = GriefPreventionPlugin.getGlobalConfig().getConfig().bans.getReason(flagPermission);
                 if (reason != null && !reason.isEmpty()) {
                     player.sendMessage(reason);
+                    context.resultCacheable = false;
                 }
             }
-            return processResult(claim, flagPermission, value, user);
+            return processResult(context, claim, flagPermission, value, user);
         }
         if (targetMetaPermission != null) {
             value = subject.getPermissionValue(contexts, targetMetaPermission);
@@ -341,9 +324,10 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                     Text reason = GriefPreventionPlugin.getGlobalConfig().getConfig().bans.getReason(targetMetaPermission);
                     if (reason != null && !reason.isEmpty()) {
                         player.sendMessage(reason);
+                        context.resultCacheable = false;
                     }
                 }
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(context, claim, targetMetaPermission, value, user);
             }
         }
         if (targetModPermission != null) {
@@ -353,9 +337,10 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                     Text reason = GriefPreventionPlugin.getGlobalConfig().getConfig().bans.getReason(targetModPermission);
                     if (reason != null && !reason.isEmpty()) {
                         player.sendMessage(reason);
+                        context.resultCacheable = false;
                     }
                 }
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(context, claim, targetModPermission, value, user);
             }
         }
 
@@ -374,19 +359,25 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
             }
         }
 
-        currentEvent = event;
-        eventLocation = location;
-        eventSubject = user;
-        Player player = null;
+        final GPPermissionContext context = GPPermissionContext.acquire(event, location, user);
+        try {
+            return getFlagOverride(context, claim, flagPermission, source, target, user, playerData);
+        } finally {
+            context.release();
+        }
+    }
+
+    private static Tristate getFlagOverride(GPPermissionContext context, GPClaim claim, String flagPermission, Object source, Object target, User user,
+            GPPlayerData playerData) {
         final Subject subject = user != null ? user : GriefPreventionPlugin.GLOBAL_SUBJECT;
         String targetModPermission = null;
         String targetMetaPermission = null;
         if (target != null && source == null) {
-            String targetId = getPermissionIdentifier(target);
+            String targetId = getPermissionIdentifier(target, false, context);
             flagPermission += "." + targetId;
         } else if (target != null && source != null) {
-            String sourceId = getPermissionIdentifier(source, true);
-            String targetId = getPermissionIdentifier(target);
+            String sourceId = getPermissionIdentifier(source, true, context);
+            String targetId = getPermissionIdentifier(target, false, context);
             if (!targetId.isEmpty()) {
                 String[] parts = targetId.split(":");
                 String targetMod = parts[0];
@@ -411,26 +402,8 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
         }
 
         flagPermission = StringUtils.replace(flagPermission, ":", ".");
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = true;
-        }
-        Set<Context> contexts = new LinkedHashSet<>(subject.getActiveContexts());
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = false;
-        }
-        if (claim.isWilderness()) {
-            contexts.add(ClaimContexts.WILDERNESS_OVERRIDE_CONTEXT);
-            player = user instanceof Player ? (Player) user : null;
-        } else if (claim.isAdminClaim()) {
-            contexts.add(ClaimContexts.ADMIN_OVERRIDE_CONTEXT);
-            contexts.add(claim.world.getContext());
-        } else if (claim.isTown()) {
-            contexts.add(ClaimContexts.TOWN_OVERRIDE_CONTEXT);
-            contexts.add(claim.world.getContext());
-        } else {
-            contexts.add(ClaimContexts.BASIC_OVERRIDE_CONTEXT);
-            contexts.add(claim.world.getContext());
-        }
+        final Set<Context> contexts = getOverrideContexts(context, claim, subject);
+        final Player player = claim.isWilderness() && user instanceof Player ? (Player) user : null;
 
         Tristate value = subject.getPermissionValue(contexts, flagPermission);
         if (value != Tristate.UNDEFINED) {
@@ -440,7 +413,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                     player.sendMessage(reason);
                 }
             }
-            return processResult(claim, flagPermission, value, user);
+            return processResult(context, claim, flagPermission, value, user);
         }
         if (targetMetaPermission != null) {
             value = subject.getPermissionValue(contexts, targetMetaPermission);
@@ -451,7 +424,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(context, claim, targetMetaPermission, value, user);
             }
         }
         // check target modid
@@ -464,13 +437,25 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(context, claim, targetModPermission, value, user);
             }
         }
 
         return Tristate.UNDEFINED;
     }
 
+    // Claim type override contexts on top of the subject's active contexts
+    private static Set<Context> getOverrideContexts(GPPermissionContext context, GPClaim claim, Subject subject) {
+        final ClaimContextSets contextSets = claim.getContextSets();
+        if (subject == GriefPreventionPlugin.GLOBAL_SUBJECT) {
+            return contextSets.getGlobalOverrideContexts();
+        }
+
+        final Set<Context> contexts = context.activeContexts(subject);
+        contexts.addAll(contextSets.getOverrideContexts());
+        return contexts;
+    }
+
     // used by Flag API
     public static Tristate getClaimPermission(GPClaim claim, ClaimFlag flag, Subject subject, String source, String target, Context context) {
         final String flagBasePermission = GPPermissions.FLAG_BASE + "." + flag.toString();
@@ -483,8 +468,7 @@ public static Tristate getClaimPermission(GPClaim claim, ClaimFlag flag, Subject
                 String[] parts = targetId.split(":");
                 String targetMod = parts[0];
                 // move target meta to end of permission
-                Pattern p = Pattern.compile("\\.[\\d+]*$");
-                Matcher m = p.matcher(targetId);
+                Matcher m = PATTERN_META.matcher(targetId);
                 String targetMeta = "";
                 if (m.find()) {
                     targetMeta = m.group(0);
@@ -498,43 +482,75 @@ public static Tristate getClaimPermission(GPClaim claim, ClaimFlag flag, Subject
             }
         }
         targetPermission = StringUtils.replace(targetPermission, ":", ".");
-        Set<Context> contexts = new HashSet<>();
-        contexts.add(context);
-        return subject.getPermissionValue(contexts, targetPermission);
+        return subject.getPermissionValue(ImmutableSet.of(context), targetPermission);
     }
 
     public static Tristate processResult(GPClaim claim, String permission, Tristate permissionValue, Subject permissionSubject) {
-        if (GriefPreventionPlugin.debugActive) {
+        return processResult(GPPermissionContext.current(), claim, permission, permissionValue, permissionSubject);
+    }
+
+    private static Tristate processResult(@Nullable GPPermissionContext context, GPClaim claim, String permission, Tristate permissionValue,
+            Subject permissionSubject) {
+        if (GriefPreventionPlugin.debugActive && context != null) {
+            final Event event = context.event;
             if (permissionSubject == null) {
-                if (eventSubject != null) {
-                    permissionSubject = eventSubject;
-                } else if (currentEvent.getCause().root() instanceof User) {
-                    permissionSubject = (Subject) currentEvent.getCause().root();
+                if (context.subject != null) {
+                    permissionSubject = context.subject;
+                } else if (event != null && event.getCause().root() instanceof User) {
+                    permissionSubject = (Subject) event.getCause().root();
                 } else {
                     permissionSubject = GriefPreventionPlugin.GLOBAL_SUBJECT;
                 }
             }
-            if (currentEvent instanceof CollideEvent || currentEvent instanceof NotifyNeighborBlockEvent) {
+            if (event instanceof CollideEvent || event instanceof NotifyNeighborBlockEvent) {
                 if (claim.getWorld().getProperties().getTotalTime() % 100 == 0L) {
-                    GriefPreventionPlugin.addEventLogEntry(currentEvent, claim, eventLocation, eventSubject, eventSourceId, eventTargetId, permissionSubject, permission, permissionValue);
+                    GriefPreventionPlugin.addEventLogEntry(event, claim, context.location, context.subject, context.sourceId, context.targetId,
+                            permissionSubject, permission, permissionValue);
                 }
             } else {
-                GriefPreventionPlugin.addEventLogEntry(currentEvent, claim, eventLocation, eventSubject, eventSourceId, eventTargetId, permissionSubject, permission, permissionValue);
+                GriefPreventionPlugin.addEventLogEntry(event, claim, context.location, context.subject, context.sourceId, context.targetId,
+                        permissionSubject, permission, permissionValue);
             }
         }
 
         return permissionValue;
     }
 
+    /**
+     * Gets whether the current thread is resolving a subject's active
+     * contexts for a permission evaluation, which the claim context
+     * calculator must not add the subject's current claim to.
+     *
+     * @return Whether active contexts are being resolved for an evaluation
+     */
+    public static boolean isResolvingActiveContexts() {
+        final GPPermissionContext context = GPPermissionContext.current();
+        return context != null && context.resolvingActiveContexts;
+    }
+
+    public static GPPermissionCache getPermissionCache() {
+        return PERMISSION_CACHE;
+    }
+
     public static String getPermissionIdentifier(Object obj) {
         return getPermissionIdentifier(obj, false);
     }
 
-    @SuppressWarnings("deprecation")
     public static String getPermissionIdentifier(Object obj, boolean isSource) {
+        return getPermissionIdentifier(obj, isSource, GPPermissionContext.current());
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String getPermissionIdentifier(Object obj, boolean isSource, @Nullable GPPermissionContext context) {
         if (obj != null) {
             if (obj instanceof Entity) {
                 Entity targetEntity = (Entity) obj;
+                final GPPermissionIdentifier identifier = GPPermissionIdentifier.of(targetEntity);
+                if (identifier != null) {
+                    populateEventSourceTarget(context, identifier.getId(), isSource);
+                    return isSource ? identifier.getId() : identifier.getTargetId();
+                }
+
                 net.minecraft.entity.Entity mcEntity = (net.minecraft.entity.Entity) targetEntity;
                 String id = "";
                 if (mcEntity instanceof EntityItem) {
@@ -555,7 +571,7 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                 } else if (id.equals("unknown:unknown") && obj instanceof EntityPlayer) {
                     id = "minecraft:player";
                 }
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 if (!isSource && targetEntity instanceof Living) {
                     for (EnumCreatureType type : EnumCreatureType.values()) {
                         if (SpongeImplHooks.isCreatureOfType(mcEntity, type)) {
@@ -570,71 +586,63 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
 
                 if (targetEntity instanceof Item) {
                     id = ((Item) targetEntity).getItemType().getId();
-                    populateEventSourceTarget(id, isSource);
+                    populateEventSourceTarget(context, id, isSource);
                 }
 
                 return id.toLowerCase();
             } else if (obj instanceof EntityType) {
                 final String id = ((EntityType) obj).getId();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return ((EntityType) obj).getId();
             } else if (obj instanceof BlockType) {
                 final String id = ((BlockType) obj).getId();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof BlockSnapshot) {
                 final BlockSnapshot blockSnapshot = (BlockSnapshot) obj;
                 final BlockState blockstate = blockSnapshot.getState();
-                String id = "";
-                if (currentEvent != null && !(currentEvent instanceof ChangeBlockEvent.Pre)) {
-                    id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
+                final GPPermissionIdentifier identifier = GPPermissionIdentifier.of(blockstate);
+                final String id;
+                // Identifiers requested outside of an evaluation keep their meta
+                if (context == null || (context.event != null && !(context.event instanceof ChangeBlockEvent.Pre))) {
+                    id = identifier.getId();
                 } else {
-                    id = blockstate.getType().getId();
+                    id = identifier.getIdWithoutMeta();
                 }
-                populateEventSourceTarget(id, isSource);
-                return id.toLowerCase();
+                populateEventSourceTarget(context, id, isSource);
+                return id;
             } else if (obj instanceof BlockState) {
-                final BlockState blockstate = (BlockState) obj;
-                final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                populateEventSourceTarget(id, isSource);
-                return id.toLowerCase();
+                final String id = GPPermissionIdentifier.of((BlockState) obj).getId();
+                populateEventSourceTarget(context, id, isSource);
+                return id;
             } else if (obj instanceof LocatableBlock) {
                 final LocatableBlock locatableBlock = (LocatableBlock) obj;
-                final BlockState blockstate = locatableBlock.getBlockState();
-                final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                populateEventSourceTarget(id, isSource);
-                return id.toLowerCase();
+                final String id = GPPermissionIdentifier.of(locatableBlock.getBlockState()).getId();
+                populateEventSourceTarget(context, id, isSource);
+                return id;
             } else if (obj instanceof TileEntity) {
                 TileEntity tileEntity = (TileEntity) obj;
                 final String id = tileEntity.getType().getId().toLowerCase();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof ItemStack) {
                 final ItemStack itemstack = (ItemStack) obj;
-                String id = "";
-                if (itemstack.getType() instanceof ItemBlock) {
-                    ItemBlock itemBlock = (ItemBlock) itemstack.getType();
-                    net.minecraft.item.ItemStack nmsStack = (net.minecraft.item.ItemStack)(Object) itemstack;
-                    BlockState blockState = ((BlockState) itemBlock.getBlock().getStateFromMeta(nmsStack.getItemDamage()));
-                    id = blockState.getType().getId() + "." + nmsStack.getItemDamage();
-                } else {
-                    id = itemstack.getType().getId() + "." + ((net.minecraft.item.ItemStack)(Object) itemstack).getItemDamage();
-                }
-
-                populateEventSourceTarget(id, isSource);
-                return id.toLowerCase();
+                final int meta = ((net.minecraft.item.ItemStack)(Object) itemstack).getItemDamage();
+                final String id = GPPermissionIdentifier.of(itemstack.getType(), meta).getId();
+                populateEventSourceTarget(context, id, isSource);
+                return id;
             } else if (obj instanceof ItemType) {
-                final String id = ((ItemType) obj).getId().toLowerCase();
-                populateEventSourceTarget(id, isSource);
+                final String id = GPPermissionIdentifier.of((ItemType) obj).getId();
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof EntityDamageSource) {
                 final EntityDamageSource damageSource = (EntityDamageSource) obj;
-                if (eventSubject == null && damageSource.getSource() instanceof User) {
-                    eventSubject = (User) damageSource.getSource();
+                if (context != null && context.subject == null && damageSource.getSource() instanceof User) {
+                    context.subject = (User) damageSource.getSource();
                 }
 
                 final String id = damageSource.getSource().getType().getId();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return damageSource.getSource().getType().getId();
             } else if (obj instanceof DamageSource) {
                 final DamageSource damageSource = (DamageSource) obj;
@@ -643,30 +651,30 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                     id = "minecraft:" + id;
                 }
 
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof ItemStackSnapshot) {
                 final String id = ((ItemStackSnapshot) obj).getType().getId();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof CatalogType) {
                 final String id = ((CatalogType) obj).getId();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof String) {
                 final String id = obj.toString().toLowerCase();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof PluginContainer) {
                 final String id = ((PluginContainer) obj).getId();
-                populateEventSourceTarget(id, isSource);
+                populateEventSourceTarget(context, id, isSource);
                 return id;
             } else if (obj instanceof Inventory) {
                 return ((Inventory) obj).getArchetype().getId();
             }
         }
 
-        populateEventSourceTarget("none", isSource);
+        populateEventSourceTarget(context, "none", isSource);
         return "";
     }
 
@@ -740,11 +748,14 @@ public static String getIdentifierWithoutMeta(String targetId) {
         return targetId;
     }
 
-    private static void populateEventSourceTarget(String id, boolean isSource) {
+    private static void populateEventSourceTarget(@Nullable GPPermissionContext context, String id, boolean isSource) {
+        if (context == null) {
+            return;
+        }
         if (isSource) {
-            eventSourceId = id.toLowerCase();
+            context.sourceId = id.toLowerCase();
         } else {
-            eventTargetId = id.toLowerCase();
+            context.targetId = id.toLowerCase();
         }
     }
 }
@@ -0,0 +1,202 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.GPFlags;
+import me.ryanhamshire.griefprevention.util.BlockUtils;
+import net.minecraft.entity.EnumCreatureType;
+import net.minecraft.item.ItemBlock;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.Item;
+import org.spongepowered.api.entity.living.Living;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.common.SpongeImplHooks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Immutable permission identifier of a block state, entity or item.
+ *
+ * <p>Descriptors are created the first time a type is seen and are then
+ * shared for the rest of the server session, so listeners no longer rebuild
+ * and lowercase the same identifier strings on every event.</p>
+ */
+public final class GPPermissionIdentifier {
+
+    private static final Map<BlockState, GPPermissionIdentifier> BLOCKSTATE_IDENTIFIERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, GPPermissionIdentifier> ENTITY_IDENTIFIERS = new ConcurrentHashMap<>();
+    private static final Map<ItemType, GPPermissionIdentifier> ITEM_IDENTIFIERS = new ConcurrentHashMap<>();
+    private static final Map<ItemType, Map<Integer, GPPermissionIdentifier>> ITEM_META_IDENTIFIERS = new ConcurrentHashMap<>();
+
+    private final String id;
+    private final String idWithoutMeta;
+    private final String modId;
+    @Nullable private final String creatureCategory;
+    private final String targetId;
+
+    private GPPermissionIdentifier(String id, String idWithoutMeta, @Nullable String creatureCategory) {
+        this.id = id.toLowerCase();
+        this.idWithoutMeta = idWithoutMeta.toLowerCase();
+        final int index = this.id.indexOf(':');
+        this.modId = index == -1 ? "minecraft" : this.id.substring(0, index);
+        this.creatureCategory = creatureCategory;
+        if (creatureCategory != null && index != -1) {
+            this.targetId = this.modId + ":" + creatureCategory + ":" + this.id.substring(index + 1);
+        } else {
+            this.targetId = this.id;
+        }
+    }
+
+    /**
+     * Gets the permission identifier, including meta if available.
+     *
+     * @return The identifier
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    public String getIdWithoutMeta() {
+        return this.idWithoutMeta;
+    }
+
+    public String getModId() {
+        return this.modId;
+    }
+
+    /**
+     * Gets the creature category of a living entity such as
+     * 'animal' or 'monster'.
+     *
+     * @return The creature category, or null if none
+     */
+    @Nullable
+    public String getCreatureCategory() {
+        return this.creatureCategory;
+    }
+
+    /**
+     * Gets the identifier used when this object is the target of a flag.
+     *
+     * <p>For living entities the creature category is inserted after the
+     * mod id, ex. 'minecraft:animal:pig'. Otherwise, this is the same as
+     * {@link #getId()}.</p>
+     *
+     * @return The target identifier
+     */
+    public String getTargetId() {
+        return this.targetId;
+    }
+
+    public static GPPermissionIdentifier of(BlockState blockState) {
+        GPPermissionIdentifier identifier = BLOCKSTATE_IDENTIFIERS.get(blockState);
+        if (identifier == null) {
+            final String typeId = blockState.getType().getId();
+            identifier = new GPPermissionIdentifier(typeId + "." + BlockUtils.getBlockStateMeta(blockState), typeId, null);
+            BLOCKSTATE_IDENTIFIERS.put(blockState, identifier);
+        }
+
+        return identifier;
+    }
+
+    public static GPPermissionIdentifier of(ItemType itemType) {
+        GPPermissionIdentifier identifier = ITEM_IDENTIFIERS.get(itemType);
+        if (identifier == null) {
+            identifier = new GPPermissionIdentifier(itemType.getId(), itemType.getId(), null);
+            ITEM_IDENTIFIERS.put(itemType, identifier);
+        }
+
+        return identifier;
+    }
+
+    @SuppressWarnings("deprecation")
+    public static GPPermissionIdentifier of(ItemType itemType, int meta) {
+        Map<Integer, GPPermissionIdentifier> identifiers = ITEM_META_IDENTIFIERS.get(itemType);
+        if (identifiers == null) {
+            identifiers = new ConcurrentHashMap<>();
+            ITEM_META_IDENTIFIERS.put(itemType, identifiers);
+        }
+
+        GPPermissionIdentifier identifier = identifiers.get(meta);
+        if (identifier == null) {
+            String typeId = itemType.getId();
+            if (itemType instanceof ItemBlock) {
+                final BlockState blockState = (BlockState) ((ItemBlock) itemType).getBlock().getStateFromMeta(meta);
+                typeId = blockState.getType().getId();
+            }
+            identifier = new GPPermissionIdentifier(typeId + "." + meta, typeId, null);
+            identifiers.put(meta, identifier);
+        }
+
+        return identifier;
+    }
+
+    /**
+     * Gets the identifier of an entity.
+     *
+     * <p>Entity ids and creature categories are resolved per entity class.
+     * Entities with an unknown type, such as fake players, are not cached as
+     * their identifier depends on the instance.</p>
+     *
+     * @param entity The entity
+     * @return The identifier, or null if it cannot be cached
+     */
+    @Nullable
+    public static GPPermissionIdentifier of(Entity entity) {
+        if (entity instanceof Item) {
+            return of(((Item) entity).getItemType());
+        }
+
+        GPPermissionIdentifier identifier = ENTITY_IDENTIFIERS.get(entity.getClass());
+        if (identifier == null) {
+            if (entity.getType() == null) {
+                return null;
+            }
+            final String id = entity.getType().getId();
+            if (id.contains("unknown")) {
+                return null;
+            }
+
+            String creatureCategory = null;
+            if (entity instanceof Living) {
+                final net.minecraft.entity.Entity mcEntity = (net.minecraft.entity.Entity) entity;
+                for (EnumCreatureType type : EnumCreatureType.values()) {
+                    if (SpongeImplHooks.isCreatureOfType(mcEntity, type)) {
+                        creatureCategory = GPFlags.SPAWN_TYPES.inverse().get(type);
+                        break;
+                    }
+                }
+            }
+            identifier = new GPPermissionIdentifier(id, id, creatureCategory);
+            ENTITY_IDENTIFIERS.put(entity.getClass(), identifier);
+        }
+
+        return identifier;
+    }
+}
@@ -125,6 +125,8 @@ public class GPPermissions {
     public static final String COMMAND_RESTORE_NATURE_AGGRESSIVE = "griefprevention.admin.command.restore-nature.aggressive";
     public static final String COMMAND_RESTORE_NATURE_FILL = "griefprevention.admin.command.restore-nature.fill";
     public static final String COMMAND_RELOAD = "griefprevention.admin.command.reload";
+    public static final String COMMAND_METRICS = "griefprevention.admin.command.metrics";
+    public static final String COMMAND_VERIFY_CLAIM_BLOCKS = "griefprevention.admin.command.verify-claim-blocks";
     public static final String SET_ADMIN_FLAGS = "griefprevention.admin.claim.set-admin-flags";
     public static final String LIST_OTHER_CLAIMS = "griefprevention.admin.claim.list.other";
     public static final String LIST_ADMIN_CLAIMS = "griefprevention.admin.claim.list.admin";
@@ -0,0 +1,194 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.util.PlayerUtils;
+import org.spongepowered.api.service.permission.Subject;
+
+/**
+ * An immutable snapshot of the options and cached permissions of a player.
+ *
+ * <p>A snapshot is built off the main thread and then published as a whole,
+ * so readers never see a mix of old and new values.</p>
+ *
+ * <p>Each option is still looked up on its own. The permission API has no
+ * call returning the resolved options of a subject, {@code SubjectData}
+ * only holds the options set on the subject itself, without its parents,
+ * weights or contexts. Resolving those here would duplicate, and likely
+ * disagree with, the permission plugin, so the lookups are kept and only
+ * moved off the main thread.</p>
+ */
+public final class PlayerOptions {
+
+    public static final PlayerOptions DEFAULT = new PlayerOptions();
+
+    // options
+    public final double abandonReturnRatioBasic;
+    public final double abandonReturnRatioTown;
+    public final int blocksAccruedPerHour;
+    public final int createClaimLimitBasic;
+    public final int createClaimLimitSubdivision;
+    public final int createClaimLimitTown;
+    public final int initialClaimBlocks;
+    public final int maxAccruedBlocks;
+    public final int maxClaimLevel;
+    public final int maxClaimSizeBasicX;
+    public final int maxClaimSizeBasicY;
+    public final int maxClaimSizeBasicZ;
+    public final int maxClaimSizeTownX;
+    public final int maxClaimSizeTownY;
+    public final int maxClaimSizeTownZ;
+    public final int maxClaimSizeSubX;
+    public final int maxClaimSizeSubY;
+    public final int maxClaimSizeSubZ;
+    public final int minClaimLevel;
+    public final int minClaimSizeBasicX;
+    public final int minClaimSizeBasicY;
+    public final int minClaimSizeBasicZ;
+    public final int minClaimSizeTownX;
+    public final int minClaimSizeTownY;
+    public final int minClaimSizeTownZ;
+    public final int claimCreateMode;
+    public final int claimExpirationChest;
+    public final int claimExpirationBasic;
+    public final int claimExpirationSubdivision;
+    public final int claimExpirationTown;
+    public final int taxExpirationBasic;
+    public final int taxExpirationSubdivision;
+    public final int taxExpirationTown;
+    public final double taxRateBasic;
+    public final double taxRateSubdivision;
+    public final double taxRateTown;
+    public final double taxRateTownBasic;
+    public final double taxRateTownSubdivision;
+
+    // permissions
+    public final boolean canManageAdminClaims;
+    public final boolean canManageWilderness;
+    public final boolean ignoreAdminClaims;
+    public final boolean ignoreBasicClaims;
+    public final boolean ignoreTowns;
+    public final boolean ignoreWilderness;
+
+    private PlayerOptions() {
+        this.abandonReturnRatioBasic = GPOptions.DEFAULT_ABANDON_RETURN_RATIO_BASIC;
+        this.abandonReturnRatioTown = GPOptions.DEFAULT_ABANDON_RETURN_RATIO_TOWN;
+        this.blocksAccruedPerHour = GPOptions.DEFAULT_BLOCKS_ACCRUED_PER_HOUR;
+        this.createClaimLimitBasic = GPOptions.DEFAULT_CREATE_CLAIM_LIMIT_BASIC;
+        this.createClaimLimitSubdivision = GPOptions.DEFAULT_CREATE_CLAIM_LIMIT_SUBDIVISION;
+        this.createClaimLimitTown = GPOptions.DEFAULT_CREATE_CLAIM_LIMIT_TOWN;
+        this.initialClaimBlocks = GPOptions.DEFAULT_INITIAL_CLAIM_BLOCKS;
+        this.maxAccruedBlocks = GPOptions.DEFAULT_MAX_ACCRUED_BLOCKS;
+        this.maxClaimLevel = GPOptions.DEFAULT_MAX_CLAIM_LEVEL;
+        this.maxClaimSizeBasicX = GPOptions.DEFAULT_MAX_CLAIM_SIZE_BASIC_X;
+        this.maxClaimSizeBasicY = GPOptions.DEFAULT_MAX_CLAIM_SIZE_BASIC_Y;
+        this.maxClaimSizeBasicZ = GPOptions.DEFAULT_MAX_CLAIM_SIZE_BASIC_Z;
+        this.maxClaimSizeTownX = GPOptions.DEFAULT_MAX_CLAIM_SIZE_TOWN_X;
+        this.maxClaimSizeTownY = GPOptions.DEFAULT_MAX_CLAIM_SIZE_TOWN_Y;
+        this.maxClaimSizeTownZ = GPOptions.DEFAULT_MAX_CLAIM_SIZE_TOWN_Z;
+        this.maxClaimSizeSubX = GPOptions.DEFAULT_MAX_CLAIM_SIZE_SUBDIVISION_X;
+        this.maxClaimSizeSubY = GPOptions.DEFAULT_MAX_CLAIM_SIZE_SUBDIVISION_Y;
+        this.maxClaimSizeSubZ = GPOptions.DEFAULT_MAX_CLAIM_SIZE_SUBDIVISION_Z;
+        this.minClaimLevel = GPOptions.DEFAULT_MIN_CLAIM_LEVEL;
+        this.minClaimSizeBasicX = GPOptions.DEFAULT_MIN_CLAIM_SIZE_BASIC_X;
+        this.minClaimSizeBasicY = GPOptions.DEFAULT_MIN_CLAIM_SIZE_BASIC_Y;
+        this.minClaimSizeBasicZ = GPOptions.DEFAULT_MIN_CLAIM_SIZE_BASIC_Z;
+        this.minClaimSizeTownX = GPOptions.DEFAULT_MIN_CLAIM_SIZE_TOWN_X;
+        this.minClaimSizeTownY = GPOptions.DEFAULT_MIN_CLAIM_SIZE_TOWN_Y;
+        this.minClaimSizeTownZ = GPOptions.DEFAULT_MIN_CLAIM_SIZE_TOWN_Z;
+        this.claimCreateMode = GPOptions.DEFAULT_CLAIM_CREATE_MODE;
+        this.claimExpirationChest = GPOptions.DEFAULT_CLAIM_EXPIRATION_CHEST;
+        this.claimExpirationBasic = GPOptions.DEFAULT_CLAIM_EXPIRATION_BASIC;
+        this.claimExpirationSubdivision = GPOptions.DEFAULT_CLAIM_EXPIRATION_SUBDIVISION;
+        this.claimExpirationTown = GPOptions.DEFAULT_CLAIM_EXPIRATION_TOWN;
+        this.taxExpirationBasic = GPOptions.DEFAULT_TAX_EXPIRATION_BASIC;
+        this.taxExpirationSubdivision = GPOptions.DEFAULT_TAX_EXPIRATION_SUBDIVISION;
+        this.taxExpirationTown = GPOptions.DEFAULT_TAX_EXPIRATION_TOWN;
+        this.taxRateBasic = GPOptions.DEFAULT_TAX_RATE_BASIC;
+        this.taxRateSubdivision = GPOptions.DEFAULT_TAX_RATE_SUBDIVISION;
+        this.taxRateTown = GPOptions.DEFAULT_TAX_RATE_TOWN;
+        this.taxRateTownBasic = GPOptions.DEFAULT_TAX_RATE_TOWN_BASIC;
+        this.taxRateTownSubdivision = GPOptions.DEFAULT_TAX_RATE_TOWN_SUBDIVISION;
+        this.canManageAdminClaims = false;
+        this.canManageWilderness = false;
+        this.ignoreAdminClaims = false;
+        this.ignoreBasicClaims = false;
+        this.ignoreTowns = false;
+        this.ignoreWilderness = false;
+    }
+
+    // Looks up every option and permission of the subject, should not be called from the main thread
+    public PlayerOptions(Subject subject) {
+        this.abandonReturnRatioBasic = PlayerUtils.getOptionDoubleValue(subject, GPOptions.ABANDON_RETURN_RATIO_BASIC, DEFAULT.abandonReturnRatioBasic);
+        this.abandonReturnRatioTown = PlayerUtils.getOptionDoubleValue(subject, GPOptions.ABANDON_RETURN_RATIO_TOWN, DEFAULT.abandonReturnRatioTown);
+        this.blocksAccruedPerHour = PlayerUtils.getOptionIntValue(subject, GPOptions.BLOCKS_ACCRUED_PER_HOUR, DEFAULT.blocksAccruedPerHour);
+        this.createClaimLimitBasic = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT_BASIC, DEFAULT.createClaimLimitBasic);
+        this.createClaimLimitSubdivision = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT_SUBDIVISION, DEFAULT.createClaimLimitSubdivision);
+        this.createClaimLimitTown = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT_TOWN, DEFAULT.createClaimLimitTown);
+        this.initialClaimBlocks = PlayerUtils.getOptionIntValue(subject, GPOptions.INITIAL_CLAIM_BLOCKS, DEFAULT.initialClaimBlocks);
+        this.maxAccruedBlocks = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_ACCRUED_BLOCKS, DEFAULT.maxAccruedBlocks);
+        this.maxClaimSizeBasicX = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_BASIC_X, DEFAULT.maxClaimSizeBasicX);
+        this.maxClaimSizeBasicY = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_BASIC_Y, DEFAULT.maxClaimSizeBasicY);
+        this.maxClaimSizeBasicZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_BASIC_Z, DEFAULT.maxClaimSizeBasicZ);
+        this.maxClaimSizeTownX = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_TOWN_X, DEFAULT.maxClaimSizeTownX);
+        this.maxClaimSizeTownY = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_TOWN_Y, DEFAULT.maxClaimSizeTownY);
+        this.maxClaimSizeTownZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_TOWN_Z, DEFAULT.maxClaimSizeTownZ);
+        this.maxClaimSizeSubX = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_SUBDIVISION_X, DEFAULT.maxClaimSizeSubX);
+        this.maxClaimSizeSubY = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_SUBDIVISION_Y, DEFAULT.maxClaimSizeSubY);
+        this.maxClaimSizeSubZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_SIZE_SUBDIVISION_Z, DEFAULT.maxClaimSizeSubZ);
+        this.minClaimSizeBasicX = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_BASIC_X, DEFAULT.minClaimSizeBasicX);
+        this.minClaimSizeBasicY = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_BASIC_Y, DEFAULT.minClaimSizeBasicY);
+        this.minClaimSizeBasicZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_BASIC_Z, DEFAULT.minClaimSizeBasicZ);
+        this.minClaimSizeTownX = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_TOWN_X, DEFAULT.minClaimSizeTownX);
+        this.minClaimSizeTownY = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_TOWN_Y, DEFAULT.minClaimSizeTownY);
+        this.minClaimSizeTownZ = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_SIZE_TOWN_Z, DEFAULT.minClaimSizeTownZ);
+        this.claimCreateMode = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_CREATE_MODE, DEFAULT.claimCreateMode);
+        this.claimExpirationChest = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_CHEST, DEFAULT.claimExpirationChest);
+        this.claimExpirationBasic = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_BASIC, DEFAULT.claimExpirationBasic);
+        this.claimExpirationSubdivision = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_SUBDIVISION, DEFAULT.claimExpirationSubdivision);
+        this.claimExpirationTown = PlayerUtils.getOptionIntValue(subject, GPOptions.CLAIM_EXPIRATION_TOWN, DEFAULT.claimExpirationTown);
+        // subdivisions and towns currently share the basic tax expiration and rate options
+        this.taxExpirationBasic = PlayerUtils.getOptionIntValue(subject, GPOptions.TAX_EXPIRATION_BASIC, DEFAULT.taxExpirationBasic);
+        this.taxExpirationSubdivision = this.taxExpirationBasic;
+        this.taxExpirationTown = this.taxExpirationBasic;
+        this.taxRateBasic = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_BASIC, DEFAULT.taxRateBasic);
+        this.taxRateSubdivision = this.taxRateBasic;
+        this.taxRateTown = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_TOWN, DEFAULT.taxRateTown);
+        this.taxRateTownBasic = PlayerUtils.getOptionDoubleValue(subject, GPOptions.TAX_RATE_TOWN_BASIC, DEFAULT.taxRateTownBasic);
+        this.taxRateTownSubdivision = this.taxRateTownBasic;
+
+        final int maxClaimLevel = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_CLAIM_LEVEL, DEFAULT.maxClaimLevel);
+        final int minClaimLevel = PlayerUtils.getOptionIntValue(subject, GPOptions.MIN_CLAIM_LEVEL, DEFAULT.minClaimLevel);
+        this.maxClaimLevel = maxClaimLevel > 255 || maxClaimLevel <= 0 || maxClaimLevel < minClaimLevel ? 255 : maxClaimLevel;
+        this.minClaimLevel = minClaimLevel < 0 || minClaimLevel >= 255 || minClaimLevel > this.maxClaimLevel ? 0 : minClaimLevel;
+
+        this.canManageAdminClaims = subject.hasPermission(GPPermissions.COMMAND_ADMIN_CLAIMS);
+        this.canManageWilderness = subject.hasPermission(GPPermissions.MANAGE_WILDERNESS);
+        this.ignoreAdminClaims = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_ADMIN);
+        this.ignoreBasicClaims = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_BASIC);
+        this.ignoreTowns = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_TOWN);
+        this.ignoreWilderness = subject.hasPermission(GPPermissions.IGNORE_CLAIMS_WILDERNESS);
+    }
+}
@@ -25,103 +25,71 @@
  */
 package me.ryanhamshire.griefprevention.task;
 
-import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
-import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.api.event.GPContextKeys;
+import me.ryanhamshire.griefprevention.claim.ClaimExpirationQueue;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
-import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.event.CauseStackManager;
 import org.spongepowered.api.world.storage.WorldProperties;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 //FEATURE: automatically remove inactive claims
-//runs every 5 minutes on the main thread
+//runs every tick on the main thread, only claims that are due are looked at
 public class CleanupUnusedClaimsTask implements Runnable {
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void run() {
-        for (WorldProperties worldProperties : Sponge.getServer().getAllWorldProperties()) {
-            // don't do anything when there are no claims
-            GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties);
-            ArrayList<Claim> claimList = (ArrayList<Claim>) claimManager.getWorldClaims();
-            if (claimList.size() == 0) {
-                continue;
-            }
-
-            Iterator<GPClaim> iterator = ((ArrayList) claimList.clone()).iterator();
-            while (iterator.hasNext()) {
-                GPClaim claim = iterator.next();
-                final GPPlayerData playerData = claim.getOwnerPlayerData();
-                // skip administrative claims
-                if (claim.isAdminClaim() || !claim.getInternalClaimData().allowExpiration() || playerData == null) {
-                    continue;
-                }
-
-                if (!playerData.dataInitialized) {
-                    continue;
+        final long now = System.currentTimeMillis();
+        final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(GriefPreventionPlugin.getGlobalConfig().getConfig().claim.expirationCleanupBudget);
+        for (GPClaimManager claimManager : GriefPreventionPlugin.instance.dataStore.getClaimWorldManagers()) {
+            // remaining due claims are picked up next tick
+            while (System.nanoTime() < deadline) {
+                final ClaimExpirationQueue.Entry entry = claimManager.getExpirationQueue().pollExpired(now);
+                if (entry == null) {
+                    break;
                 }
 
-                GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
-                // determine area of the default chest claim
-                int areaOfDefaultClaim = 0;
-                if (activeConfig.getConfig().claim.claimRadius >= 0) {
-                    areaOfDefaultClaim = (int) Math.pow(activeConfig.getConfig().claim.claimRadius * 2 + 1, 2);
-                }
-    
-                Instant claimLastActive = claim.getInternalClaimData().getDateLastActive();
-
-                try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
-                    Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
-                    // if this claim is a chest claim and those are set to expire
-                    final int claimExpirationChest = playerData.getChestClaimExpiration();
-                    if (claim.getArea() <= areaOfDefaultClaim && claimExpirationChest > 0) {
-                        if (claimLastActive.plus(Duration.ofDays(claimExpirationChest))
-                            .isBefore(Instant.now())) {
-                            Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
-
-                            claim.removeSurfaceFluids(null);
-                            claimManager.deleteClaim(claim);
-
-                            // if configured to do so, restore the land to natural
-                            if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative) || activeConfig
-                                .getConfig().claim.claimAutoNatureRestore) {
-                                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
-                            }
+                this.expireClaim(claimManager, entry);
+            }
+        }
+    }
 
-                            GriefPreventionPlugin.addLogEntry(" " + claim.getOwnerName() + "'s new player claim " + "'" + claim.id + "' expired.",
-                                CustomLogEntryTypes.AdminActivity);
-                        }
-                    }
+    private void expireClaim(GPClaimManager claimManager, ClaimExpirationQueue.Entry entry) {
+        final GPClaim claim = entry.getClaim();
+        final WorldProperties worldProperties = claimManager.getWorldProperties();
+        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+            if (entry.isChestClaim()) {
+                // this claim is a chest claim and those are set to expire
+                Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
+                claim.removeSurfaceFluids(null);
+            } else {
+                Sponge.getCauseStackManager().addContext(GPContextKeys.PLAYER_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
+            }
 
-                    if (playerData.optionClaimExpirationBasic > 0) {
-                        if (claimLastActive.plus(Duration.ofDays(playerData.optionClaimExpirationBasic))
-                            .isBefore(Instant.now())) {
-                            Sponge.getCauseStackManager().addContext(GPContextKeys.PLAYER_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
+            if (!claimManager.deleteClaim(claim, true).successful()) {
+                // a plugin kept the claim, it is queued again on its next activity
+                return;
+            }
 
-                            claimManager.deleteClaim(claim);
-                            GriefPreventionPlugin.addLogEntry("Removed " + claim.getOwnerName() + "'s unused claim @ "
-                                                              + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()),
-                                CustomLogEntryTypes.AdminActivity);
+            if (entry.isChestClaim()) {
+                GriefPreventionPlugin.addLogEntry(" " + claim.getOwnerName() + "'s new player claim " + "'" + claim.id + "' expired.",
+                    CustomLogEntryTypes.AdminActivity);
+            } else {
+                GriefPreventionPlugin.addLogEntry("Removed " + claim.getOwnerName() + "'s unused claim @ "
+                                                  + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()),
+                    CustomLogEntryTypes.AdminActivity);
+            }
 
-                            // if configured to do so, restore the land to natural
-                            if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
-                                || activeConfig.getConfig().claim.claimAutoNatureRestore) {
-                                // restore the claim area to natural state
-                                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
-                            }
-                        }
-                    }
-                }
+            // if configured to do so, restore the land to natural
+            if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
+                || GriefPreventionPlugin.getActiveConfig(worldProperties).getConfig().claim.claimAutoNatureRestore) {
+                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
             }
         }
     }
@@ -87,15 +87,15 @@ public void run() {
                     (lastLocation == null || lastLocation.getPosition().distanceSquared(player.getLocation().getPosition()) >= 0) &&
                     matterProperty.isPresent() && matterProperty.get().getValue() != MatterProperty.Matter.LIQUID) {
                 // add blocks
-                int accruedBlocks = playerData.optionBlocksAccruedPerHour / 12;
+                int accruedBlocks = playerData.getOptions().blocksAccruedPerHour / 12;
                 if (accruedBlocks < 0) {
                     accruedBlocks = 1;
                 }
 
                 int currentTotal = playerData.getAccruedClaimBlocks();
-                if ((currentTotal + accruedBlocks) > playerData.optionMaxAccruedBlocks) {
+                if ((currentTotal + accruedBlocks) > playerData.getOptions().maxAccruedBlocks) {
                     PlayerStorageData playerStorage = playerData.getStorageData();
-                    playerStorage.getConfig().setAccruedClaimBlocks(playerData.optionMaxAccruedBlocks);
+                    playerStorage.getConfig().setAccruedClaimBlocks(playerData.getOptions().maxAccruedBlocks);
                     playerData.lastAfkCheckLocation = player.getLocation();
                     return;
                 }
@@ -0,0 +1,199 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.task;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.configuration.category.RestoreNatureCategory;
+import me.ryanhamshire.griefprevention.util.BlockUtils;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Restores nature in queued chunks over many ticks.
+ *
+ * <p>Every tick chunks are loaded and regenerated until
+ * {@code restore-nature.tick-budget} milliseconds are spent, so deleting or
+ * abandoning a large claim no longer stalls the server for a single tick.
+ * A chunk that is already waiting to be restored is not queued again.</p>
+ *
+ * <p>Note: This is only used from the main thread.</p>
+ */
+public class RestoreNatureQueue implements Runnable {
+
+    private final Deque<RestoreJob> jobs = new ArrayDeque<>();
+    private final Map<UUID, LongSet> queuedChunks = new HashMap<>();
+
+    // Queues every chunk within the chunk bounds, returns the amount of chunks queued
+    public int enqueue(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, long delayInTicks, @Nullable CommandSource requester) {
+        final LongSet queued = this.queuedChunks.computeIfAbsent(world.getUniqueId(), k -> new LongOpenHashSet());
+        final LongList chunks = new LongArrayList();
+        for (int x = minChunkX; x <= maxChunkX; x++) {
+            for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                final long key = ChunkPos.asLong(x, z);
+                if (queued.add(key)) {
+                    chunks.add(key);
+                }
+            }
+        }
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+
+        final int readyTick = Sponge.getServer().getRunningTimeTicks() + (int) Math.min(Integer.MAX_VALUE, Math.max(0, delayInTicks));
+        this.jobs.add(new RestoreJob(world.getUniqueId(), chunks.toLongArray(), readyTick, requester));
+        return chunks.size();
+    }
+
+    public int getQueuedChunkCount() {
+        int count = 0;
+        for (RestoreJob job : this.jobs) {
+            count += job.chunks.length - job.next;
+        }
+        return count;
+    }
+
+    @Override
+    public void run() {
+        if (this.jobs.isEmpty()) {
+            return;
+        }
+
+        final RestoreNatureCategory config = GriefPreventionPlugin.getGlobalConfig().getConfig().restoreNature;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.tickBudget));
+        final int currentTick = Sponge.getServer().getRunningTimeTicks();
+        boolean restoredAny = false;
+        final Iterator<RestoreJob> iterator = this.jobs.iterator();
+        while (iterator.hasNext()) {
+            final RestoreJob job = iterator.next();
+            if (job.readyTick > currentTick) {
+                continue;
+            }
+
+            final Optional<World> world = Sponge.getServer().getWorld(job.worldId);
+            if (!world.isPresent()) {
+                // world was unloaded, nothing left to restore
+                this.queuedChunks.remove(job.worldId);
+                iterator.remove();
+                continue;
+            }
+
+            if (job.startTime == 0) {
+                job.startTime = System.currentTimeMillis();
+                job.lastReport = job.startTime;
+            }
+            // always restore at least one chunk per tick
+            while (job.next < job.chunks.length && (!restoredAny || System.nanoTime() < deadline)) {
+                this.restoreChunk(world.get(), job.chunks[job.next++]);
+                restoredAny = true;
+            }
+
+            if (job.next == job.chunks.length) {
+                job.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.GREEN, "Restored nature in ", TextColors.WHITE,
+                        job.chunks.length, TextColors.GREEN, " chunks in ", TextColors.WHITE,
+                        (System.currentTimeMillis() - job.startTime) / 1000L, TextColors.GREEN, " seconds."));
+                iterator.remove();
+                continue;
+            }
+
+            job.reportProgress(config.progressInterval);
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    private void restoreChunk(World world, long key) {
+        final LongSet queued = this.queuedChunks.get(world.getUniqueId());
+        if (queued != null) {
+            queued.remove(key);
+        }
+
+        final Optional<Chunk> chunk = world.loadChunk((int) key, 0, (int) (key >>> 32), true);
+        if (chunk.isPresent()) {
+            BlockUtils.regenerateChunk((net.minecraft.world.chunk.Chunk) chunk.get());
+        }
+    }
+
+    private static class RestoreJob {
+
+        final UUID worldId;
+        final long[] chunks;
+        final int readyTick;
+        @Nullable final CommandSource requester;
+        int next;
+        long startTime;
+        long lastReport;
+
+        RestoreJob(UUID worldId, long[] chunks, int readyTick, @Nullable CommandSource requester) {
+            this.worldId = worldId;
+            this.chunks = chunks;
+            this.readyTick = readyTick;
+            this.requester = requester;
+        }
+
+        void reportProgress(int interval) {
+            final long now = System.currentTimeMillis();
+            if (interval <= 0 || this.next == 0 || now - this.lastReport < TimeUnit.SECONDS.toMillis(interval)) {
+                return;
+            }
+
+            this.lastReport = now;
+            // estimate from the average time taken per chunk so far, including the ticks spent waiting
+            final long remaining = (now - this.startTime) * (this.chunks.length - this.next) / this.next;
+            this.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.GRAY, "Restoring nature: ", TextColors.WHITE,
+                    this.next, "/", this.chunks.length, TextColors.GRAY, " chunks, about ", TextColors.WHITE,
+                    TimeUnit.MILLISECONDS.toSeconds(remaining) + 1, TextColors.GRAY, " seconds remaining."));
+        }
+
+        void sendMessage(Text message) {
+            if (this.requester == null || (this.requester instanceof Player && !((Player) this.requester).isOnline())) {
+                return;
+            }
+
+            this.requester.sendMessage(message);
+        }
+    }
+}
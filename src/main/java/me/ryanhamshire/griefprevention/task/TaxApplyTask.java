@@ -30,13 +30,17 @@
 import me.ryanhamshire.griefprevention.api.economy.BankTransactionType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.configuration.EconomyDataConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.economy.GPBankTransaction;
 import me.ryanhamshire.griefprevention.event.GPTaxClaimEvent;
+import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.util.TaskUtils;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.event.CauseStackManager;
+import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.service.economy.EconomyService;
 import org.spongepowered.api.service.economy.account.Account;
 import org.spongepowered.api.service.economy.transaction.ResultType;
@@ -47,136 +51,343 @@
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Applies the daily claim tax of a world.
+ *
+ * <p>A task running every tick first plans the charges of a snapshot of the
+ * world claims, then applies them, both within the configured tax apply
+ * budget. Each charged claim records the tax period it was charged for and
+ * is saved with the rest of its batch, so a run that was interrupted by a
+ * restart is resumed on the next world load without charging any claim
+ * twice.</p>
+ */
 public class TaxApplyTask implements Runnable {
 
+    // Worlds with a run in progress
+    private static final Set<UUID> ACTIVE_WORLDS = new HashSet<>();
+
     final WorldProperties worldProperties;
     final EconomyService economyService;
     final GriefPreventionConfig<?> activeConfig;
-    private int bankTransactionLogLimit = 60;
+    private final boolean resume;
 
     public TaxApplyTask(WorldProperties worldProperties) {
+        this(worldProperties, false);
+    }
+
+    // A resuming task only runs if a run of the last tax period was started but not completed
+    public TaxApplyTask(WorldProperties worldProperties, boolean resume) {
         this.worldProperties = worldProperties;
         this.economyService = GriefPreventionPlugin.instance.economyService.get();
         this.activeConfig = GriefPreventionPlugin.getActiveConfig(this.worldProperties);
+        this.resume = resume;
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void run() {
-        // don't do anything when there are no claims
-        GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.worldProperties);
-        ArrayList<Claim> claimList = (ArrayList<Claim>) claimManager.getWorldClaims();
-        if (claimList.size() == 0) {
+        if (ACTIVE_WORLDS.contains(this.worldProperties.getUniqueId())) {
             return;
         }
 
-        this.bankTransactionLogLimit = this.activeConfig.getConfig().claim.bankTransactionLogLimit;
-        Iterator<GPClaim> iterator = ((ArrayList) claimList.clone()).iterator();
-        while (iterator.hasNext()) {
-            GPClaim claim = iterator.next();
-            final GPPlayerData playerData = claim.getOwnerPlayerData();
-            if (claim.isWilderness()) {
-                continue;
+        final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.worldProperties);
+        final List<Claim> worldClaims = new ArrayList<>(claimManager.getWorldClaims());
+        if (worldClaims.isEmpty()) {
+            return;
+        }
+
+        ACTIVE_WORLDS.add(this.worldProperties.getUniqueId());
+        Sponge.getScheduler().createTaskBuilder().intervalTicks(1).execute(new TaxRun(this.getTaxPeriod(), worldClaims))
+                .submit(GriefPreventionPlugin.instance);
+    }
+
+    private Instant getTaxPeriod() {
+        final int taxHour = this.activeConfig.getConfig().claim.taxApplyHour;
+        final ZonedDateTime last = TaskUtils.getLastTargetZoneDate(taxHour, 0, 0);
+        if (this.resume) {
+            return last.toInstant();
+        }
+
+        // the daily task may start slightly before the tax hour
+        final ZonedDateTime next = last.plusDays(1);
+        final ZonedDateTime now = ZonedDateTime.now(last.getZone());
+        if (Duration.between(now, next).compareTo(Duration.between(last, now)) < 0) {
+            return next.toInstant();
+        }
+        return last.toInstant();
+    }
+
+    private void planClaim(TaxRun taxRun, GPClaim claim) {
+        final GPPlayerData playerData = claim.getOwnerPlayerData();
+        if (claim.isWilderness()) {
+            return;
+        }
+        if (playerData == null) {
+            return;
+        }
+
+        if (!playerData.dataInitialized) {
+            return;
+        }
+
+        if (claim.isAdminClaim()) {
+            // search for town
+            final List<Claim> children = claim.getChildren(false);
+            for (Claim child : children) {
+                if (child.isTown()) {
+                    this.planTownTax(taxRun, (GPClaim) child, playerData);
+                } else if (child.isBasicClaim()) {
+                    this.planClaimTax(taxRun, (GPClaim) child, playerData, false);
+                }
             }
-            if (playerData == null) {
-                continue;
+        } else {
+            if (claim.isTown()) {
+                this.planTownTax(taxRun, claim, playerData);
+            } else if (claim.isBasicClaim()){
+                this.planClaimTax(taxRun, claim, playerData, false);
             }
+        }
+    }
 
-            if (!playerData.dataInitialized) {
-                continue;
+    private void planTownTax(TaxRun taxRun, GPClaim town, GPPlayerData playerData) {
+        if (!town.getEconomyAccount().isPresent()) {
+            // Virtual Accounts not supported by Economy Plugin so ignore
+            return;
+        }
+        List<Claim> children = town.getChildren(true);
+        for (Claim child : children) {
+            // resident tax
+            if (child.isBasicClaim()) {
+                this.planClaimTax(taxRun, (GPClaim) child, playerData, true);
             }
+        }
+        if (town.getOwnerUniqueId().equals(playerData.playerID)) {
+            this.planClaimTax(taxRun, town, playerData, false);
+        }
+    }
 
-            if (claim.isAdminClaim()) {
-                // search for town
-                final List<Claim> children = claim.getChildren(false);
-                for (Claim child : children) {
-                    if (child.isTown()) {
-                        handleTownTax((GPClaim) child, playerData);
-                    } else if (child.isBasicClaim()) {
-                        handleClaimTax((GPClaim) child, playerData, false);
-                    }
+    private void planClaimTax(TaxRun taxRun, GPClaim claim, GPPlayerData playerData, boolean inTown) {
+        final Instant lastApplied = claim.getInternalClaimData().getEconomyData().getTaxLastApplied().orElse(null);
+        if (lastApplied != null && !lastApplied.isBefore(taxRun.period)) {
+            taxRun.alreadyCharged++;
+            return;
+        }
+        if (this.resume && claim.getInternalClaimData().getDateCreated().isAfter(taxRun.period)) {
+            // created after the interrupted run was planned
+            return;
+        }
+        if (!claim.getEconomyAccount().isPresent()) {
+            return;
+        }
+
+        final Subject subject = playerData.getPlayerSubject();
+        final double taxRate = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_RATE, playerData);
+        taxRun.charges.add(new TaxCharge(claim, playerData, inTown, taxRate));
+    }
+
+    private static final class TaxCharge {
+
+        private final GPClaim claim;
+        private final GPPlayerData playerData;
+        private final boolean inTown;
+        private final double taxRate;
+
+        private TaxCharge(GPClaim claim, GPPlayerData playerData, boolean inTown, double taxRate) {
+            this.claim = claim;
+            this.playerData = playerData;
+            this.inTown = inTown;
+            this.taxRate = taxRate;
+        }
+    }
+
+    // Plans, then applies charges every tick within the tax apply budget
+    private final class TaxRun implements Consumer<Task> {
+
+        private final Instant period;
+        // top level claims of the world when the run started
+        private final List<Claim> worldClaims;
+        private final List<TaxCharge> charges = new ArrayList<>();
+        // top level claims with charges that were not saved yet
+        private final Set<GPClaim> unsavedClaims = new HashSet<>();
+        private final long startTime = System.currentTimeMillis();
+        private int nextClaim;
+        private boolean planned;
+        private int next;
+        private int alreadyCharged;
+        private int paid;
+        private int failed;
+        private int cancelled;
+        private int skipped;
+        private double totalPaid;
+        private int ticks;
+
+        private TaxRun(Instant period, List<Claim> worldClaims) {
+            this.period = period;
+            this.worldClaims = worldClaims;
+        }
+
+        @Override
+        public void accept(Task task) {
+            if (!Sponge.getServer().getWorld(TaxApplyTask.this.worldProperties.getUniqueId()).isPresent()) {
+                // world was unloaded, the remaining charges are resumed on next load
+                this.finish(task);
+                return;
+            }
+
+            final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(TaxApplyTask.this.worldProperties);
+            final long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(TaxApplyTask.this.activeConfig.getConfig().claim.taxApplyBudget);
+            this.ticks++;
+            if (!this.planned) {
+                this.plan(claimManager, deadline);
+                if (!this.planned) {
+                    return;
+                }
+                if (this.charges.isEmpty() || (TaxApplyTask.this.resume && this.alreadyCharged == 0)) {
+                    // nothing to charge, or no run of this period was started
+                    this.stop(task);
+                    return;
                 }
-            } else {
-                if (claim.isTown()) {
-                    handleTownTax(claim, playerData);
-                } else if (claim.isBasicClaim()){
-                    handleClaimTax(claim, playerData, false);
+                if (System.nanoTime() >= deadline) {
+                    return;
                 }
             }
+
+            // always apply at least one charge per tick
+            do {
+                final TaxCharge charge = this.charges.get(this.next++);
+                if (claimManager.getClaimByUUID(charge.claim.getUniqueId()).orElse(null) != charge.claim) {
+                    // claim was removed since the run was planned
+                    this.skipped++;
+                    continue;
+                }
+
+                this.applyCharge(charge);
+            } while (this.next < this.charges.size() && System.nanoTime() < deadline);
+
+            for (GPClaim claim : this.unsavedClaims) {
+                claim.save();
+            }
+            this.unsavedClaims.clear();
+
+            if (this.next >= this.charges.size()) {
+                this.finish(task);
+            }
         }
-    }
 
-    private void handleClaimTax(GPClaim claim, GPPlayerData playerData, boolean inTown) {
-        final Subject subject = playerData.getPlayerSubject();
-        final Account claimAccount = claim.getEconomyAccount().orElse(null);
-        double taxRate = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_RATE, playerData);
-        double taxOwed = (claim.getClaimBlocks() / 256) * taxRate;
-        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
-            Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
-            GPTaxClaimEvent event = new GPTaxClaimEvent(claim, taxRate, taxOwed);
-            Sponge.getEventManager().post(event);
-            if (event.isCancelled()) {
+        private void plan(GPClaimManager claimManager, long deadline) {
+            // always plan at least one claim per tick
+            do {
+                final GPClaim claim = (GPClaim) this.worldClaims.get(this.nextClaim++);
+                if (claimManager.getClaimByUUID(claim.getUniqueId()).orElse(null) != claim) {
+                    // claim was removed since the run was started
+                    continue;
+                }
+
+                TaxApplyTask.this.planClaim(this, claim);
+            } while (this.nextClaim < this.worldClaims.size() && System.nanoTime() < deadline);
+
+            this.planned = this.nextClaim >= this.worldClaims.size();
+        }
+
+        private void applyCharge(TaxCharge charge) {
+            final GPClaim claim = charge.claim;
+            final EconomyDataConfig economyData = claim.getInternalClaimData().getEconomyData();
+            final Account claimAccount = claim.getEconomyAccount().orElse(null);
+            if (claimAccount == null) {
+                this.skipped++;
                 return;
             }
-            taxRate = event.getTaxRate();
-            taxOwed = claim.getClaimBlocks() * taxRate;
-
-            TransactionResult result = claimAccount.withdraw(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
-            if (result.getResult() != ResultType.SUCCESS) {
-                final Instant localNow = Instant.now();
-                Instant taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
-                if (taxPastDueDate == null) {
-                    claim.getEconomyData().setTaxPastDueDate(Instant.now());
-                } else {
-                    final int taxExpirationDays = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_EXPIRATION, playerData).intValue();
-                    if (claim.getData().isExpired()) {
-                        final int expireDaysToKeep = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.EXPIRATION_DAYS_KEEP, playerData).intValue();
-                        //if (taxPastDueDate.plus(Duration.ofDays(taxExpirationDays + expireDaysToKeep)).isBefore(localNow)) {
-                        //}
+
+            try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+                Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
+                GPTaxClaimEvent event = new GPTaxClaimEvent(claim, charge.taxRate, (claim.getClaimBlocks() / 256) * charge.taxRate);
+                Sponge.getEventManager().post(event);
+                if (event.isCancelled()) {
+                    // still counts as charged for the period so a resumed run does not charge it again
+                    this.cancelled++;
+                    this.setCharged(claim, economyData);
+                    return;
+                }
+                final double taxOwed = event.getTaxAmount();
+
+                TransactionResult result = claimAccount.withdraw(TaxApplyTask.this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed),
+                        Sponge.getCauseStackManager().getCurrentCause());
+                if (result.getResult() != ResultType.SUCCESS) {
+                    final Instant localNow = Instant.now();
+                    Instant taxPastDueDate = economyData.getTaxPastDueDate().orElse(null);
+                    if (taxPastDueDate == null) {
+                        economyData.setTaxPastDueDate(localNow);
                     } else {
-                        if (taxPastDueDate.plus(Duration.ofDays(taxExpirationDays)).isBefore(localNow)) {
+                        final Subject subject = charge.playerData.getPlayerSubject();
+                        final int taxExpirationDays = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_EXPIRATION, charge.playerData).intValue();
+                        if (!claim.getData().isExpired() && taxPastDueDate.plus(Duration.ofDays(taxExpirationDays)).isBefore(localNow)) {
                             claim.getData().setExpiration(true);
+                            GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(claim.getWorld().getProperties()).getExpirationQueue().update(claim);
                         }
                     }
-                }
-                final double totalTaxOwed = claim.getEconomyData().getTaxBalance() + taxOwed;
-                claim.getEconomyData().setTaxBalance(totalTaxOwed);
-                claim.getEconomyData().addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_FAIL, Instant.now(), taxOwed));
-            } else {
-                claim.getEconomyData().addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), taxOwed));
-                claim.getEconomyData().setTaxPastDueDate(null);
-                if (inTown) {
-                    final GPClaim town = claim.getTownClaim();
-                    town.getData()
-                        .getEconomyData()
-                        .addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), taxOwed));
-                    town.getEconomyAccount()
-                        .get()
-                        .deposit(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
+                    economyData.setTaxBalance(economyData.getTaxBalance() + taxOwed);
+                    economyData.addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_FAIL, localNow, taxOwed));
+                    this.failed++;
+                } else {
+                    economyData.addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), taxOwed));
+                    economyData.setTaxPastDueDate(null);
+                    if (charge.inTown) {
+                        final GPClaim town = claim.getTownClaim();
+                        town.getInternalClaimData()
+                            .getEconomyData()
+                            .addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), taxOwed));
+                        town.getInternalClaimData().setRequiresSave(true);
+                        town.getEconomyAccount()
+                            .get()
+                            .deposit(TaxApplyTask.this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
+                        this.unsavedClaims.add(getTopLevelClaim(town));
+                    }
+                    this.paid++;
+                    this.totalPaid += taxOwed;
                 }
             }
+
+            this.setCharged(claim, economyData);
         }
-    }
 
-    private void handleTownTax(GPClaim town, GPPlayerData playerData) {
-        Account townAccount = town.getEconomyAccount().orElse(null);
-        if (townAccount == null) {
-            // Virtual Accounts not supported by Economy Plugin so ignore
-            return;
+        private void setCharged(GPClaim claim, EconomyDataConfig economyData) {
+            economyData.setTaxLastApplied(this.period);
+            claim.getInternalClaimData().setRequiresSave(true);
+            this.unsavedClaims.add(getTopLevelClaim(claim));
         }
-        List<Claim> children = town.getChildren(true);
-        for (Claim child : children) {
-            // resident tax
-            if (child.isBasicClaim()) {
-                handleClaimTax((GPClaim) child, playerData, true);
+
+        private void stop(Task task) {
+            task.cancel();
+            ACTIVE_WORLDS.remove(TaxApplyTask.this.worldProperties.getUniqueId());
+        }
+
+        private void finish(Task task) {
+            this.stop(task);
+            if (!this.planned) {
+                // stopped while planning, nothing was charged
+                return;
             }
+            GriefPreventionPlugin.addLogEntry("Applied tax in world " + TaxApplyTask.this.worldProperties.getWorldName() + " for period " + this.period
+                    + ": " + this.paid + " paid (" + this.totalPaid + " total), " + this.failed + " failed, " + this.cancelled + " cancelled, "
+                    + this.skipped + " skipped, " + (this.charges.size() - this.next) + " remaining. Took " + this.ticks + " ticks ("
+                    + (System.currentTimeMillis() - this.startTime) + " ms).", CustomLogEntryTypes.AdminActivity);
         }
-        if (town.getOwnerUniqueId().equals(playerData.playerID)) {
-            handleClaimTax(town, playerData, false);
+    }
+
+    private static GPClaim getTopLevelClaim(GPClaim claim) {
+        GPClaim topLevelClaim = claim;
+        while (topLevelClaim.parent != null) {
+            topLevelClaim = topLevelClaim.parent;
         }
+        return topLevelClaim;
     }
 }
@@ -28,11 +28,14 @@
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.visual.Visualization;
+import me.ryanhamshire.griefprevention.visual.VisualizationSender;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.entity.living.player.Player;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 //applies a visualization for a player by sending him block change packets
@@ -56,15 +59,14 @@ public VisualizationApplicationTask(Player player, GPPlayerData playerData, Visu
 
     @Override
     public void run() {
-        if (this.playerData.visualBlocks != null) {
-            if (this.resetActive) {
-                this.playerData.revertActiveVisual(this.player);
-            }
-        }
-
-        for (int i = 0; i < this.visualization.elements.size(); i++) {
-            BlockSnapshot snapshot = this.visualization.elements.get(i).getFinal();
-            this.player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
+        final VisualizationSender sender = GriefPreventionPlugin.instance.visualizationSender;
+        final List<Transaction<BlockSnapshot>> activeBlocks = this.resetActive ? this.playerData.resetActiveVisual() : null;
+        if (activeBlocks != null && !activeBlocks.isEmpty()
+                && this.player.getWorld().equals(activeBlocks.get(0).getFinal().getLocation().get().getExtent())) {
+            // only send blocks that changed since the active visual, such as the moved edges of a resize
+            sender.applyDiff(this.player, activeBlocks, this.visualization.elements);
+        } else {
+            sender.apply(this.player, this.visualization.elements);
         }
 
         // remember the visualization applied to this player for later (so it can be inexpensively reverted)
@@ -0,0 +1,145 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import org.apache.commons.io.FilenameUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled set of blacklist entries.
+ *
+ * <p>Entries without wildcards are matched with a hash lookup and entries
+ * with a single trailing '*', such as 'modid:*', with a sorted prefix lookup.
+ * Remaining patterns fall back to {@link FilenameUtils#wildcardMatch}. The
+ * result for each identifier is remembered until the config is reloaded.</p>
+ */
+public class BlacklistMatcher {
+
+    public static final BlacklistMatcher EMPTY = new BlacklistMatcher(new ArrayList<>());
+
+    private static final int MAX_CACHED_RESULTS = 4096;
+
+    private final Set<String> exactIds = new HashSet<>();
+    // Prefix free, so the floor of an id is the only prefix that can match it
+    private final TreeSet<String> prefixes = new TreeSet<>();
+    private final List<String> wildcards = new ArrayList<>();
+    private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+
+    public BlacklistMatcher(List<List<String>> blacklists) {
+        for (List<String> blacklist : blacklists) {
+            if (blacklist == null) {
+                continue;
+            }
+            for (String entry : blacklist) {
+                if (entry == null) {
+                    continue;
+                }
+
+                final int wildcardIndex = indexOfWildcard(entry);
+                if (wildcardIndex == -1) {
+                    this.exactIds.add(entry);
+                } else if (wildcardIndex == entry.length() - 1 && entry.charAt(wildcardIndex) == '*') {
+                    this.addPrefix(entry.substring(0, wildcardIndex));
+                } else if (!this.wildcards.contains(entry)) {
+                    this.wildcards.add(entry);
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.exactIds.isEmpty() && this.prefixes.isEmpty() && this.wildcards.isEmpty();
+    }
+
+    public boolean matches(String id) {
+        if (this.isEmpty()) {
+            return false;
+        }
+
+        Boolean result = this.results.get(id);
+        if (result == null) {
+            result = this.matches(id, GPPermissionHandler.getIdentifierWithoutMeta(id));
+            // Command targets include arguments so the amount of unique ids is unbounded
+            if (this.results.size() >= MAX_CACHED_RESULTS) {
+                this.results.clear();
+            }
+            this.results.put(id, result);
+        }
+
+        return result;
+    }
+
+    private boolean matches(String id, String idNoMeta) {
+        if (this.exactIds.contains(id) || this.exactIds.contains(idNoMeta)) {
+            return true;
+        }
+        if (this.matchesPrefix(id) || this.matchesPrefix(idNoMeta)) {
+            return true;
+        }
+        for (String wildcard : this.wildcards) {
+            if (FilenameUtils.wildcardMatch(id, wildcard) || FilenameUtils.wildcardMatch(idNoMeta, wildcard)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean matchesPrefix(String id) {
+        final String prefix = this.prefixes.floor(id);
+        return prefix != null && id.startsWith(prefix);
+    }
+
+    private void addPrefix(String prefix) {
+        final String floor = this.prefixes.floor(prefix);
+        if (floor != null && prefix.startsWith(floor)) {
+            // already covered by a shorter prefix
+            return;
+        }
+
+        // drop longer prefixes now covered by this one
+        this.prefixes.tailSet(prefix, true).removeIf(existing -> existing.startsWith(prefix));
+        this.prefixes.add(prefix);
+    }
+
+    private static int indexOfWildcard(String entry) {
+        for (int i = 0; i < entry.length(); i++) {
+            final char c = entry.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
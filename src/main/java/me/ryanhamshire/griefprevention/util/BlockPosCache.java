@@ -29,13 +29,30 @@
 
 public class BlockPosCache {
 
+    // Cached results are only valid for this many ticks after the last lookup
+    static final int EXPIRATION_TICKS = 2;
+
     private int lastTickCounter;
     private short lastBlockPos;
     private Tristate lastResult = Tristate.UNDEFINED;
 
     public BlockPosCache(short pos) {
+        this.reset(pos);
+    }
+
+    /**
+     * Resets this cache so it can be reused for another entity.
+     *
+     * @param pos The block position the entity collided with
+     */
+    public void reset(short pos) {
         this.lastBlockPos = pos;
         this.lastTickCounter = SpongeImpl.getServer().getTickCounter();
+        this.lastResult = Tristate.UNDEFINED;
+    }
+
+    boolean isExpired(int currentTick) {
+        return (currentTick - this.lastTickCounter) > EXPIRATION_TICKS;
     }
 
     public void setLastResult(Tristate result) {
@@ -50,7 +67,7 @@ public Tristate getCacheResult(short pos) {
             return Tristate.UNDEFINED;
         }
 
-        if ((currentTick - this.lastTickCounter) <= 2) {
+        if (!this.isExpired(currentTick)) {
             this.lastTickCounter = currentTick;
             return this.lastResult;
         }
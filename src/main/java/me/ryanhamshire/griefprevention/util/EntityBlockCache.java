@@ -0,0 +1,173 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import org.spongepowered.common.SpongeImpl;
+
+import javax.annotation.Nullable;
+
+/**
+ * A bounded, per-world cache of the last block collision result of each
+ * entity, keyed by entity id.
+ *
+ * <p>Entries use open addressing with linear probing over a fixed table so
+ * lookups never scan more than a cluster. Once the table is full, entries
+ * older than {@link BlockPosCache#EXPIRATION_TICKS} are evicted since they
+ * could no longer return a cached result. {@link BlockPosCache} instances
+ * of removed entries are pooled and reused.</p>
+ *
+ * <p>Note: This cache is only accessed from the main thread.</p>
+ */
+public class EntityBlockCache {
+
+    private static final int CAPACITY = 8192;
+    private static final int MAX_SIZE = CAPACITY / 2;
+    private static final int MASK = CAPACITY - 1;
+
+    private final int[] keys = new int[CAPACITY];
+    // A null value marks an empty slot
+    private final BlockPosCache[] values = new BlockPosCache[CAPACITY];
+    private final BlockPosCache[] pool = new BlockPosCache[MAX_SIZE];
+    private int poolSize;
+    private int size;
+
+    @Nullable
+    public BlockPosCache get(int entityId) {
+        int slot = HashCommon.mix(entityId) & MASK;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == entityId) {
+                return this.values[slot];
+            }
+            slot = (slot + 1) & MASK;
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a cache entry for an entity that collided with a block.
+     *
+     * @param entityId The entity id
+     * @param pos The block position the entity collided with
+     * @return The block position cache
+     */
+    public BlockPosCache add(int entityId, short pos) {
+        BlockPosCache blockPosCache = this.get(entityId);
+        if (blockPosCache != null) {
+            blockPosCache.reset(pos);
+            return blockPosCache;
+        }
+
+        if (this.size >= MAX_SIZE) {
+            this.evictExpired();
+            if (this.size >= MAX_SIZE) {
+                // Every entry is still active, start over rather than grow
+                this.clear();
+            }
+        }
+
+        if (this.poolSize > 0) {
+            blockPosCache = this.pool[--this.poolSize];
+            this.pool[this.poolSize] = null;
+            blockPosCache.reset(pos);
+        } else {
+            blockPosCache = new BlockPosCache(pos);
+        }
+
+        int slot = HashCommon.mix(entityId) & MASK;
+        while (this.values[slot] != null) {
+            slot = (slot + 1) & MASK;
+        }
+        this.keys[slot] = entityId;
+        this.values[slot] = blockPosCache;
+        this.size++;
+        return blockPosCache;
+    }
+
+    public void remove(int entityId) {
+        int slot = HashCommon.mix(entityId) & MASK;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == entityId) {
+                this.removeSlot(slot);
+                return;
+            }
+            slot = (slot + 1) & MASK;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            if (this.values[slot] != null) {
+                this.release(this.values[slot]);
+                this.values[slot] = null;
+            }
+        }
+        this.size = 0;
+    }
+
+    private void evictExpired() {
+        final int currentTick = SpongeImpl.getServer().getTickCounter();
+        int slot = 0;
+        while (slot < CAPACITY) {
+            final BlockPosCache blockPosCache = this.values[slot];
+            // Removing shifts the next entry of the cluster into this slot so only advance when nothing was removed
+            if (blockPosCache != null && blockPosCache.isExpired(currentTick)) {
+                this.removeSlot(slot);
+            } else {
+                slot++;
+            }
+        }
+    }
+
+    // Backward shift deletion, keeps every remaining entry reachable from its home slot
+    private void removeSlot(int slot) {
+        this.release(this.values[slot]);
+        this.size--;
+        int last = slot;
+        slot = (slot + 1) & MASK;
+        while (this.values[slot] != null) {
+            final int home = HashCommon.mix(this.keys[slot]) & MASK;
+            // Move the entry back if its home slot is not between the gap and its current slot
+            if (last <= slot ? (home <= last || home > slot) : (home <= last && home > slot)) {
+                this.keys[last] = this.keys[slot];
+                this.values[last] = this.values[slot];
+                last = slot;
+            }
+            slot = (slot + 1) & MASK;
+        }
+        this.values[last] = null;
+    }
+
+    private void release(BlockPosCache blockPosCache) {
+        if (this.poolSize < this.pool.length) {
+            this.pool[this.poolSize++] = blockPosCache;
+        }
+    }
+}
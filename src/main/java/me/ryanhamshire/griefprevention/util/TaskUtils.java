@@ -56,4 +56,8 @@ public static ZonedDateTime getNextTargetZoneDate(int targetHour, int targetMin,
         }
         return zonedNextTarget;
     }
+
+    public static ZonedDateTime getLastTargetZoneDate(int targetHour, int targetMin, int targetSec) {
+        return getNextTargetZoneDate(targetHour, targetMin, targetSec).minusDays(1).withNano(0);
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.visual;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.property.block.MatterProperty;
+import org.spongepowered.api.world.World;
+
+import java.util.Optional;
+
+/**
+ * Per-world cache of the surfaces visual blocks can cling to, used to place
+ * claim outlines.
+ *
+ * <p>Each block column is scanned once and stored as two bitsets, one of
+ * transparent levels and one of surface levels, where a surface is an
+ * opaque block with a transparent block above it. Columns are kept
+ * separately for liquids being transparent or opaque. Finding the visible
+ * level of a column is then a few bit operations instead of reading block
+ * states level by level.</p>
+ *
+ * <p>Columns are invalidated when a block inside them changes and chunks are
+ * dropped when unloaded.</p>
+ *
+ * <p>Note: This cache is only accessed from the main thread.</p>
+ */
+public class VisibleSurfaceCache {
+
+    private static final int MAX_CHUNKS = 1024;
+
+    private final Long2ObjectOpenHashMap<long[][]> chunks = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Gets the level of the block a player can probably see near a position.
+     *
+     * <p>If the block at y is transparent, this is the first surface below
+     * it, otherwise the first surface at or above it.</p>
+     *
+     * @param world The world
+     * @param x The block x
+     * @param y The starting block y
+     * @param z The block z
+     * @param liquidTransparent Whether liquids are treated as transparent
+     * @return The visible block y
+     */
+    public int getVisibleY(World world, int x, int y, int z, boolean liquidTransparent) {
+        final int buildHeight = world.getDimension().getBuildHeight();
+        if (y < 1 || y >= buildHeight - 1) {
+            return y;
+        }
+
+        final long[] column = this.getColumn(world, x, z, liquidTransparent, buildHeight);
+        final int words = column.length / 2;
+        if (isSet(column, 0, y)) {
+            final int surface = findLastSet(column, words, 1, y - 1);
+            return surface == -1 ? 0 : surface;
+        }
+
+        final int surface = findFirstSet(column, words, y, buildHeight - 2);
+        return surface == -1 ? buildHeight - 1 : surface;
+    }
+
+    public void invalidate(int x, int z) {
+        final long[][] columns = this.chunks.get(ChunkPos.asLong(x >> 4, z >> 4));
+        if (columns != null) {
+            final int index = (z & 15) << 4 | (x & 15);
+            columns[index] = null;
+            columns[index | 256] = null;
+        }
+    }
+
+    public void removeChunk(int chunkX, int chunkZ) {
+        this.chunks.remove(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    public void clear() {
+        this.chunks.clear();
+    }
+
+    // Returns {transparent bits..., surface bits...} of a column
+    private long[] getColumn(World world, int x, int z, boolean liquidTransparent, int buildHeight) {
+        final long chunkKey = ChunkPos.asLong(x >> 4, z >> 4);
+        long[][] columns = this.chunks.get(chunkKey);
+        if (columns == null) {
+            if (this.chunks.size() >= MAX_CHUNKS) {
+                this.chunks.clear();
+            }
+            // index 0-255 for opaque liquids, 256-511 for transparent liquids
+            columns = new long[512][];
+            this.chunks.put(chunkKey, columns);
+        }
+
+        final int index = (liquidTransparent ? 256 : 0) | (z & 15) << 4 | (x & 15);
+        long[] column = columns[index];
+        if (column == null) {
+            column = scanColumn(world, x, z, liquidTransparent, buildHeight);
+            columns[index] = column;
+        }
+        return column;
+    }
+
+    private static long[] scanColumn(World world, int x, int z, boolean liquidTransparent, int buildHeight) {
+        final int words = (buildHeight + 63) >> 6;
+        final long[] column = new long[words * 2];
+        boolean transparentAbove = isTransparent(world.getBlock(x, buildHeight - 1, z), liquidTransparent);
+        if (transparentAbove) {
+            column[(buildHeight - 1) >> 6] |= 1L << (buildHeight - 1);
+        }
+        for (int y = buildHeight - 2; y >= 0; y--) {
+            final boolean transparent = isTransparent(world.getBlock(x, y, z), liquidTransparent);
+            if (transparent) {
+                column[y >> 6] |= 1L << y;
+            } else if (transparentAbove) {
+                column[words + (y >> 6)] |= 1L << y;
+            }
+            transparentAbove = transparent;
+        }
+        return column;
+    }
+
+    private static boolean isSet(long[] column, int offset, int y) {
+        return (column[offset + (y >> 6)] & (1L << y)) != 0;
+    }
+
+    // Highest surface level within [from, to], or -1
+    private static int findLastSet(long[] column, int words, int from, int to) {
+        if (to < from) {
+            return -1;
+        }
+        for (int word = to >> 6; word >= from >> 6; word--) {
+            long bits = column[words + word];
+            if (word == to >> 6) {
+                bits &= -1L >>> (63 - (to & 63));
+            }
+            if (word == from >> 6) {
+                bits &= -1L << (from & 63);
+            }
+            if (bits != 0) {
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    // Lowest surface level within [from, to], or -1
+    private static int findFirstSet(long[] column, int words, int from, int to) {
+        if (to < from) {
+            return -1;
+        }
+        for (int word = from >> 6; word <= to >> 6; word++) {
+            long bits = column[words + word];
+            if (word == from >> 6) {
+                bits &= -1L << (from & 63);
+            }
+            if (word == to >> 6) {
+                bits &= -1L >>> (63 - (to & 63));
+            }
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    // allows visualization blocks to sit underneath partly transparent blocks like grass and fence
+    static boolean isTransparent(BlockState blockstate, boolean liquidTransparent) {
+        if (blockstate.getType() == BlockTypes.SNOW_LAYER) {
+            return false;
+        }
+
+        IBlockState iblockstate = (IBlockState)(Object) blockstate;
+        Optional<MatterProperty> matterProperty = blockstate.getProperty(MatterProperty.class);
+        if (!liquidTransparent && matterProperty.isPresent() && matterProperty.get().getValue() == MatterProperty.Matter.LIQUID) {
+            return false;
+        }
+        return !iblockstate.isOpaqueCube();
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.visual;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Outline positions of a single claim visual, computed from an immutable
+ * {@link Bounds} snapshot.
+ *
+ * <p>Positions are kept as primitive arrays with a material index per
+ * element and no world access is needed to build them, so geometry can be
+ * computed off the main thread. The main thread then only resolves the
+ * surface level of 2D outlines and the real block of each element.</p>
+ */
+public final class VisualGeometry {
+
+    static final byte CORNER = 0;
+    static final byte ACCENT = 1;
+    static final byte FILLER = 2;
+
+    final Bounds bounds;
+    int[] xs = new int[64];
+    int[] ys = new int[64];
+    int[] zs = new int[64];
+    byte[] materials = new byte[64];
+    int size;
+    final List<Vector3i> corners = new ArrayList<>();
+
+    private VisualGeometry(Bounds bounds) {
+        this.bounds = bounds;
+    }
+
+    public static VisualGeometry build(Bounds bounds) {
+        final VisualGeometry geometry = new VisualGeometry(bounds);
+        if (bounds.surface) {
+            geometry.addLines(0, CORNER, ACCENT);
+            geometry.removeOutOfRange(Math.max(bounds.minx, bounds.smallx), Math.max(bounds.minz, bounds.smallz),
+                    Math.min(bounds.maxx, bounds.bigx), Math.min(bounds.maxz, bounds.bigz));
+            return geometry;
+        }
+
+        geometry.addTopLine(bounds.smally, CORNER, ACCENT);
+        geometry.addTopLine(bounds.bigy, CORNER, ACCENT);
+        geometry.addBottomLine(bounds.smally, ACCENT);
+        geometry.addBottomLine(bounds.bigy, ACCENT);
+        geometry.addLeftLine(bounds.smally, CORNER, ACCENT);
+        geometry.addLeftLine(bounds.bigy, CORNER, ACCENT);
+        geometry.addRightLine(bounds.smally, CORNER, ACCENT);
+        geometry.addRightLine(bounds.bigy, CORNER, ACCENT);
+        if (bounds.showCorners) {
+            // top corners
+            geometry.addCorners(bounds.bigy - 1);
+            // bottom corners
+            geometry.addCorners(bounds.smally + 1);
+        }
+
+        final int step = bounds.step;
+        if (step != 0 && bounds.showFillers) {
+            for (int y = bounds.smally + step; y < bounds.bigy - step / 2; y += step) {
+                geometry.addTopLine(y, FILLER, FILLER);
+            }
+            for (int y = bounds.smally + step; y < bounds.bigy - step / 2; y += step) {
+                geometry.addBottomLine(y, FILLER);
+            }
+            for (int y = bounds.smally + step; y < bounds.bigy - step / 2; y += step) {
+                geometry.addLeftLine(y, FILLER, FILLER);
+            }
+            for (int y = bounds.smally + step; y < bounds.bigy - step / 2; y += step) {
+                geometry.addRightLine(y, FILLER, FILLER);
+            }
+        }
+        return geometry;
+    }
+
+    private void addLines(int y, byte cornerMaterial, byte accentMaterial) {
+        this.addTopLine(y, cornerMaterial, accentMaterial);
+        this.addBottomLine(y, accentMaterial);
+        this.addLeftLine(y, cornerMaterial, accentMaterial);
+        this.addRightLine(y, cornerMaterial, accentMaterial);
+    }
+
+    private void addCorners(int y) {
+        final Bounds b = this.bounds;
+        this.add(b.smallx, y, b.bigz, ACCENT);
+        this.add(b.bigx, y, b.bigz, ACCENT);
+        this.add(b.bigx, y, b.smallz, ACCENT);
+        this.add(b.smallx, y, b.smallz, ACCENT);
+    }
+
+    private void addTopLine(int y, byte cornerMaterial, byte accentMaterial) {
+        final Bounds b = this.bounds;
+        this.add(b.smallx, y, b.bigz, cornerMaterial);
+        this.corners.add(new Vector3i(b.smallx, y, b.bigz));
+        this.add(b.smallx + 1, y, b.bigz, accentMaterial);
+        this.add(b.bigx - 1, y, b.bigz, accentMaterial);
+        if (b.step != 0) {
+            for (int x = b.smallx + b.step; x < b.bigx - b.step / 2; x += b.step) {
+                if ((y != 0 && x >= b.smallx && x <= b.bigx) || (x > b.minx && x < b.maxx)) {
+                    this.add(x, y, b.bigz, accentMaterial);
+                }
+            }
+        }
+    }
+
+    private void addBottomLine(int y, byte accentMaterial) {
+        final Bounds b = this.bounds;
+        this.add(b.smallx + 1, y, b.smallz, accentMaterial);
+        this.corners.add(new Vector3i(b.smallx + 1, y, b.smallz));
+        this.add(b.bigx - 1, y, b.smallz, accentMaterial);
+        if (b.step != 0) {
+            for (int x = b.smallx + b.step; x < b.bigx - b.step / 2; x += b.step) {
+                if ((y != 0 && x >= b.smallx && x <= b.bigx) || (x > b.minx && x < b.maxx)) {
+                    this.add(x, y, b.smallz, accentMaterial);
+                }
+            }
+        }
+    }
+
+    private void addLeftLine(int y, byte cornerMaterial, byte accentMaterial) {
+        final Bounds b = this.bounds;
+        this.add(b.smallx, y, b.smallz, cornerMaterial);
+        this.corners.add(new Vector3i(b.smallx, y, b.smallz));
+        this.add(b.smallx, y, b.smallz + 1, accentMaterial);
+        this.add(b.smallx, y, b.bigz - 1, accentMaterial);
+        if (b.step != 0) {
+            for (int z = b.smallz + b.step; z < b.bigz - b.step / 2; z += b.step) {
+                if ((y != 0 && z >= b.smallz && z <= b.bigz) || (z > b.minz && z < b.maxz)) {
+                    this.add(b.smallx, y, z, accentMaterial);
+                }
+            }
+        }
+    }
+
+    private void addRightLine(int y, byte cornerMaterial, byte accentMaterial) {
+        final Bounds b = this.bounds;
+        this.add(b.bigx, y, b.smallz, cornerMaterial);
+        this.corners.add(new Vector3i(b.bigx, y, b.smallz));
+        this.add(b.bigx, y, b.smallz + 1, accentMaterial);
+        if (b.step != 0) {
+            for (int z = b.smallz + b.step; z < b.bigz - b.step / 2; z += b.step) {
+                if ((y != 0 && z >= b.smallz && z <= b.bigz) || (z > b.minz && z < b.maxz)) {
+                    this.add(b.bigx, y, z, accentMaterial);
+                }
+            }
+        }
+        this.add(b.bigx, y, b.bigz - 1, accentMaterial);
+        this.add(b.bigx, y, b.bigz, cornerMaterial);
+        this.corners.add(new Vector3i(b.bigx, y, b.bigz));
+    }
+
+    private void add(int x, int y, int z, byte material) {
+        if (this.size == this.xs.length) {
+            final int capacity = this.size * 2;
+            this.xs = Arrays.copyOf(this.xs, capacity);
+            this.ys = Arrays.copyOf(this.ys, capacity);
+            this.zs = Arrays.copyOf(this.zs, capacity);
+            this.materials = Arrays.copyOf(this.materials, capacity);
+        }
+        this.xs[this.size] = x;
+        this.ys[this.size] = y;
+        this.zs[this.size] = z;
+        this.materials[this.size] = material;
+        this.size++;
+    }
+
+    // Compacts the arrays in place, keeping only elements within range
+    private void removeOutOfRange(int minx, int minz, int maxx, int maxz) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.xs[i] < minx || this.xs[i] > maxx || this.zs[i] < minz || this.zs[i] > maxz) {
+                continue;
+            }
+            this.xs[kept] = this.xs[i];
+            this.ys[kept] = this.ys[i];
+            this.zs[kept] = this.zs[i];
+            this.materials[kept] = this.materials[i];
+            kept++;
+        }
+        this.size = kept;
+    }
+
+    BlockState getState(int index) {
+        return this.bounds.palette[this.materials[index]];
+    }
+
+    /**
+     * Immutable snapshot of everything needed to compute the outline of a
+     * claim. Taken on the main thread before geometry is built.
+     */
+    public static final class Bounds {
+
+        final World world;
+        final int smallx;
+        final int smally;
+        final int smallz;
+        final int bigx;
+        final int bigy;
+        final int bigz;
+        // visualization range
+        final int minx;
+        final int minz;
+        final int maxx;
+        final int maxz;
+        final int step;
+        // 2D outlines cling to the surface starting at height
+        final boolean surface;
+        final int height;
+        final boolean liquidTransparent;
+        final boolean showCorners;
+        final boolean showFillers;
+        // indexed by material
+        final BlockState[] palette;
+
+        Bounds(World world, int smallx, int smally, int smallz, int bigx, int bigy, int bigz, int minx, int minz, int maxx, int maxz, int step,
+                boolean surface, int height, boolean liquidTransparent, boolean showCorners, boolean showFillers, BlockState cornerState,
+                BlockState accentState, BlockState fillerState) {
+            this.world = world;
+            this.smallx = smallx;
+            this.smally = smally;
+            this.smallz = smallz;
+            this.bigx = bigx;
+            this.bigy = bigy;
+            this.bigz = bigz;
+            this.minx = minx;
+            this.minz = minz;
+            this.maxx = maxx;
+            this.maxz = maxz;
+            this.step = step;
+            this.surface = surface;
+            this.height = height;
+            this.liquidTransparent = liquidTransparent;
+            this.showCorners = showCorners;
+            this.showFillers = showFillers;
+            this.palette = new BlockState[] {cornerState, accentState, fillerState};
+        }
+    }
+}
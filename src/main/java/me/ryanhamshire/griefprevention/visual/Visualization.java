@@ -32,7 +32,6 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.task.VisualizationApplicationTask;
-import net.minecraft.block.state.IBlockState;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
@@ -41,13 +40,13 @@
 import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.data.property.block.MatterProperty;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.util.Direction;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 //represents a visualization sent to a player
 //FEATURE: to show players visually where claim boundaries are, we send them fake block change packets
@@ -55,7 +54,8 @@
 public class Visualization {
 
     public ArrayList<Transaction<BlockSnapshot>> elements;
-    private ArrayList<Transaction<BlockSnapshot>> newElements;
+    // geometry still being built off the main thread
+    private final List<CompletableFuture<VisualGeometry>> pendingGeometry = new ArrayList<>();
     private ArrayList<Vector3i> corners;
     private VisualizationType type;
     private GPClaim claim;
@@ -84,7 +84,6 @@ public Visualization(VisualizationType type) {
         this.type = type;
         this.snapshotBuilder = Sponge.getGame().getRegistry().createBuilder(BlockSnapshot.Builder.class);
         this.elements = new ArrayList<Transaction<BlockSnapshot>>();
-        this.newElements = new ArrayList<>();
         this.corners = new ArrayList<>();
     }
 
@@ -100,7 +99,6 @@ public Visualization(Location<World> lesserBoundaryCorner, Location<World> great
         this.type = type;
         this.snapshotBuilder = Sponge.getGame().getRegistry().createBuilder(BlockSnapshot.Builder.class);
         this.elements = new ArrayList<Transaction<BlockSnapshot>>();
-        this.newElements = new ArrayList<>();
         this.corners = new ArrayList<>();
     }
 
@@ -165,12 +163,30 @@ public void apply(Player player, boolean resetActive) {
         // if he has any current visualization, clear it first
         //playerData.revertActiveVisual(player);
 
+        // wait for any geometry still being built, then materialize it on the main thread
+        if (!this.pendingGeometry.isEmpty()) {
+            final List<CompletableFuture<VisualGeometry>> awaited = new ArrayList<>(this.pendingGeometry);
+            CompletableFuture.allOf(awaited.toArray(new CompletableFuture[0])).whenComplete((result, throwable) -> {
+                Sponge.getScheduler().createTaskBuilder().execute(() -> {
+                    this.materializeGeometry(awaited);
+                    // another apply sharing these futures may have materialized them first,
+                    // send whatever is built and wait again for geometry added since
+                    if (!this.pendingGeometry.isEmpty() || !this.elements.isEmpty()) {
+                        this.apply(player, resetActive);
+                    }
+                }).submit(GriefPreventionPlugin.instance);
+            });
+            return;
+        }
+
         // if he's online, create a task to send him the visualization
         if (player.isOnline() && this.elements.size() > 0
                 && this.elements.get(0).getOriginal().getLocation().get().getExtent().equals(player.getWorld())) {
             Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1L)
                     .execute(new VisualizationApplicationTask(player, playerData, this, resetActive)).submit(GriefPreventionPlugin.instance);
             //GriefPreventionPlugin.instance.executor.execute(new VisualizationApplicationTask(player, playerData, this, resetActive));
+        } else if (resetActive) {
+            playerData.revertActiveVisual(player);
         }
     }
 
@@ -193,20 +209,14 @@ public void revert(Player player) {
             this.removeElementsOutOfRange(this.elements, minx, minz, maxx, maxz);
         }
 
-        // send real block information for any remaining elements
-        for (int i = 0; i < this.elements.size(); i++) {
-            BlockSnapshot snapshot = this.elements.get(i).getOriginal();
-
-            // check player still in world where visualization exists
-            if (i == 0) {
-                if (!player.getWorld().equals(snapshot.getLocation().get().getExtent())) {
-                    return;
-                }
-            }
-
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
+        // check player still in world where visualization exists
+        if (!this.elements.isEmpty() && !player.getWorld().equals(this.elements.get(0).getOriginal().getLocation().get().getExtent())) {
+            return;
         }
 
+        // send real block information for any remaining elements
+        GriefPreventionPlugin.instance.visualizationSender.revert(player, this.elements);
+
         playerData.visualBlocks = null;
         if (playerData.visualRevertTask != null) {
             playerData.visualRevertTask.cancel();
@@ -226,7 +236,7 @@ public static Visualization fromClick(Location<World> location, int height, Visu
 
     public void resetVisuals() {
         this.elements.clear();
-        this.newElements.clear();
+        this.pendingGeometry.clear();
     }
 
     public void createClaimBlockVisualWithType(GPClaim claim, int height, Location<World> locality, GPPlayerData playerData, VisualizationType visualType) {
@@ -236,7 +246,7 @@ public void createClaimBlockVisualWithType(GPClaim claim, int height, Location<W
     }
 
     public void createClaimBlockVisuals(int height, Location<World> locality, GPPlayerData playerData) {
-        if (this.elements.size() != 0) {
+        if (this.elements.size() != 0 || !this.pendingGeometry.isEmpty()) {
             return;
         }
 
@@ -294,186 +304,53 @@ private void addClaimElements(int height, Location<World> locality, GPPlayerData
             STEP = 0;
         }
 
-        if (this.useCuboidVisual()) {
-            this.addVisuals3D(claim, playerData);
-        } else {
-            this.addVisuals2D(claim, height, liquidTransparent);
-        }
+        final BlockState fillerState = this.fillerMaterial != null ? this.fillerMaterial.getDefaultState() : this.accentMaterial.getDefaultState();
+        final VisualGeometry.Bounds bounds = new VisualGeometry.Bounds(world, this.smallx, this.smally, this.smallz, this.bigx, this.bigy, this.bigz,
+                this.minx, this.minz, this.maxx, this.maxz, STEP, !this.useCuboidVisual(), height, liquidTransparent,
+                // don't show corners while subdividing
+                playerData == null || playerData.claimSubdividing == null,
+                STEP != 0 && (playerData == null || playerData.showVisualFillers),
+                this.cornerMaterial.getDefaultState(), this.accentMaterial.getDefaultState(), fillerState);
+        this.pendingGeometry.add(CompletableFuture.supplyAsync(() -> VisualGeometry.build(bounds), GriefPreventionPlugin.instance.executor));
     }
 
-    public void addVisuals3D(GPClaim claim, GPPlayerData playerData) {
-        World world = claim.world;
-
-        this.addTopLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addTopLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        this.addBottomLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addBottomLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        this.addLeftLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addLeftLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        this.addRightLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addRightLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        // don't show corners while subdividing
-        if (playerData == null || (playerData.claimSubdividing == null)) {
-            // top corners
-            this.addCorners(world, this.bigy - 1, this.accentMaterial);
-            // bottom corners
-            this.addCorners(world, this.smally + 1, this.accentMaterial);
-        }
-
-        if (STEP != 0 && (playerData == null || playerData.showVisualFillers)) {
-            for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addTopLine(world, y, fillerMaterial, fillerMaterial);
-            }
-            for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addBottomLine(world, y, fillerMaterial, fillerMaterial);
-            }
-            for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addLeftLine(world, y, fillerMaterial, fillerMaterial);
-            }
-            for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addRightLine(world, y, fillerMaterial, fillerMaterial);
+    // turns finished geometry into block transactions, resolving the real
+    // world blocks and, for 2D visuals, the visible surface of each column
+    // Note: must be called from the main thread
+    private void materializeGeometry(List<CompletableFuture<VisualGeometry>> awaited) {
+        for (CompletableFuture<VisualGeometry> future : awaited) {
+            if (!this.pendingGeometry.remove(future)) {
+                // already handled by another apply or discarded by resetVisuals
+                continue;
             }
-        }
-        this.elements.addAll(newElements);
-    }
-
-    public void addVisuals2D(GPClaim claim, int height, boolean liquidTransparent) {
-        World world = claim.world;
-        this.addTopLine(world, 0, this.cornerMaterial, this.accentMaterial);
-        this.addBottomLine(world, 0, this.cornerMaterial, this.accentMaterial);
-        this.addLeftLine(world, 0, this.cornerMaterial, this.accentMaterial);
-        this.addRightLine(world, 0, this.cornerMaterial, this.accentMaterial);
-
-        // remove any out of range elements
-        this.removeElementsOutOfRange(this.newElements, this.minx, this.minz, this.maxx, this.maxz);
-
-        for (int i = 0; i < this.newElements.size(); i++) {
-            BlockSnapshot element = this.newElements.get(i).getFinal();
-            if (!claim.contains(element.getLocation().get())) {
-                this.newElements.remove(i);
+            final VisualGeometry geometry;
+            try {
+                geometry = future.join();
+            } catch (CompletionException e) {
+                e.printStackTrace();
+                continue;
             }
-        }
-
-        // set Y values and real block information for any remaining visualization blocks
-        ArrayList<Transaction<BlockSnapshot>> actualElements = new ArrayList<Transaction<BlockSnapshot>>();
-        for (Transaction<BlockSnapshot> element : this.newElements) {
-            Location<World> tempLocation = element.getFinal().getLocation().get();
-            Location<World> visibleLocation =
-                    getVisibleLocation(tempLocation.getExtent(), tempLocation.getBlockX(), height, tempLocation.getBlockZ(), liquidTransparent);
-            element = new Transaction<BlockSnapshot>(element.getOriginal().withLocation(visibleLocation).withState(visibleLocation.getBlock()),
-                    element.getFinal().withLocation(visibleLocation));
-            height = element.getFinal().getPosition().getY();
-            actualElements.add(element);
-        }
-
-        this.elements.addAll(actualElements);
-    }
 
-    public void addCorners(World world, int y, BlockType accentMaterial) {
-        BlockSnapshot corner1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner1.getLocation().get().createSnapshot(), corner1));
-        BlockSnapshot corner2 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner2.getLocation().get().createSnapshot(), corner2));
-        BlockSnapshot corner3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner3.getLocation().get().createSnapshot(), corner3));
-        BlockSnapshot corner4 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner4.getLocation().get().createSnapshot(), corner4));
-    }
-
-    public void addTopLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot topVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock1.getLocation().get().createSnapshot(), topVisualBlock1));
-        this.corners.add(topVisualBlock1.getPosition());
-        BlockSnapshot topVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx + 1, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock2.getLocation().get().createSnapshot(), topVisualBlock2));
-        BlockSnapshot topVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx - 1, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock3.getLocation().get().createSnapshot(), topVisualBlock3));
-
-        if (STEP != 0) {
-            for (int x = this.smallx + STEP; x < this.bigx - STEP / 2; x += STEP) {
-                if ((y != 0 && x >= this.smallx && x <= this.bigx) || (x > this.minx && x < this.maxx)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, x, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
-                }
-            }
-        }
-    }
-
-    public void addBottomLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot bottomVisualBlock1 =
-                this.snapshotBuilder.from(new Location<World>(world, this.smallx + 1, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock1.getLocation().get().createSnapshot(), bottomVisualBlock1));
-        this.corners.add(bottomVisualBlock1.getPosition());
-        BlockSnapshot bottomVisualBlock2 =
-                this.snapshotBuilder.from(new Location<World>(world, this.bigx - 1, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock2.getLocation().get().createSnapshot(), bottomVisualBlock2));
-
-        if (STEP != 0) {
-            for (int x = this.smallx + STEP; x < this.bigx - STEP / 2; x += STEP) {
-                if ((y != 0 && x >= this.smallx && x <= this.bigx) || (x > this.minx && x < this.maxx)) {
-                    BlockSnapshot visualBlock =
-                            this.snapshotBuilder.from(new Location<World>(world, x, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+            final VisualGeometry.Bounds bounds = geometry.bounds;
+            final World world = bounds.world;
+            final VisibleSurfaceCache surfaceCache = bounds.surface
+                    ? GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(world.getProperties()).getVisibleSurfaceCache()
+                    : null;
+            int height = bounds.height;
+            this.elements.ensureCapacity(this.elements.size() + geometry.size);
+            for (int i = 0; i < geometry.size; i++) {
+                int y = geometry.ys[i];
+                if (surfaceCache != null) {
+                    y = surfaceCache.getVisibleY(world, geometry.xs[i], height, geometry.zs[i], bounds.liquidTransparent);
+                    height = y;
                 }
+                final BlockSnapshot original = new Location<World>(world, geometry.xs[i], y, geometry.zs[i]).createSnapshot();
+                this.elements.add(new Transaction<BlockSnapshot>(original, original.withState(geometry.getState(i))));
             }
+            this.corners.addAll(geometry.corners);
         }
-    }
 
-    public void addLeftLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot leftVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock1.getLocation().get().createSnapshot(), leftVisualBlock1));
-        this.corners.add(leftVisualBlock1.getPosition());
-        BlockSnapshot leftVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock2.getLocation().get().createSnapshot(), leftVisualBlock2));
-        BlockSnapshot leftVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock3.getLocation().get().createSnapshot(), leftVisualBlock3));
-
-        if (STEP != 0) {
-            for (int z = this.smallz + STEP; z < this.bigz - STEP / 2; z += STEP) {
-                if ((y != 0 && z >= this.smallz && z <= this.bigz) || (z > this.minz && z < this.maxz)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, this.smallx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
-               }
-            }
-        }
-    }
-
-    public void addRightLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot rightVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock1.getLocation().get().createSnapshot(), rightVisualBlock1));
-        this.corners.add(rightVisualBlock1.getPosition());
-        BlockSnapshot rightVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock2.getLocation().get().createSnapshot(), rightVisualBlock2));
-        if (STEP != 0) {
-            for (int z = this.smallz + STEP; z < this.bigz - STEP / 2; z += STEP) {
-                if ((y != 0 && z >= this.smallz && z <= this.bigz) || (z > this.minz && z < this.maxz)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, this.bigx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
-                }
-            }
-        }
-        BlockSnapshot rightVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock3.getLocation().get().createSnapshot(), rightVisualBlock3));
-        BlockSnapshot rightVisualBlock4 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock4.getLocation().get().createSnapshot(), rightVisualBlock4));
-        this.corners.add(rightVisualBlock4.getPosition());
+        return materialized;
     }
 
     public List<Transaction<BlockSnapshot>> getVisualElements() {
@@ -486,41 +363,10 @@ public List<Vector3i> getVisualCorners() {
 
     // removes any elements which are out of visualization range
     private void removeElementsOutOfRange(ArrayList<Transaction<BlockSnapshot>> elements, int minx, int minz, int maxx, int maxz) {
-        for (int i = 0; i < elements.size(); i++) {
-            Location<World> location = elements.get(i).getFinal().getLocation().get();
-            if (location.getX() < minx || location.getX() > maxx || location.getZ() < minz || location.getZ() > maxz) {
-                elements.remove(i);
-            }
-        }
-    }
-
-    // finds a block the player can probably see. this is how visualizations "cling" to the ground or ceiling
-    private static Location<World> getVisibleLocation(World world, int x, int y, int z, boolean waterIsTransparent) {
-        Location<World> location = world.getLocation(x, y, z);
-        Direction direction = (isTransparent(location.getBlock(), waterIsTransparent)) ? Direction.DOWN : Direction.UP;
-
-        while (location.getPosition().getY() >= 1 &&
-                location.getPosition().getY() < world.getDimension().getBuildHeight() - 1 &&
-                (!isTransparent(location.getRelative(Direction.UP).getBlock(), waterIsTransparent)
-                        || isTransparent(location.getBlock(), waterIsTransparent))) {
-            location = location.getRelative(direction);
-        }
-
-        return location;
-    }
-
-    // helper method for above. allows visualization blocks to sit underneath partly transparent blocks like grass and fence
-    private static boolean isTransparent(BlockState blockstate, boolean waterIsTransparent) {
-        if (blockstate.getType() == BlockTypes.SNOW_LAYER) {
-            return false;
-        }
-
-        IBlockState iblockstate = (IBlockState)(Object) blockstate;
-        Optional<MatterProperty> matterProperty = blockstate.getProperty(MatterProperty.class);
-        if (!waterIsTransparent && matterProperty.isPresent() && matterProperty.get().getValue() == MatterProperty.Matter.LIQUID) {
-            return false;
-        }
-        return !iblockstate.isOpaqueCube();
+        elements.removeIf(element -> {
+            final Vector3i position = element.getFinal().getPosition();
+            return position.getX() < minx || position.getX() > maxx || position.getZ() < minz || position.getZ() > maxz;
+        });
     }
 
     public static Visualization fromClaims(List<Claim> claims, int height, Location<World> locality, GPPlayerData playerData, Visualization visualization) {
@@ -534,7 +380,8 @@ public static Visualization fromClaims(List<Claim> claims, int height, Location<
                 fromClaims(gpClaim.children, height, locality, playerData, visualization);
             }
             if (gpClaim.visualization != null) {
-                visualization.elements.addAll(gpClaim.getVisualizer().elements);
+                visualization.elements.addAll(gpClaim.visualization.elements);
+                visualization.pendingGeometry.addAll(gpClaim.visualization.pendingGeometry);
             } else {
                 visualization.createClaimBlockVisualWithType(gpClaim, height, locality, playerData, Visualization.getVisualizationType(gpClaim));
             }
@@ -0,0 +1,207 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.visual;
+
+import com.flowpowered.math.vector.Vector3i;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends fake visual blocks to players as one multi block change packet per
+ * chunk.
+ *
+ * <p>Block changes are queued per player and drained every tick, up to
+ * {@code visual.packets-per-tick} packets per player, so a large outline is
+ * spread over several ticks. Queuing a block that is still pending replaces
+ * the pending state, so the client always ends up with the latest state of
+ * each position.</p>
+ *
+ * <p>Note: Changes may be queued from any thread but are only sent from the
+ * main thread.</p>
+ */
+public class VisualizationSender implements Runnable {
+
+    private final Map<UUID, PlayerQueue> queues = new ConcurrentHashMap<>();
+
+    // Sends the visual blocks of every element
+    public void apply(Player player, List<Transaction<BlockSnapshot>> elements) {
+        final PlayerQueue queue = this.getQueue(player);
+        synchronized (queue) {
+            for (Transaction<BlockSnapshot> element : elements) {
+                queue.add(element.getFinal());
+            }
+        }
+    }
+
+    // Sends the real world blocks of every element
+    public void revert(Player player, List<Transaction<BlockSnapshot>> elements) {
+        final PlayerQueue queue = this.getQueue(player);
+        synchronized (queue) {
+            for (Transaction<BlockSnapshot> element : elements) {
+                queue.add(element.getOriginal());
+            }
+        }
+    }
+
+    /**
+     * Replaces the active visual of a player with a new one, only sending
+     * the blocks that differ between both.
+     *
+     * @param player The player
+     * @param active The elements currently shown to the player
+     * @param elements The elements to show
+     */
+    public void applyDiff(Player player, List<Transaction<BlockSnapshot>> active, List<Transaction<BlockSnapshot>> elements) {
+        final Map<Vector3i, Transaction<BlockSnapshot>> activeByPosition = new HashMap<>(active.size() * 2);
+        for (Transaction<BlockSnapshot> element : active) {
+            activeByPosition.put(element.getFinal().getPosition(), element);
+        }
+
+        final PlayerQueue queue = this.getQueue(player);
+        synchronized (queue) {
+            for (Transaction<BlockSnapshot> element : elements) {
+                final BlockSnapshot snapshot = element.getFinal();
+                final Transaction<BlockSnapshot> activeElement = activeByPosition.remove(snapshot.getPosition());
+                if (activeElement == null || !activeElement.getFinal().getState().equals(snapshot.getState())) {
+                    queue.add(snapshot);
+                }
+            }
+            for (Transaction<BlockSnapshot> activeElement : activeByPosition.values()) {
+                queue.add(activeElement.getOriginal());
+            }
+        }
+    }
+
+    public void clear(UUID playerUniqueId) {
+        this.queues.remove(playerUniqueId);
+    }
+
+    @Override
+    public void run() {
+        final int packetsPerTick = Math.max(1, GriefPreventionPlugin.getGlobalConfig().getConfig().visual.packetsPerTick);
+        final Iterator<Map.Entry<UUID, PlayerQueue>> iterator = this.queues.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<UUID, PlayerQueue> entry = iterator.next();
+            final PlayerQueue queue = entry.getValue();
+            final Optional<Player> player = Sponge.getServer().getPlayer(entry.getKey());
+            synchronized (queue) {
+                // Pending changes are meaningless once the player leaves the world they were queued for
+                if (!player.isPresent() || !player.get().getWorld().getUniqueId().equals(queue.worldUniqueId)) {
+                    iterator.remove();
+                    continue;
+                }
+
+                for (int i = 0; i < packetsPerTick && !queue.chunks.isEmpty(); i++) {
+                    final long chunkKey = queue.chunks.firstLongKey();
+                    sendChunk((EntityPlayerMP) player.get(), chunkKey, queue.chunks.removeFirst());
+                }
+                if (queue.chunks.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private PlayerQueue getQueue(Player player) {
+        final UUID worldUniqueId = player.getWorld().getUniqueId();
+        return this.queues.compute(player.getUniqueId(), (uuid, queue) -> {
+            if (queue == null || !queue.worldUniqueId.equals(worldUniqueId)) {
+                return new PlayerQueue(worldUniqueId);
+            }
+            return queue;
+        });
+    }
+
+    private static void sendChunk(EntityPlayerMP player, long chunkKey, Short2ObjectLinkedOpenHashMap<BlockState> changes) {
+        final PacketBuffer buffer = new PacketBuffer(Unpooled.buffer(10 + changes.size() * 5));
+        try {
+            // Written in the wire format of the packet as it has no constructor accepting arbitrary states
+            buffer.writeInt((int) chunkKey);
+            buffer.writeInt((int) (chunkKey >> 32));
+            buffer.writeVarInt(changes.size());
+            for (Short2ObjectMap.Entry<BlockState> change : changes.short2ObjectEntrySet()) {
+                buffer.writeShort(change.getShortKey());
+                buffer.writeVarInt(Block.BLOCK_STATE_IDS.get((IBlockState) change.getValue()));
+            }
+
+            final SPacketMultiBlockChange packet = new SPacketMultiBlockChange();
+            packet.readPacketData(buffer);
+            player.connection.sendPacket(packet);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static final class PlayerQueue {
+
+        private final UUID worldUniqueId;
+        // Chunk -> pending states keyed by position within the chunk
+        private final Long2ObjectLinkedOpenHashMap<Short2ObjectLinkedOpenHashMap<BlockState>> chunks = new Long2ObjectLinkedOpenHashMap<>();
+
+        private PlayerQueue(UUID worldUniqueId) {
+            this.worldUniqueId = worldUniqueId;
+        }
+
+        private void add(BlockSnapshot snapshot) {
+            final Vector3i pos = snapshot.getPosition();
+            if (pos.getY() < 0 || pos.getY() > 255) {
+                return;
+            }
+
+            final long chunkKey = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+            Short2ObjectLinkedOpenHashMap<BlockState> changes = this.chunks.get(chunkKey);
+            if (changes == null) {
+                changes = new Short2ObjectLinkedOpenHashMap<>();
+                this.chunks.put(chunkKey, changes);
+            }
+            changes.put((short) ((pos.getX() & 15) << 12 | (pos.getZ() & 15) << 8 | pos.getY()), snapshot.getState());
+        }
+    }
+}
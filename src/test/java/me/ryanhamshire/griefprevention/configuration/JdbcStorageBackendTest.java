@@ -0,0 +1,218 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.ClaimType;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class JdbcStorageBackendTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path rootPath;
+    private Path claimDataPath;
+    private Path playerDataPath;
+    private JdbcStorageBackend backend;
+
+    @Before
+    public void setUp() throws Exception {
+        this.rootPath = this.temporaryFolder.newFolder("config").toPath();
+        final Path worldPath = this.rootPath.resolve("worlds").resolve("minecraft").resolve("overworld").resolve("world");
+        this.claimDataPath = worldPath.resolve("ClaimData");
+        this.playerDataPath = worldPath.resolve("PlayerData");
+
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:file:" + this.temporaryFolder.getRoot().toPath().resolve("gp").toAbsolutePath());
+        this.backend = new JdbcStorageBackend(dataSource, this.rootPath);
+        this.backend.createTables();
+    }
+
+    @Test
+    public void testSchemaRoundTrip() throws Exception {
+        // creating the tables again must keep existing data
+        this.backend.setSchemaVersion(3);
+        this.backend.createTables();
+        assertEquals(3, this.backend.getSchemaVersion());
+
+        final UUID claimId = UUID.randomUUID();
+        final UUID ownerId = UUID.randomUUID();
+        final UUID managerId = UUID.randomUUID();
+        final Path claimPath = this.claimDataPath.resolve(getFolderName(ClaimType.BASIC)).resolve(claimId.toString());
+        final ConfigurationNode claim = createRoot();
+        final ConfigurationNode claimNode = claim.getNode(GriefPreventionPlugin.MOD_ID);
+        claimNode.getNode(ClaimStorageData.MAIN_OWNER_UUID).setValue(ownerId.toString());
+        claimNode.getNode(ClaimStorageData.MAIN_CLAIM_TYPE).setValue("BASIC");
+        claimNode.getNode(ClaimStorageData.MAIN_LESSER_BOUNDARY_CORNER).setValue("0,0,0");
+        claimNode.getNode(ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER).setValue("15,255,15");
+        claimNode.getNode(ClaimStorageData.MAIN_CLAIM_CUBOID).setValue(true);
+        claimNode.getNode(ClaimStorageData.MAIN_CLAIM_RESIZABLE).setValue(false);
+        claimNode.getNode(ClaimStorageData.MAIN_CLAIM_PVP).setValue("TRUE");
+        claimNode.getNode(ClaimStorageData.MAIN_MANAGERS).getAppendedNode().setValue(managerId.toString());
+        claimNode.getNode(ClaimStorageData.MAIN_BUILDER_GROUPS).getAppendedNode().setValue("builders");
+        claimNode.getNode(ClaimStorageData.MAIN_CLAIM_DATE_CREATED).setValue("2018-01-01T00:00:00Z");
+
+        final UUID playerId = UUID.randomUUID();
+        final Path playerPath = this.playerDataPath.resolve(playerId.toString());
+        final ConfigurationNode player = createRoot();
+        player.getNode(GriefPreventionPlugin.MOD_ID, "accrued-claim-blocks").setValue(120);
+        player.getNode(GriefPreventionPlugin.MOD_ID, "bonus-claim-blocks").setValue(30);
+
+        final Map<Path, ConfigurationNode> batch = new LinkedHashMap<>();
+        batch.put(claimPath, claim);
+        batch.put(playerPath, player);
+        this.backend.write(batch);
+
+        assertTrue(this.backend.exists(claimPath));
+        assertTrue(this.backend.exists(playerPath));
+        final CommentedConfigurationNode loadedClaim = this.backend.load(claimPath).getNode(GriefPreventionPlugin.MOD_ID);
+        assertEquals(ownerId.toString(), loadedClaim.getNode(ClaimStorageData.MAIN_OWNER_UUID).getString());
+        assertEquals("BASIC", loadedClaim.getNode(ClaimStorageData.MAIN_CLAIM_TYPE).getString());
+        assertEquals("0,0,0", loadedClaim.getNode(ClaimStorageData.MAIN_LESSER_BOUNDARY_CORNER).getString());
+        assertEquals("15,255,15", loadedClaim.getNode(ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER).getString());
+        assertEquals(true, loadedClaim.getNode(ClaimStorageData.MAIN_CLAIM_CUBOID).getValue());
+        assertEquals(false, loadedClaim.getNode(ClaimStorageData.MAIN_CLAIM_RESIZABLE).getValue());
+        assertEquals("TRUE", loadedClaim.getNode(ClaimStorageData.MAIN_CLAIM_PVP).getString());
+        assertEquals(managerId.toString(), loadedClaim.getNode(ClaimStorageData.MAIN_MANAGERS).getChildrenList().get(0).getString());
+        assertEquals("builders", loadedClaim.getNode(ClaimStorageData.MAIN_BUILDER_GROUPS).getChildrenList().get(0).getString());
+        assertEquals("2018-01-01T00:00:00Z", loadedClaim.getNode(ClaimStorageData.MAIN_CLAIM_DATE_CREATED).getString());
+        assertTrue(loadedClaim.getNode(ClaimStorageData.MAIN_PARENT_CLAIM_UUID).isVirtual());
+
+        final CommentedConfigurationNode loadedPlayer = this.backend.load(playerPath).getNode(GriefPreventionPlugin.MOD_ID);
+        assertEquals(120, loadedPlayer.getNode("accrued-claim-blocks").getInt());
+        assertEquals(30, loadedPlayer.getNode("bonus-claim-blocks").getInt());
+    }
+
+    @Test
+    public void testBatchedWrite() throws Exception {
+        final Set<Path> claimPaths = new HashSet<>();
+        final Map<Path, ConfigurationNode> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 300; i++) {
+            final Path claimPath = this.claimDataPath.resolve(getFolderName(i % 2 == 0 ? ClaimType.BASIC : ClaimType.TOWN))
+                    .resolve(UUID.randomUUID().toString());
+            final ConfigurationNode claim = createRoot();
+            claim.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_ACCESSORS).getAppendedNode().setValue(UUID.randomUUID().toString());
+            claim.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_ALLOW_DENY_MESSAGES).setValue(false);
+            claimPaths.add(claimPath);
+            batch.put(claimPath, claim);
+        }
+        this.backend.write(batch);
+
+        final List<Path> listedPaths = this.backend.list(this.claimDataPath);
+        assertEquals(claimPaths, new HashSet<>(listedPaths));
+
+        // a later batch replaces, deletes and adds claims in one transaction
+        final Path replacedPath = listedPaths.get(0);
+        final Path deletedPath = listedPaths.get(1);
+        final Path addedPath = this.claimDataPath.resolve(getFolderName(ClaimType.BASIC)).resolve(UUID.randomUUID().toString());
+        final ConfigurationNode replaced = createRoot();
+        replaced.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_CLAIM_TYPE).setValue("TOWN");
+        final Map<Path, ConfigurationNode> nextBatch = new LinkedHashMap<>();
+        nextBatch.put(replacedPath, replaced);
+        nextBatch.put(deletedPath, null);
+        nextBatch.put(addedPath, createRoot());
+        this.backend.write(nextBatch);
+
+        assertEquals(claimPaths.size(), this.backend.list(this.claimDataPath).size());
+        assertFalse(this.backend.exists(deletedPath));
+        assertTrue(this.backend.exists(addedPath));
+        final CommentedConfigurationNode replacedClaim = this.backend.load(replacedPath).getNode(GriefPreventionPlugin.MOD_ID);
+        assertEquals("TOWN", replacedClaim.getNode(ClaimStorageData.MAIN_CLAIM_TYPE).getString());
+        assertTrue(replacedClaim.getNode(ClaimStorageData.MAIN_ACCESSORS).isVirtual());
+        assertTrue(replacedClaim.getNode(ClaimStorageData.MAIN_ALLOW_DENY_MESSAGES).isVirtual());
+    }
+
+    @Test
+    public void testLoadAll() throws Exception {
+        // child claims are stored below the type folder of their parent
+        final UUID parentId = UUID.randomUUID();
+        final UUID childId = UUID.randomUUID();
+        final Path parentPath = this.claimDataPath.resolve(getFolderName(ClaimType.BASIC)).resolve(parentId.toString());
+        final Path childPath = this.claimDataPath.resolve(getFolderName(ClaimType.BASIC)).resolve(getFolderName(ClaimType.SUBDIVISION))
+                .resolve(childId.toString());
+        final UUID accessorId = UUID.randomUUID();
+        final ConfigurationNode parent = createRoot();
+        parent.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_CLAIM_TYPE).setValue("BASIC");
+        parent.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_ACCESSORS).getAppendedNode().setValue(accessorId.toString());
+        final ConfigurationNode child = createRoot();
+        child.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_CLAIM_TYPE).setValue("SUBDIVISION");
+        child.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_PARENT_CLAIM_UUID).setValue(parentId.toString());
+        child.getNode(GriefPreventionPlugin.MOD_ID, ClaimStorageData.MAIN_INHERIT_PARENT).setValue(false);
+
+        // a claim of another world must not be loaded
+        final Path otherWorldPath = this.rootPath.resolve("worlds").resolve("minecraft").resolve("the_nether").resolve("DIM-1")
+                .resolve("ClaimData").resolve(getFolderName(ClaimType.BASIC)).resolve(UUID.randomUUID().toString());
+        final Map<Path, ConfigurationNode> batch = new LinkedHashMap<>();
+        batch.put(parentPath, parent);
+        batch.put(childPath, child);
+        batch.put(otherWorldPath, createRoot());
+        this.backend.write(batch);
+
+        assertEquals(Arrays.asList(parentPath, childPath), this.backend.list(this.claimDataPath));
+        final Map<Path, CommentedConfigurationNode> roots = this.backend.loadAll(this.claimDataPath);
+        assertEquals(2, roots.size());
+        assertNotNull(roots.get(parentPath));
+        assertNotNull(roots.get(childPath));
+        final CommentedConfigurationNode loadedParent = roots.get(parentPath).getNode(GriefPreventionPlugin.MOD_ID);
+        assertEquals("BASIC", loadedParent.getNode(ClaimStorageData.MAIN_CLAIM_TYPE).getString());
+        assertEquals(accessorId.toString(), loadedParent.getNode(ClaimStorageData.MAIN_ACCESSORS).getChildrenList().get(0).getString());
+        final CommentedConfigurationNode loadedChild = roots.get(childPath).getNode(GriefPreventionPlugin.MOD_ID);
+        assertEquals(parentId.toString(), loadedChild.getNode(ClaimStorageData.MAIN_PARENT_CLAIM_UUID).getString());
+        assertEquals(false, loadedChild.getNode(ClaimStorageData.MAIN_INHERIT_PARENT).getValue());
+        assertTrue(loadedChild.getNode(ClaimStorageData.MAIN_ACCESSORS).isVirtual());
+        assertTrue(this.backend.loadAll(this.playerDataPath).isEmpty());
+    }
+
+    // the folder GPClaim stores claims of a type in
+    private static String getFolderName(ClaimType type) {
+        return type.name().toLowerCase();
+    }
+
+    private static ConfigurationNode createRoot() {
+        return SimpleConfigurationNode.root();
+    }
+}